@@ -53,10 +53,51 @@ public class Settings
 	 * <br>
 	 * <br> <i>Type:</i> integer (for example, 60 would be 60 FPS)
 	 * <br>
-	 * <br> <b>WARNING:</b> this setting has not yet been incorporated into
-	 * the graphics system.
+	 * <br> <b>WARNING:</b> this setting is currently only used as the frame
+	 * time budget (see FRAME_BUDGET), it does not change the render rate.
 	 */
 	public static final String TARGET_FPS = "TARGET_FPS";
+	/** If low priority renderers should be switched to their fallback or
+	 * skipped when a frame is taking longer than the TARGET_FPS allows.
+	 * <br>
+	 * <br> <i>Type:</i> boolean
+	 */
+	public static final String FRAME_BUDGET = "FRAME_BUDGET";
+	/** If the main layer set should be rendered at a lower resolution (and
+	 * without antialiasing) when frames take longer than the TARGET_FPS
+	 * allows, and then upscaled to the window.
+	 * <br>
+	 * <br> <i>Type:</i> boolean
+	 */
+	public static final String DYN_RES = "DYN_RES";
+	/** The lowest resolution scale dynamic resolution can go down to.
+	 * <br>
+	 * <br> <i>Type:</i> double in the range 0.0-1.0 (0.5 is half the
+	 * window width and height)
+	 */
+	public static final String DYN_RES_MIN_SCALE = "DYN_RES_MIN_SCALE";
+	/** The highest resolution scale dynamic resolution can go up to.
+	 * <br>
+	 * <br> <i>Type:</i> double in the range 0.0-1.0
+	 */
+	public static final String DYN_RES_MAX_SCALE = "DYN_RES_MAX_SCALE";
+	/** How far the average frame render time must be from the frame budget
+	 * before dynamic resolution changes the quality.
+	 * <br>
+	 * <br> <i>Type:</i> double fraction of the frame budget (0.15 lowers
+	 * the quality above 115% of the budget and raises it below 85%)
+	 */
+	public static final String DYN_RES_HYSTERESIS = "DYN_RES_HYSTERESIS";
+	/** The number of horizontal bands the main frame is split into, with
+	 * each band rendered by its own thread into a shared back buffer.
+	 * Renderers that are not
+	 * {@link xyz.digitalcookies.objective.graphics.Renderer#isThreadSafe()
+	 * thread safe} are rendered by one band at a time.
+	 * <br>
+	 * <br> <i>Type:</i> integer (1 or less renders the whole frame on the
+	 * painting thread)
+	 */
+	public static final String RENDER_TILES = "RENDER_TILES";
 	
 	/** The map of the different dynamic settings. */
 	private static volatile ConcurrentHashMap<String, Object> settings;
@@ -80,8 +121,19 @@ public class Settings
 		settings.put(BGM_VOLUME, 100);
 		// Sound effects volume setting % (int)
 		settings.put(SFX_VOLUME, 100);
-		// The FPS to try to run the graphics system at (CURRENTLY UNUSED SETTING)
+		// The FPS to try to run the graphics system at (frame budget only)
 		settings.put(TARGET_FPS, 60);
+		// Degrade low priority renderers when over the frame budget (boolean)
+		settings.put(FRAME_BUDGET, true);
+		// Adapt the render resolution to the frame time (boolean)
+		settings.put(DYN_RES, false);
+		// The range of dynamic resolution scales (double)
+		settings.put(DYN_RES_MIN_SCALE, 0.5);
+		settings.put(DYN_RES_MAX_SCALE, 1.0);
+		// The dead band around the frame budget (double)
+		settings.put(DYN_RES_HYSTERESIS, 0.15);
+		// The number of bands to split frame rendering into (int)
+		settings.put(RENDER_TILES, 1);
 		
 	}
 
@@ -0,0 +1,187 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.util.Arrays;
+
+import xyz.digitalcookies.objective.Game;
+
+/** Advances all active animators once per frame from a single clock (the
+ * time since the game was started.) Animators are kept in a compact array
+ * and advanced together before the frame is rendered, so rendering an
+ * animation only has to read the frame that was already worked out for it.
+ * <br>
+ * <br>An animator becomes active the first time it is rendered, and is
+ * dropped again after it has not been rendered for {@link #IDLE_FRAMES}
+ * frames or when its animation finishes, so animators that are no longer
+ * used do not need to be removed by hand. An animator that is not active
+ * does not advance.
+ * <br>
+ * <br>Each animator belongs to an {@link AnimationGroup}, which can be
+ * paused or time scaled to affect all of its animators at once.
+ * @author Bryan Charles Bettis
+ */
+public class AnimationClock
+{
+	/** The number of frames an animator can go without being rendered
+	 * before it stops being advanced.
+	 */
+	public static final int IDLE_FRAMES = 120;
+	
+	/** The group animators are in unless set otherwise. */
+	private static final AnimationGroup defaultGroup = new AnimationGroup();
+	/** The active animators, packed at the start of the array. */
+	private static Animator[] animators = new Animator[64];
+	/** The number of active animators. */
+	private static int count = 0;
+	/** The groups of the active animators, used once per frame. */
+	private static AnimationGroup[] groups = new AnimationGroup[8];
+	/** The number of frames that have been advanced. */
+	private static volatile long frame = 0;
+	/** The game time of the last advance, or -1 if not advanced yet. */
+	private static long lastTime = -1;
+	
+	/** Constructor hidden because this is an exclusively-static class. */
+	private AnimationClock()
+	{
+	}
+	
+	/** Get the group animators are in unless they are set to another group.
+	 * @return the default animation group
+	 */
+	public static AnimationGroup getDefaultGroup()
+	{
+		return defaultGroup;
+	}
+	
+	/** Get the number of animators currently being advanced.
+	 * @return the number of active animators
+	 */
+	public static synchronized int getActiveCount()
+	{
+		return count;
+	}
+	
+	/** Stop advancing an animator, until it is rendered again.
+	 * @param animator the animator to remove
+	 */
+	public static synchronized void remove(Animator animator)
+	{
+		int index = animator.clockIndex;
+		if (index < 0 || index >= count || animators[index] != animator)
+		{
+			return;
+		}
+		// Move the last animator into the empty slot
+		--count;
+		Animator last = animators[count];
+		animators[index] = last;
+		last.clockIndex = index;
+		animators[count] = null;
+		animator.clockIndex = -1;
+	}
+	
+	/** Mark an animator as rendered this frame, making it active if it was
+	 * not already. Called by animators when they are rendered.
+	 * @param animator the animator being rendered
+	 */
+	static void touch(Animator animator)
+	{
+		animator.lastRendered = frame;
+		// Quick check without the lock, the common case
+		if (animator.clockIndex >= 0)
+		{
+			return;
+		}
+		synchronized (AnimationClock.class)
+		{
+			if (animator.clockIndex >= 0)
+			{
+				return;
+			}
+			if (count == animators.length)
+			{
+				animators = Arrays.copyOf(animators, count * 2);
+			}
+			animator.clockIndex = count;
+			animators[count++] = animator;
+		}
+	}
+	
+	/** Advance all active animators by the game time that passed since the
+	 * last frame. Called once per frame before anything is rendered.
+	 */
+	static synchronized void advance()
+	{
+		long now = Game.getTimeNano();
+		// Negative when the game timer was restarted
+		double elapsed = lastTime < 0 || now < lastTime ? 0 : (now - lastTime) / 1000000.0;
+		lastTime = now;
+		long current = frame;
+		// Work out the elapsed time of each group once
+		int groupCount = 0;
+		defaultGroup.beginFrame(elapsed);
+		for (int i = 0; i < count; ++i)
+		{
+			AnimationGroup group = animators[i].group;
+			if (group == defaultGroup || containsGroup(group, groupCount))
+			{
+				continue;
+			}
+			if (groupCount == groups.length)
+			{
+				groups = Arrays.copyOf(groups, groupCount * 2);
+			}
+			group.beginFrame(elapsed);
+			groups[groupCount++] = group;
+		}
+		Arrays.fill(groups, 0, groupCount, null);
+		for (int i = 0; i < count; )
+		{
+			Animator animator = animators[i];
+			if (animator.isAnimationDone() || current - animator.lastRendered > IDLE_FRAMES)
+			{
+				// Fills the slot with the last animator, so check it again
+				remove(animator);
+				continue;
+			}
+			double groupElapsed = animator.group.getFrameElapsed();
+			if (groupElapsed > 0)
+			{
+				animator.advance(groupElapsed);
+			}
+			++i;
+		}
+		frame = current + 1;
+	}
+	
+	/** Check if a group has already been started this frame.
+	 * @param group the group to look for
+	 * @param groupCount the number of groups started so far
+	 * @return true if the group is in the list of started groups
+	 */
+	private static boolean containsGroup(AnimationGroup group, int groupCount)
+	{
+		for (int i = 0; i < groupCount; ++i)
+		{
+			if (groups[i] == group)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
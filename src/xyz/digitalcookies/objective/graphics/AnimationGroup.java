@@ -0,0 +1,90 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+/** A group of animators that are paused and time scaled together, such as
+ * all animations in a scene or all GUI animations. Animators are in the
+ * {@link AnimationClock#getDefaultGroup() default group} unless changed
+ * with {@link Animator#setGroup(AnimationGroup)}.
+ * @author Bryan Charles Bettis
+ */
+public class AnimationGroup
+{
+	/** How fast time passes for this group (1.0 is normal speed.) */
+	private volatile double timeScale;
+	/** If time is stopped for this group. */
+	private volatile boolean paused;
+	/** The time that passed for this group during the current frame. */
+	private double frameElapsed;
+	
+	/** Create a group running at normal speed. */
+	public AnimationGroup()
+	{
+		timeScale = 1.0;
+		paused = false;
+		frameElapsed = 0;
+	}
+	
+	/** Get how fast time passes for this group.
+	 * @return the time scale (1.0 is normal speed)
+	 */
+	public double getTimeScale()
+	{
+		return timeScale;
+	}
+	
+	/** Set how fast time passes for this group, such as 0.5 for slow motion.
+	 * @param timeScale the time scale (1.0 is normal speed, negative values
+	 * 		are treated as 0)
+	 */
+	public void setTimeScale(double timeScale)
+	{
+		this.timeScale = Math.max(timeScale, 0);
+	}
+	
+	/** Check if this group is paused.
+	 * @return true if the animators in this group are not advancing
+	 */
+	public boolean isPaused()
+	{
+		return paused;
+	}
+	
+	/** Pause or resume all animators in this group.
+	 * @param paused true to stop the animators in this group from advancing
+	 */
+	public void setPaused(boolean paused)
+	{
+		this.paused = paused;
+	}
+	
+	/** Work out how much time passed for this group this frame. Called by
+	 * the animation clock once per frame, before advancing the animators.
+	 * @param elapsed the real time that passed, in milliseconds
+	 */
+	void beginFrame(double elapsed)
+	{
+		frameElapsed = paused ? 0 : elapsed * timeScale;
+	}
+	
+	/** Get the time that passed for this group this frame.
+	 * @return the scaled elapsed time, in milliseconds
+	 */
+	double getFrameElapsed()
+	{
+		return frameElapsed;
+	}
+}
@@ -0,0 +1,39 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+/** Receives events from an Animator as it is advanced by the
+ * {@link AnimationClock}. Events are sent from the rendering thread, once
+ * per frame at most, before anything is rendered for the frame.
+ * @author Bryan Charles Bettis
+ */
+public interface AnimationListener
+{
+	/** Called when an animator changes to a different frame.
+	 * @param animator the animator that changed frames
+	 * @param previousFrame the frame that was being shown
+	 * @param newFrame the frame that will be shown next
+	 */
+	public void frameChanged(Animator animator, int previousFrame, int newFrame);
+	
+	/** Called when an animator that is not looping reaches the end of its
+	 * animation. Does nothing by default.
+	 * @param animator the animator that finished
+	 */
+	public default void animationFinished(Animator animator)
+	{
+	}
+}
@@ -15,8 +15,14 @@
 
 package xyz.digitalcookies.objective.graphics;
 
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /** The base class for all graphics classes that handle animating
  * things on the screen, like rotation or image-frame-based.
+ * Animators that change over time should override
+ * {@link #advance(double)} and call {@link #markRendered()} when rendered,
+ * so they are advanced by the {@link AnimationClock} with all the other
+ * animators.
  * @author Bryan Charles Bettis
  */
 public abstract class Animator
@@ -29,13 +35,27 @@ public abstract class Animator
 	 * and the animation is not looping. Subclasses should directly set this
 	 * when their animation is complete and they are not set to loop.
 	 */
-	protected boolean isFinished;
+	protected volatile boolean isFinished;
+	/** The group used for pausing and time scaling this animator. */
+	volatile AnimationGroup group;
+	/** The index of this animator in the animation clock, or -1 if it is
+	 * not being advanced.
+	 */
+	volatile int clockIndex;
+	/** The clock frame this animator was last rendered during. */
+	volatile long lastRendered;
+	/** The listeners notified of frame changes. */
+	private final CopyOnWriteArrayList<AnimationListener> listeners;
 	
 	/** Basic constructor. */
 	public Animator()
 	{
 		setLooping(false);
 		isFinished =  false;
+		group = AnimationClock.getDefaultGroup();
+		clockIndex = -1;
+		lastRendered = 0;
+		listeners = new CopyOnWriteArrayList<AnimationListener>();
 	}
 	
 	/** Called to render an animation, similar to the render(...) method
@@ -73,4 +93,78 @@ public abstract class Animator
 	{
 		return isFinished;
 	}
+	
+	/** Get the group this animator is in.
+	 * @return the animation group
+	 */
+	public AnimationGroup getGroup()
+	{
+		return group;
+	}
+	
+	/** Move this animator to another group, so it is paused and time scaled
+	 * with the other animators in that group.
+	 * @param group the new group, or null for the
+	 * 		{@link AnimationClock#getDefaultGroup() default group}
+	 */
+	public void setGroup(AnimationGroup group)
+	{
+		this.group = group == null ? AnimationClock.getDefaultGroup() : group;
+	}
+	
+	/** Add a listener to be notified when this animator changes frames.
+	 * @param listener the listener to add
+	 */
+	public void addAnimationListener(AnimationListener listener)
+	{
+		listeners.addIfAbsent(listener);
+	}
+	
+	/** Remove a listener added with
+	 * {@link #addAnimationListener(AnimationListener)}.
+	 * @param listener the listener to remove
+	 */
+	public void removeAnimationListener(AnimationListener listener)
+	{
+		listeners.remove(listener);
+	}
+	
+	/** Advance the animation by the specified amount of time. Called once
+	 * per frame by the animation clock (before anything is rendered) while
+	 * this animator is active, with the time already scaled by its group.
+	 * Does nothing by default.
+	 * @param elapsed the time that passed, in milliseconds
+	 */
+	protected void advance(double elapsed)
+	{
+	}
+	
+	/** Called by subclasses when rendering, so this animator keeps being
+	 * advanced by the animation clock.
+	 */
+	protected void markRendered()
+	{
+		AnimationClock.touch(this);
+	}
+	
+	/** Notify the listeners that this animator changed frames.
+	 * @param previousFrame the frame that was being shown
+	 * @param newFrame the frame that will be shown next
+	 */
+	protected void fireFrameChanged(int previousFrame, int newFrame)
+	{
+		for (AnimationListener listener : listeners)
+		{
+			listener.frameChanged(this, previousFrame, newFrame);
+		}
+	}
+	
+	/** Notify the listeners that this animator finished its animation. */
+	protected void fireAnimationFinished()
+	{
+		for (AnimationListener listener : listeners)
+		{
+			listener.animationFinished(this);
+		}
+	}
 }
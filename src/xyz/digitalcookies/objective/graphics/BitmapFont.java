@@ -0,0 +1,595 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextAttribute;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Draws text from glyphs that were rasterized once into an atlas image,
+ * instead of laying out and rasterizing the text every time it is drawn
+ * like {@link TextDrawer}. Each character is drawn as a single unscaled
+ * image region, so drawing lots of short changing strings (such as debug
+ * info or damage numbers) is about as cheap as drawing the same number of
+ * small sprites.
+ * <br>
+ * <br>Only the characters the font was created with can be drawn; other
+ * characters are drawn as '?' (or skipped if '?' is not included.)
+ * Kerning is only applied if the font has the
+ * {@link TextAttribute#KERNING} attribute turned on. Newlines start a new
+ * line of text.
+ * <br>
+ * <br>Text is drawn in the color of the atlas (white) or tinted to another
+ * color; a few of the most recently used tinted copies of the atlas are
+ * kept so tinting is only done once per color.
+ * @author Bryan Charles Bettis
+ */
+public class BitmapFont
+{
+	/** The characters included when none are specified (printable ASCII
+	 * and Latin-1.)
+	 */
+	public static final String DEFAULT_CHARACTERS = createDefaultCharacters();
+	/** The number of tinted copies of the atlas to keep. */
+	private static final int TINT_CACHE_SIZE = 8;
+	/** Only pairs of the first this many characters are kerned. */
+	private static final int MAX_KERNED = 128;
+	/** Empty space around each glyph in the atlas, in pixels. */
+	private static final int PADDING = 1;
+	
+	/** The font the glyphs were rasterized from. */
+	private final Font font;
+	/** The rasterized glyphs, in white. */
+	private final BufferedImage atlas;
+	/** The glyph index of each character, or -1 if not included. */
+	private final int[] glyphOf;
+	/** The x coordinate of each glyph in the atlas. */
+	private final int[] srcX;
+	/** The y coordinate of each glyph in the atlas. */
+	private final int[] srcY;
+	/** The width of each glyph in the atlas. */
+	private final int[] glyphWidth;
+	/** The height of each glyph in the atlas. */
+	private final int[] glyphHeight;
+	/** The x offset of each glyph from the pen position. */
+	private final int[] offsetX;
+	/** The y offset of each glyph from the baseline. */
+	private final int[] offsetY;
+	/** How far the pen moves after each glyph. */
+	private final float[] advance;
+	/** The adjustment between each pair of glyphs, or null if not kerned. */
+	private final float[] kerning;
+	/** The number of glyphs that are kerned. */
+	private final int kernedCount;
+	/** The glyph used for characters that are not included, or -1. */
+	private final int missingGlyph;
+	/** The distance from the top of a line to the baseline. */
+	private final int ascent;
+	/** The distance between the tops of two lines. */
+	private final int lineHeight;
+	/** Recently used tinted copies of the atlas, by ARGB color. */
+	private final LinkedHashMap<Integer, BufferedImage> tints;
+	
+	/** Create a bitmap font with the default characters.
+	 * @param font the font (including its size) to rasterize
+	 */
+	public BitmapFont(Font font)
+	{
+		this(font, DEFAULT_CHARACTERS);
+	}
+	
+	/** Create a bitmap font with only the specified characters.
+	 * @param font the font (including its size) to rasterize
+	 * @param characters the characters that can be drawn
+	 */
+	public BitmapFont(Font font, String characters)
+	{
+		this.font = font;
+		char[] chars = uniqueChars(characters);
+		int count = chars.length;
+		FontRenderContext frc = new FontRenderContext(null, true, true);
+		// Find the size and placement of every glyph
+		int max = 0;
+		for (char c : chars)
+		{
+			max = Math.max(max, c);
+		}
+		glyphOf = new int[max + 1];
+		Arrays.fill(glyphOf, -1);
+		srcX = new int[count];
+		srcY = new int[count];
+		glyphWidth = new int[count];
+		glyphHeight = new int[count];
+		offsetX = new int[count];
+		offsetY = new int[count];
+		advance = new float[count];
+		GlyphVector[] vectors = new GlyphVector[count];
+		int area = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			glyphOf[chars[i]] = i;
+			GlyphVector gv = font.createGlyphVector(frc, new char[]{chars[i]});
+			Rectangle bounds = gv.getGlyphPixelBounds(0, frc, 0, 0);
+			vectors[i] = gv;
+			glyphWidth[i] = bounds.width;
+			glyphHeight[i] = bounds.height;
+			offsetX[i] = bounds.x;
+			offsetY[i] = bounds.y;
+			advance[i] = gv.getGlyphMetrics(0).getAdvanceX();
+			area += (bounds.width + PADDING) * (bounds.height + PADDING);
+		}
+		// Pack the glyphs into rows
+		int atlasWidth = Math.max(64, Integer.highestOneBit((int) Math.sqrt(area) * 2));
+		int penX = PADDING;
+		int penY = PADDING;
+		int rowHeight = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			if (penX + glyphWidth[i] + PADDING > atlasWidth)
+			{
+				penX = PADDING;
+				penY += rowHeight + PADDING;
+				rowHeight = 0;
+			}
+			srcX[i] = penX;
+			srcY[i] = penY;
+			penX += glyphWidth[i] + PADDING;
+			rowHeight = Math.max(rowHeight, glyphHeight[i]);
+		}
+		atlas = ImageDrawer.createImage(
+				atlasWidth,
+				Math.max(penY + rowHeight + PADDING, 1)
+				);
+		Graphics2D g = atlas.createGraphics();
+		g.setRenderingHint(
+				RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+				);
+		g.setRenderingHint(
+				RenderingHints.KEY_FRACTIONALMETRICS,
+				RenderingHints.VALUE_FRACTIONALMETRICS_ON
+				);
+		g.setColor(Color.WHITE);
+		for (int i = 0; i < count; ++i)
+		{
+			if (glyphWidth[i] > 0 && glyphHeight[i] > 0)
+			{
+				g.drawGlyphVector(vectors[i], srcX[i] - offsetX[i], srcY[i] - offsetY[i]);
+			}
+		}
+		g.dispose();
+		missingGlyph = '?' < glyphOf.length ? glyphOf['?'] : -1;
+		LineMetrics lm = font.getLineMetrics(chars, 0, count, frc);
+		ascent = (int) Math.ceil(lm.getAscent());
+		lineHeight = (int) Math.ceil(lm.getHeight());
+		// Work out the kerning between pairs, if the font uses kerning
+		if (TextAttribute.KERNING_ON.equals(font.getAttributes().get(TextAttribute.KERNING)))
+		{
+			kernedCount = Math.min(count, MAX_KERNED);
+			kerning = createKerning(chars, frc);
+		}
+		else
+		{
+			kernedCount = 0;
+			kerning = null;
+		}
+		tints = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest)
+			{
+				return size() > TINT_CACHE_SIZE;
+			}
+		};
+	}
+	
+	/** Draw text in the color of the atlas (white).
+	 * @param event the render event to draw with
+	 * @param text the text to draw
+	 * @param x the left edge of the text
+	 * @param y the top of the text
+	 */
+	public void drawString(RenderEvent event, CharSequence text, int x, int y)
+	{
+		drawString(event, text, x, y, atlas);
+	}
+	
+	/** Draw text in the specified color.
+	 * @param event the render event to draw with
+	 * @param text the text to draw
+	 * @param x the left edge of the text
+	 * @param y the top of the text
+	 * @param color the color of the text
+	 */
+	public void drawString(RenderEvent event, CharSequence text, int x, int y, Color color)
+	{
+		drawString(event, text, x, y, getTinted(color));
+	}
+	
+	/** Record drawing text into a command buffer, as a region of the atlas
+	 * for each character.
+	 * @param buffer the buffer to record into
+	 * @param text the text to draw
+	 * @param x the left edge of the text
+	 * @param y the top of the text
+	 * @param color the color of the text, or null for the color of the atlas
+	 */
+	public void drawString(RenderCommandBuffer buffer, CharSequence text, int x, int y, Color color)
+	{
+		BufferedImage img = color == null ? atlas : getTinted(color);
+		int length = text.length();
+		float penX = x;
+		int baseline = y + ascent;
+		int prev = -1;
+		for (int i = 0; i < length; ++i)
+		{
+			char c = text.charAt(i);
+			if (c == '\n')
+			{
+				penX = x;
+				baseline += lineHeight;
+				prev = -1;
+				continue;
+			}
+			int glyph = getGlyph(c);
+			if (glyph < 0)
+			{
+				continue;
+			}
+			penX += getKerning(prev, glyph);
+			if (glyphWidth[glyph] > 0)
+			{
+				buffer.drawImageRegion(
+						img,
+						Math.round(penX) + offsetX[glyph],
+						baseline + offsetY[glyph],
+						srcX[glyph],
+						srcY[glyph],
+						glyphWidth[glyph],
+						glyphHeight[glyph]
+						);
+			}
+			penX += advance[glyph];
+			prev = glyph;
+		}
+	}
+	
+	/** Get the width the specified text would be drawn with. For multiple
+	 * lines, this is the width of the longest line.
+	 * @param text the text to measure
+	 * @return the width of the text, in pixels
+	 */
+	public int getStringWidth(CharSequence text)
+	{
+		int length = text.length();
+		float width = 0;
+		float penX = 0;
+		int prev = -1;
+		for (int i = 0; i < length; ++i)
+		{
+			char c = text.charAt(i);
+			if (c == '\n')
+			{
+				width = Math.max(width, penX);
+				penX = 0;
+				prev = -1;
+				continue;
+			}
+			int glyph = getGlyph(c);
+			if (glyph < 0)
+			{
+				continue;
+			}
+			penX += getKerning(prev, glyph) + advance[glyph];
+			prev = glyph;
+		}
+		return (int) Math.ceil(Math.max(width, penX));
+	}
+	
+	/** Get the distance between the tops of two lines of text.
+	 * @return the line height, in pixels
+	 */
+	public int getLineHeight()
+	{
+		return lineHeight;
+	}
+	
+	/** Get the distance from the top of a line of text to its baseline.
+	 * @return the ascent, in pixels
+	 */
+	public int getAscent()
+	{
+		return ascent;
+	}
+	
+	/** Get the font this bitmap font was created from.
+	 * @return the original font
+	 */
+	public Font getFont()
+	{
+		return font;
+	}
+	
+	/** Get the image containing the rasterized glyphs.
+	 * @return the glyph atlas
+	 */
+	public BufferedImage getAtlas()
+	{
+		return atlas;
+	}
+	
+	/** Draw text using the specified copy of the atlas.
+	 * @param event the render event to draw with
+	 * @param text the text to draw
+	 * @param x the left edge of the text
+	 * @param y the top of the text
+	 * @param img the atlas to draw the glyphs from
+	 */
+	private void drawString(RenderEvent event, CharSequence text, int x, int y, BufferedImage img)
+	{
+		Graphics2D g = event.getGC();
+		BufferedImage target = event.getTargetImage();
+		// Check for the direct pixel path once for the whole string
+		boolean direct = ImageDrawer.isFastBlitEnabled()
+				&& target != null
+				&& PixelBlitter.canBlit(g, img, target);
+		int tx = 0;
+		int ty = 0;
+		int left = 0;
+		int top = 0;
+		int right = 0;
+		int bottom = 0;
+		if (direct)
+		{
+			RenderProfiler.countDrawCall();
+			AffineTransform at = g.getTransform();
+			tx = (int) at.getTranslateX();
+			ty = (int) at.getTranslateY();
+			right = target.getWidth();
+			bottom = target.getHeight();
+			Rectangle clip = g.getClipBounds();
+			if (clip != null)
+			{
+				left = Math.max(left, clip.x + tx);
+				top = Math.max(top, clip.y + ty);
+				right = Math.min(right, clip.x + clip.width + tx);
+				bottom = Math.min(bottom, clip.y + clip.height + ty);
+			}
+		}
+		int length = text.length();
+		float penX = x;
+		int baseline = y + ascent;
+		int prev = -1;
+		for (int i = 0; i < length; ++i)
+		{
+			char c = text.charAt(i);
+			if (c == '\n')
+			{
+				penX = x;
+				baseline += lineHeight;
+				prev = -1;
+				continue;
+			}
+			int glyph = getGlyph(c);
+			if (glyph < 0)
+			{
+				continue;
+			}
+			penX += getKerning(prev, glyph);
+			if (glyphWidth[glyph] > 0)
+			{
+				int dx = Math.round(penX) + offsetX[glyph];
+				int dy = baseline + offsetY[glyph];
+				if (direct)
+				{
+					PixelBlitter.blit(
+							img,
+							srcX[glyph],
+							srcY[glyph],
+							glyphWidth[glyph],
+							glyphHeight[glyph],
+							dx + tx,
+							dy + ty,
+							target,
+							left,
+							top,
+							right,
+							bottom
+							);
+				}
+				else
+				{
+					ImageDrawer.drawRegion(
+							event,
+							img,
+							dx,
+							dy,
+							srcX[glyph],
+							srcY[glyph],
+							glyphWidth[glyph],
+							glyphHeight[glyph]
+							);
+				}
+			}
+			penX += advance[glyph];
+			prev = glyph;
+		}
+	}
+	
+	/** Get the glyph to draw for a character.
+	 * @param c the character
+	 * @return the glyph index, or -1 to skip the character
+	 */
+	private int getGlyph(char c)
+	{
+		if (c < glyphOf.length)
+		{
+			int glyph = glyphOf[c];
+			if (glyph >= 0)
+			{
+				return glyph;
+			}
+		}
+		return missingGlyph;
+	}
+	
+	/** Get the adjustment to the pen position between two glyphs.
+	 * @param prev the previous glyph, or -1 at the start of a line
+	 * @param glyph the next glyph
+	 * @return the kerning, in pixels
+	 */
+	private float getKerning(int prev, int glyph)
+	{
+		if (kerning == null || prev < 0 || prev >= kernedCount || glyph >= kernedCount)
+		{
+			return 0;
+		}
+		return kerning[prev * kernedCount + glyph];
+	}
+	
+	/** Get a copy of the atlas tinted to the specified color, creating it if
+	 * it was not recently used.
+	 * @param color the color to tint to
+	 * @return the tinted atlas
+	 */
+	private BufferedImage getTinted(Color color)
+	{
+		int argb = color.getRGB();
+		if (argb == 0xFFFFFFFF)
+		{
+			return atlas;
+		}
+		synchronized (tints)
+		{
+			BufferedImage tinted = tints.get(argb);
+			if (tinted == null)
+			{
+				tinted = createTinted(argb);
+				tints.put(argb, tinted);
+			}
+			return tinted;
+		}
+	}
+	
+	/** Create a copy of the atlas tinted to the specified color.
+	 * @param argb the color to tint to
+	 * @return the tinted atlas
+	 */
+	private BufferedImage createTinted(int argb)
+	{
+		BufferedImage tinted = ImageDrawer.createImage(
+				atlas.getWidth(),
+				atlas.getHeight()
+				);
+		int[] src = ((DataBufferInt) atlas.getRaster().getDataBuffer()).getData();
+		int[] dst = ((DataBufferInt) tinted.getRaster().getDataBuffer()).getData();
+		int alpha = argb >>> 24;
+		int opaque = argb | 0xFF000000;
+		for (int i = 0; i < src.length; ++i)
+		{
+			// The atlas is white, so its alpha is the glyph coverage
+			int coverage = src[i] >>> 24;
+			if (coverage != 0)
+			{
+				dst[i] = PixelBlitter.mulPacked(opaque, coverage * alpha / 255);
+			}
+		}
+		return tinted;
+	}
+	
+	/** Work out the kerning between every pair of the kerned glyphs.
+	 * @param chars the characters of the glyphs
+	 * @param frc the context the glyphs were laid out with
+	 * @return the kerning table, or null if no pairs are kerned
+	 */
+	private float[] createKerning(char[] chars, FontRenderContext frc)
+	{
+		float[] table = new float[kernedCount * kernedCount];
+		boolean kerned = false;
+		char[] pair = new char[2];
+		for (int a = 0; a < kernedCount; ++a)
+		{
+			pair[0] = chars[a];
+			for (int b = 0; b < kernedCount; ++b)
+			{
+				pair[1] = chars[b];
+				GlyphVector gv = font.layoutGlyphVector(
+						frc,
+						pair,
+						0,
+						2,
+						Font.LAYOUT_LEFT_TO_RIGHT
+						);
+				float kern = (float) gv.getGlyphPosition(1).getX() - advance[a];
+				if (Math.abs(kern) > 0.01f)
+				{
+					table[a * kernedCount + b] = kern;
+					kerned = true;
+				}
+			}
+		}
+		return kerned ? table : null;
+	}
+	
+	/** Remove duplicate characters, keeping the first of each.
+	 * @param characters the characters to include
+	 * @return the characters without duplicates
+	 */
+	private static char[] uniqueChars(String characters)
+	{
+		StringBuilder sb = new StringBuilder(characters.length());
+		for (int i = 0; i < characters.length(); ++i)
+		{
+			char c = characters.charAt(i);
+			if (c != '\n' && sb.indexOf(String.valueOf(c)) < 0)
+			{
+				sb.append(c);
+			}
+		}
+		return sb.toString().toCharArray();
+	}
+	
+	/** Create the string of default characters.
+	 * @return printable ASCII and Latin-1 characters
+	 */
+	private static String createDefaultCharacters()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (char c = 32; c < 127; ++c)
+		{
+			sb.append(c);
+		}
+		for (char c = 161; c < 256; ++c)
+		{
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+}
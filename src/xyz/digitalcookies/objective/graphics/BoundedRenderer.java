@@ -24,6 +24,8 @@ public abstract class BoundedRenderer implements Renderer
 	/** If auto centering over the center of the main game window. */
 	private boolean autoCenterOverWindow;
 	private boolean enforceBounds;
+	/** The renderer panel this renderer is positioned by, if any. */
+	private RendererPanel parentPanel;
 	
 	/** Standard constructor. */
 	public BoundedRenderer()
@@ -131,7 +133,16 @@ public abstract class BoundedRenderer implements Renderer
 	 */
 	public void setWidth(int width)
 	{
+		if (this.width == width)
+		{
+			return;
+		}
 		this.width = width;
+		// The panel positioning this renderer needs to redo its layout
+		if (parentPanel != null)
+		{
+			parentPanel.invalidateLayout();
+		}
 	}
 	
 	/** Get the height.
@@ -147,7 +158,16 @@ public abstract class BoundedRenderer implements Renderer
 	 */
 	public void setHeight(int height)
 	{
+		if (this.height == height)
+		{
+			return;
+		}
 		this.height = height;
+		// The panel positioning this renderer needs to redo its layout
+		if (parentPanel != null)
+		{
+			parentPanel.invalidateLayout();
+		}
 	}
 	
 	public boolean isVisible()
@@ -209,6 +229,23 @@ public abstract class BoundedRenderer implements Renderer
 		}
 	}
 	
+	/** Get the renderer panel that positions this renderer.
+	 * @return the containing panel, or null if not in a panel
+	 */
+	RendererPanel getParentPanel()
+	{
+		return parentPanel;
+	}
+	
+	/** Set the renderer panel that positions this renderer, which will be
+	 * told to redo its layout when this renderer is resized.
+	 * @param panel the containing panel, or null when removed from a panel
+	 */
+	void setParentPanel(RendererPanel panel)
+	{
+		parentPanel = panel;
+	}
+	
 	/** Set the auto center coordinates for when it is enabled.
 	 * @param x the x coordinate to center over
 	 * @param y the y coordinate to center over
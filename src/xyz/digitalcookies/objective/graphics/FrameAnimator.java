@@ -17,10 +17,11 @@ package xyz.digitalcookies.objective.graphics;
 
 import java.awt.image.BufferedImage;
 
-import xyz.digitalcookies.objective.Game;
 import xyz.digitalcookies.objective.graphics.GraphicsManager;
 
-/** Handles animations using images as frames.
+/** Handles animations using images as frames. The current frame is
+ * advanced by the {@link AnimationClock} once per frame while the animation
+ * is being rendered, so rendering only draws the frame already chosen.
  * @author Bryan Charles Bettis
  */
 public class FrameAnimator extends Animator
@@ -30,13 +31,15 @@ public class FrameAnimator extends Animator
 	/** The current set of animation frames being drawn. */
 	private String currentSet;
 	/** The interval at which the animation frame changes. */
-	private long interval;
+	private volatile long interval;
 	/** The current frame of the animation. */
-	private int currFrame;
+	private volatile int currFrame;
 	/** The path to the current frame image. */
-	private String currFramePath;
-	/** The start time of the current frame. */
-	private long frameStart;
+	private volatile String currFramePath;
+	/** The time the current frame has been shown, in milliseconds. */
+	private double frameElapsed;
+	/** If the image of the current frame is known to exist. */
+	private volatile boolean frameChecked;
 	/** If rendered images should be centered over the specified coordinates
 	 * when rendering the animation.
 	 */
@@ -122,8 +125,12 @@ public class FrameAnimator extends Animator
 	@Override
 	public void renderAnimation(RenderEvent event, int x, int y)
 	{
-		// Update the current frame
-		selectFrame();
+		markRendered();
+		// Only needed before the clock has advanced this animator
+		if (!frameChecked)
+		{
+			checkFrame();
+		}
 		if (isFinished)
 		{
 			return;
@@ -198,7 +205,7 @@ public class FrameAnimator extends Animator
 		if (centerOverCoords)
 		{
 			ImageDrawer.drawGraphic(
-					event.getGC(),
+					event,
 					img,
 					x-imgWidth/2,
 					y-imgHeight/2,
@@ -209,7 +216,7 @@ public class FrameAnimator extends Animator
 		else
 		{
 			ImageDrawer.drawGraphic(
-					event.getGC(),
+					event,
 					img,
 					x,
 					y,
@@ -226,9 +233,10 @@ public class FrameAnimator extends Animator
 	 * verses when it is jumping.
 	 * @param setName the name of the new animation set
 	 */
-	public void setAnimationSet(String setName)
+	public synchronized void setAnimationSet(String setName)
 	{
 		currentSet = setName;
+		setFramePath();
 	}
 	
 	/** Set how many milliseconds should elapse between each animation
@@ -399,29 +407,62 @@ public class FrameAnimator extends Animator
 	 * <br><b>Note</b> that the first frame is 1, not 0.
 	 * @param frame the integer portion of the frame name
 	 */
-	public void setFrame(int frame)
+	public synchronized void setFrame(int frame)
 	{
 		isFinished = false;
 		currFrame = frame;
-		frameStart = (long) Game.getTimeMilli();
+		frameElapsed = 0;
+		setFramePath();
 	}
 	
-	/** Selects and updates what the next rendered frame is. */
-	private void selectFrame()
+	@Override
+	protected synchronized void advance(double elapsed)
 	{
-		// Increment the animation frame
-		if ((long) Game.getTimeMilli() - frameStart >= interval)
+		if (!frameChecked)
 		{
-			setFrame(currFrame+1);
+			checkFrame();
 		}
-		// Get the path to the current frame's image
-		setFramePath();
+		long interval = this.interval;
+		if (isFinished || interval <= 0)
+		{
+			return;
+		}
+		frameElapsed += elapsed;
+		int previous = currFrame;
+		while (frameElapsed >= interval && !isFinished)
+		{
+			frameElapsed -= interval;
+			currFrame += 1;
+			setFramePath();
+			checkFrame();
+			// Do not step through every frame after a long hitch
+			if (frameElapsed >= interval * 1000)
+			{
+				frameElapsed %= interval;
+			}
+		}
+		if (isFinished)
+		{
+			fireAnimationFinished();
+		}
+		else if (currFrame != previous)
+		{
+			fireFrameChanged(previous, currFrame);
+		}
+	}
+	
+	/** Check that the image of the current frame exists, going back to the
+	 * first frame when looping or finishing the animation otherwise.
+	 */
+	private synchronized void checkFrame()
+	{
+		frameChecked = true;
 		// If the image frame doesn't exist...
 		if (!GraphicsManager.getResManager().resExists(currFramePath))
 		{
-			if (isLooping())
+			if (isLooping() && currFrame != 1)
 			{
-				setFrame(1);
+				currFrame = 1;
 				setFramePath();
 			}
 			else
@@ -436,6 +477,7 @@ public class FrameAnimator extends Animator
 	 */
 	private void setFramePath()
 	{
+		frameChecked = false;
 		currFramePath = location + "/" + currentSet + "/" + "frame"
 				+ Integer.toString(currFrame) + ".png";
 	}
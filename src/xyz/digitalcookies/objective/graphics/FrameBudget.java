@@ -0,0 +1,177 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xyz.digitalcookies.objective.Settings;
+
+/** Keeps track of how much of the frame time budget (based on the
+ * TARGET_FPS setting) has been used, and decides if renderers should be
+ * drawn normally, drawn with their cheaper fallback, or skipped. Each
+ * renderer added to a layer has a priority; the lower the priority, the
+ * sooner it is degraded as the frame runs out of time. The budget used
+ * includes any amount the average frame has been going over the budget,
+ * so renderers are degraded from the start of a frame when the game is
+ * consistently running slow.
+ * <br>
+ * <br>Renderers with {@link #PRIORITY_NORMAL} or higher are never skipped,
+ * and {@link #PRIORITY_CRITICAL} renderers are never degraded. The
+ * FRAME_BUDGET setting turns degrading off entirely.
+ * @author Bryan Charles Bettis
+ */
+public class FrameBudget
+{
+	/** Purely decorative renderers (particles, etc.), the first to be
+	 * degraded.
+	 */
+	public static final int PRIORITY_DECORATIVE = 0;
+	/** Renderers that can be degraded before most others. */
+	public static final int PRIORITY_LOW = 1;
+	/** The priority of renderers added without specifying one. */
+	public static final int PRIORITY_NORMAL = 2;
+	/** Renderers that only use their fallback when the budget is used up. */
+	public static final int PRIORITY_HIGH = 3;
+	/** Renderers that are always drawn normally (GUIs, etc.) */
+	public static final int PRIORITY_CRITICAL = 4;
+	/** Draw the renderer normally. */
+	public static final int FULL = 0;
+	/** Draw the fallback of the renderer instead. */
+	public static final int FALLBACK = 1;
+	/** Do not draw the renderer this frame. */
+	public static final int SKIP = 2;
+	/** The fraction of the budget used before each priority switches to its
+	 * fallback, by priority.
+	 */
+	private static final double[] FALLBACK_AT = {0.5, 0.7, 0.9, 1.0};
+	/** The fraction of the budget used before each priority is skipped,
+	 * by priority.
+	 */
+	private static final double[] SKIP_AT = {0.75, 0.9};
+	
+	/** If degrading is enabled for the current frame. */
+	private static volatile boolean enabled = false;
+	/** The start time of the current frame. */
+	private static volatile long frameStart = 0;
+	/** The time budget of a frame, in nanoseconds. */
+	private static volatile long budgetNanos = 16000000;
+	/** The amount the average frame goes over the budget, in nanoseconds. */
+	private static volatile double avgOverrunNanos = 0;
+	/** The number of fallbacks rendered so far this frame. */
+	private static final AtomicInteger fallbacks = new AtomicInteger();
+	/** The number of renderers skipped so far this frame. */
+	private static final AtomicInteger skips = new AtomicInteger();
+	/** The number of fallbacks rendered last frame. */
+	private static volatile int lastFallbacks = 0;
+	/** The number of renderers skipped last frame. */
+	private static volatile int lastSkips = 0;
+	/** The number of frames begun so far. */
+	private static volatile long frame = 0;
+	
+	/** Constructor hidden because this is an exclusively-static class. */
+	private FrameBudget()
+	{
+	}
+	
+	/** Decide how a renderer should be drawn, based on how much of the
+	 * frame budget has been used so far.
+	 * @param priority the priority of the renderer
+	 * @param hasFallback if the renderer has a fallback renderer
+	 * @return {@link #FULL}, {@link #FALLBACK}, or {@link #SKIP}
+	 */
+	public static int decide(int priority, boolean hasFallback)
+	{
+		if (!enabled || priority >= PRIORITY_CRITICAL)
+		{
+			return FULL;
+		}
+		double used = getUsedFraction();
+		if (priority < SKIP_AT.length && used >= SKIP_AT[Math.max(priority, 0)])
+		{
+			skips.incrementAndGet();
+			return SKIP;
+		}
+		if (hasFallback && used >= FALLBACK_AT[Math.max(priority, 0)])
+		{
+			fallbacks.incrementAndGet();
+			return FALLBACK;
+		}
+		return FULL;
+	}
+	
+	/** Get the fraction of the frame budget that has been used so far,
+	 * including the amount the average frame goes over the budget.
+	 * @return the used fraction of the budget (may be more than 1.0)
+	 */
+	public static double getUsedFraction()
+	{
+		long elapsed = System.nanoTime() - frameStart;
+		return (elapsed + avgOverrunNanos) / budgetNanos;
+	}
+	
+	/** Get the number of renderers drawn with their fallback last frame.
+	 * @return the number of fallbacks rendered
+	 */
+	public static int getLastFallbackCount()
+	{
+		return lastFallbacks;
+	}
+	
+	/** Get the number of renderers skipped last frame.
+	 * @return the number of skipped renderers
+	 */
+	public static int getLastSkipCount()
+	{
+		return lastSkips;
+	}
+	
+	/** Get the number of the current frame, so renderers drawn by several
+	 * bands can make one decision per frame.
+	 * @return the number of frames begun so far
+	 */
+	static long getFrame()
+	{
+		return frame;
+	}
+	
+	/** Called at the start of each frame by the graphics system. */
+	static void beginFrame()
+	{
+		enabled = (boolean) Settings.getSetting(Settings.FRAME_BUDGET);
+		int fps = (int) Settings.getSetting(Settings.TARGET_FPS);
+		if (fps > 0)
+		{
+			budgetNanos = 1000000000L / fps;
+		}
+		fallbacks.set(0);
+		skips.set(0);
+		frameStart = System.nanoTime();
+		++frame;
+	}
+	
+	/** Called at the end of each frame by the graphics system. */
+	static void endFrame()
+	{
+		long overrun = Math.max(
+				0,
+				System.nanoTime() - frameStart - budgetNanos
+				);
+		// Smooth out the overrun so a single slow frame has little effect
+		avgOverrunNanos = avgOverrunNanos * 0.9 + overrun * 0.1;
+		lastFallbacks = fallbacks.get();
+		lastSkips = skips.get();
+	}
+}
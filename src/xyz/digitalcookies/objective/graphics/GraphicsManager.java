@@ -42,8 +42,6 @@ public class GraphicsManager extends xyz.digitalcookies.objective.Subsystem
 	 * TODO make this set-able by developers (custom resource format handling)
 	 */
 	private static GraphicsResources grm;
-	/** The current average FPS. */
-	private static double FPS = -1;
 	
 	/** Normal graphics system setup. */
 	public GraphicsManager()
@@ -112,11 +110,30 @@ public class GraphicsManager extends xyz.digitalcookies.objective.Subsystem
 	}
 	
 	/** Get the average FPS.
-	 * @return the average FPS for rendering
+	 * @return the average FPS for rendering, or -1 if nothing has been
+	 * 		rendered yet
 	 */
 	public static double getAvgFPS()
 	{
-		return FPS;
+		if (mainLayers == null)
+		{
+			return -1;
+		}
+		return mainLayers.getAvgFPS();
+	}
+	
+	/** Get the resolution scale the main layer set is being rendered at,
+	 * which is below 1.0 when dynamic resolution (the DYN_RES setting) has
+	 * lowered it.
+	 * @return the resolution scale, where 1.0 is the full window size
+	 */
+	public static double getRenderScale()
+	{
+		if (mainLayers == null)
+		{
+			return 1.0;
+		}
+		return mainLayers.getRenderScale();
 	}
 	
 	/** Get the JFrame for the primary window.
@@ -24,6 +24,11 @@ import java.awt.image.BufferedImage;
  */
 public class ImageDrawer
 {
+	/** If unscaled draws onto a known integer ARGB image should write the
+	 * pixels directly instead of going through Graphics2D.
+	 */
+	private static volatile boolean fastBlit = true;
+	
 	/** Constructor hidden to prevent instantiation. */
 	private ImageDrawer()
 	{
@@ -80,6 +85,118 @@ public class ImageDrawer
 	 */
 	public static void drawGraphic(Graphics2D g, BufferedImage i, int x, int y, int width, int height)
 	{
+		RenderProfiler.countDrawCall();
 		g.drawImage(i,x,y,width,height,null);
 	}
+	
+	/** Create an image that the render event draw methods can draw (and
+	 * draw to) by writing the pixels directly. Images loaded by the graphics
+	 * resource handler are created this way. Java2D stops accelerating an
+	 * image once its pixels have been used directly, so images that are
+	 * mostly drawn with Java2D (such as scaled or rotated) should be created
+	 * normally instead.
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @return a new TYPE_INT_ARGB_PRE image
+	 */
+	public static BufferedImage createImage(int width, int height)
+	{
+		return PixelBlitter.createImage(width, height);
+	}
+	
+	/** Draws a BufferedImage using the graphics context of the specified
+	 * render event. When the image is drawn at its original size, and both
+	 * the image and the target image of the event were created with
+	 * {@link #createImage(int, int)} (like the tiled rendering back buffer),
+	 * the pixels are blended directly into the target image instead of going
+	 * through Graphics2D.drawImage.
+	 * @param event the render event to draw with
+	 * @param i the image to draw
+	 * @param x the x coordinate of the top left corner
+	 * @param y the y coordinate of the top left corner
+	 * @param width the width to draw the image as
+	 * @param height the height to draw the image as
+	 */
+	public static void drawGraphic(RenderEvent event, BufferedImage i, int x, int y, int width, int height)
+	{
+		Graphics2D g = event.getGC();
+		BufferedImage target = event.getTargetImage();
+		if (
+				fastBlit
+				&& target != null
+				&& width == i.getWidth()
+				&& height == i.getHeight()
+				&& PixelBlitter.canBlit(g, i, target)
+				)
+		{
+			RenderProfiler.countDrawCall();
+			PixelBlitter.blit(g, i, 0, 0, width, height, x, y, target);
+		}
+		else
+		{
+			drawGraphic(g, i, x, y, width, height);
+		}
+	}
+	
+	/** Draws part of a BufferedImage (such as a sprite from a sprite sheet)
+	 * at its original size, using the direct pixel path under the same
+	 * conditions as {@link #drawGraphic(RenderEvent, BufferedImage, int, int,
+	 * int, int)}.
+	 * @param event the render event to draw with
+	 * @param i the image containing the region to draw
+	 * @param dx the x coordinate to draw the region at
+	 * @param dy the y coordinate to draw the region at
+	 * @param sx the x coordinate of the region within the image
+	 * @param sy the y coordinate of the region within the image
+	 * @param width the width of the region
+	 * @param height the height of the region
+	 */
+	public static void drawRegion(RenderEvent event, BufferedImage i, int dx, int dy, int sx, int sy, int width, int height)
+	{
+		RenderProfiler.countDrawCall();
+		Graphics2D g = event.getGC();
+		BufferedImage target = event.getTargetImage();
+		if (
+				fastBlit
+				&& target != null
+				&& PixelBlitter.canBlit(g, i, target)
+				)
+		{
+			PixelBlitter.blit(g, i, sx, sy, width, height, dx, dy, target);
+		}
+		else
+		{
+			g.drawImage(
+					i,
+					dx,
+					dy,
+					dx + width,
+					dy + height,
+					sx,
+					sy,
+					sx + width,
+					sy + height,
+					null
+					);
+		}
+	}
+	
+	/** Check if unscaled image draws are allowed to skip Graphics2D and
+	 * write pixels directly to the target image of a render event.
+	 * @return true if the direct pixel path is enabled
+	 */
+	public static boolean isFastBlitEnabled()
+	{
+		return fastBlit;
+	}
+	
+	/** Set if unscaled image draws are allowed to skip Graphics2D and
+	 * write pixels directly to the target image of a render event. This is
+	 * enabled by default.
+	 * @param enabled true to enable the direct pixel path
+	 */
+	public static void setFastBlitEnabled(boolean enabled)
+	{
+		fastBlit = enabled;
+	}
 }
@@ -16,6 +16,7 @@
 package xyz.digitalcookies.objective.graphics;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 import xyz.digitalcookies.objective.input.GUIMonitor;
 import xyz.digitalcookies.objective.input.gui.GUIElement;
@@ -23,34 +24,150 @@ import xyz.digitalcookies.objective.input.gui.GUIElement;
 /** A single layer used for organizing screen drawing.
  * Each layer holds Renderer(s) that will be called in order once the layer
  * has been told to render itself to the specified graphics context.
+ * <br>
+ * <br>Rendering never locks the layer. Changes are made under the layer's
+ * lock and then published as a new immutable snapshot of the renderer
+ * list, which rendering reads with a single volatile read. Adding a
+ * renderer writes into spare capacity at the end of the current array, so
+ * it does not copy the list. Removing a renderer only marks its entry as
+ * removed (rendering skips it), and the list is compacted once enough
+ * entries have been removed, so both are constant time on average.
+ * <br>
+ * <br>When the frame is rendered in bands, renderers that are not
+ * {@link Renderer#isThreadSafe() thread safe} are locked while they render,
+ * so the bands take turns rendering them.
  * @author Bryan Charles Bettis
  */
 class Layer implements Renderer
 {
-	/** The Renderer(s) rendering to this layer. */
-	private ArrayList<Renderer> renderers;
+	/** The renderers currently being rendered. */
+	private volatile Snapshot snapshot;
+	/** The entry of each Renderer in this layer, by identity. */
+	private IdentityHashMap<Renderer, Entry> members;
 	/** The layer sets on this layer. */
 	private ArrayList<LayerSet> layerSets;
+	/** The number of removed entries still in the snapshot. */
+	private int tombstones;
+	/** The world to screen transform applied to the whole layer, or null. */
+	private volatile ViewTransform viewTransform;
 	
 	/** The normal constructor for a Layer. */
 	public Layer()
 	{
-		renderers = new ArrayList<Renderer>();
+		snapshot = new Snapshot(new Entry[8], 0);
+		members = new IdentityHashMap<Renderer, Entry>();
 		layerSets = new ArrayList<LayerSet>();
+		tombstones = 0;
+		viewTransform = null;
+	}
+	
+	/** A renderer in a layer, with how it is degraded when the frame budget
+	 * is running out.
+	 * @author Bryan Charles Bettis
+	 */
+	private static class Entry
+	{
+		/** The renderer. */
+		private final Renderer renderer;
+		/** The frame budget priority of the renderer. */
+		private final int priority;
+		/** The cheaper renderer to use instead, or null. */
+		private final Renderer fallback;
+		/** If the renderer has been removed from the layer. */
+		private volatile boolean removed;
+		/** The frame the renderer was last decided for. */
+		private long decidedFrame;
+		/** How the renderer is drawn in the decided frame. */
+		private int decision;
+		
+		/** Basic constructor.
+		 * @param renderer the renderer
+		 * @param priority the frame budget priority of the renderer
+		 * @param fallback the cheaper renderer to use instead, or null
+		 */
+		private Entry(Renderer renderer, int priority, Renderer fallback)
+		{
+			this.renderer = renderer;
+			this.priority = priority;
+			this.fallback = fallback;
+			removed = false;
+			decidedFrame = -1;
+		}
+		
+		/** Decide how the renderer is drawn this frame. The decision is made
+		 * once per frame, so every band draws the renderer the same way and
+		 * the frame budget only counts it once.
+		 * @return {@link FrameBudget#FULL}, {@link FrameBudget#FALLBACK},
+		 * 		or {@link FrameBudget#SKIP}
+		 */
+		private synchronized int decide()
+		{
+			long frame = FrameBudget.getFrame();
+			if (decidedFrame != frame)
+			{
+				decision = FrameBudget.decide(priority, fallback != null);
+				decidedFrame = frame;
+			}
+			return decision;
+		}
+	}
+	
+	/** The renderers of a layer at some point in time. The first size
+	 * elements of the array never change once published; later elements
+	 * may be filled in by appends that publish a new snapshot.
+	 * @author Bryan Charles Bettis
+	 */
+	private static class Snapshot
+	{
+		/** The entries, with possible spare capacity at the end. */
+		private final Entry[] entries;
+		/** The number of entries in this snapshot. */
+		private final int size;
+		
+		/** Basic constructor.
+		 * @param entries the entries
+		 * @param size the number of entries in this snapshot
+		 */
+		private Snapshot(Entry[] entries, int size)
+		{
+			this.entries = entries;
+			this.size = size;
+		}
+	}
+	
+	/** Add specified renderer to this layer, with normal priority and no
+	 * fallback.
+	 * @param obj the Renderer to add
+	 */
+	public void addRenderer(Renderer obj)
+	{
+		addRenderer(obj, FrameBudget.PRIORITY_NORMAL, null);
 	}
 	
 	/** Add specified renderer to this layer.
 	 * @param obj the Renderer to add
+	 * @param priority the frame budget priority of the renderer
+	 * @param fallback the cheaper renderer to draw instead when the frame
+	 * 		budget is running out, or null to skip the renderer instead
 	 */
-	public synchronized void addRenderer(Renderer obj)
+	public synchronized void addRenderer(Renderer obj, int priority, Renderer fallback)
 	{
 		// Don't add the same renderer more than once
-		if (renderers.contains(obj))
+		if (members.containsKey(obj))
 		{
 			return;
 		}
-		// Add to the list of renderers
-		renderers.add(obj);
+		Entry entry = new Entry(obj, priority, fallback);
+		members.put(obj, entry);
+		RendererIndex.added(obj, this);
+		// Append to the list of renderers, making room first if needed
+		if (snapshot.size == snapshot.entries.length)
+		{
+			compact(members.size() * 2);
+		}
+		Snapshot current = snapshot;
+		current.entries[current.size] = entry;
+		snapshot = new Snapshot(current.entries, current.size + 1);
 		// If it is also a layer set, add it to that list
 		if (obj instanceof LayerSet)
 		{
@@ -68,7 +185,19 @@ class Layer implements Renderer
 	 */
 	public synchronized void removeRenderer(Renderer obj)
 	{
-		renderers.remove(obj);
+		Entry entry = members.remove(obj);
+		if (entry == null)
+		{
+			return;
+		}
+		RendererIndex.removed(obj, this);
+		// Leave the entry in place for now, rendering skips it
+		entry.removed = true;
+		++tombstones;
+		if (tombstones > 8 && tombstones * 2 > snapshot.size)
+		{
+			compact(snapshot.entries.length);
+		}
 		// If it is also a layer set, remove it from that list too
 		if (obj instanceof LayerSet)
 		{
@@ -98,22 +227,128 @@ class Layer implements Renderer
 	}
 	
 	@Override
-	public synchronized void render(RenderEvent event)
+	public void render(RenderEvent event)
 	{
-		renderers.forEach(
-				(Renderer r)->
+		// Render the current snapshot, which is never modified, so the layer
+		// can be changed (and rendered by several threads) while rendering
+		Snapshot current = snapshot;
+		Entry[] entries = current.entries;
+		int size = current.size;
+		boolean profile = RenderProfiler.isEnabled();
+		// Transform once for the whole layer, each renderer inherits it
+		ViewTransform vt = viewTransform;
+		if (vt != null)
+		{
+			event.getGC().transform(vt.getViewTransform());
+		}
+		for (int i = 0; i < size; ++i)
+		{
+			Entry entry = entries[i];
+			if (entry.removed)
+			{
+				continue;
+			}
+			Renderer r = entry.renderer;
+			// Degrade the renderer if the frame is running out of time
+			switch (entry.decide())
+			{
+				case FrameBudget.SKIP:
+					continue;
+				case FrameBudget.FALLBACK:
+					r = entry.fallback;
+					break;
+				default:
+					break;
+			}
+			RenderEvent e2 = event.clone();
+			if (r.isThreadSafe())
+			{
+				draw(r, e2, profile);
+			}
+			else
+			{
+				// Other bands may be rendering it right now
+				synchronized (r)
 				{
-					RenderEvent e2 = event.clone();
-					r.render(e2);
-					e2.getGC().dispose();
+					draw(r, e2, profile);
 				}
-				);
+			}
+			e2.getGC().dispose();
+		}
+	}
+	
+	@Override
+	public boolean isThreadSafe()
+	{
+		return true;
+	}
+	
+	/** Render a renderer, profiling it if enabled.
+	 * @param r the renderer
+	 * @param event the render event for the renderer
+	 * @param profile if the render time should be profiled
+	 */
+	private static void draw(Renderer r, RenderEvent event, boolean profile)
+	{
+		if (profile)
+		{
+			RenderProfiler.begin();
+			r.render(event);
+			RenderProfiler.end(r, RenderProfiler.RENDERER);
+		}
+		else
+		{
+			r.render(event);
+		}
+	}
+	
+	/** Set the world to screen transform applied to everything in this
+	 * layer.
+	 * @param vt the transform, or null to render in screen coordinates
+	 */
+	public void setViewTransform(ViewTransform vt)
+	{
+		viewTransform = vt;
+	}
+	
+	/** Get the world to screen transform applied to this layer.
+	 * @return the transform, or null if there is none
+	 */
+	public ViewTransform getViewTransform()
+	{
+		return viewTransform;
 	}
 	
 	/** Remove all Renderers in this layer. */
 	public synchronized void clear()
 	{
-		renderers.clear();
+		for (Renderer r : members.keySet())
+		{
+			RendererIndex.removed(r, this);
+		}
+		members.clear();
+		snapshot = new Snapshot(new Entry[8], 0);
 		layerSets.clear();
+		tombstones = 0;
+	}
+	
+	/** Publish a copy of the renderer list without the removed entries.
+	 * A copy is needed since renders may still be using the current list.
+	 * @param capacity the minimum length of the new array
+	 */
+	private void compact(int capacity)
+	{
+		Snapshot current = snapshot;
+		Entry[] entries = new Entry[Math.max(capacity, 8)];
+		int size = 0;
+		for (int i = 0; i < current.size; ++i)
+		{
+			if (!current.entries[i].removed)
+			{
+				entries[size++] = current.entries[i];
+			}
+		}
+		snapshot = new Snapshot(entries, size);
+		tombstones = 0;
 	}
 }
@@ -41,12 +41,23 @@ public class LayerSet extends BoundedRenderer
 	@Override
 	public void render(RenderEvent event)
 	{
-		super.render(event);
+		// Centering changes the position, so only one band does it at a time
+		synchronized (this)
+		{
+			super.render(event);
+		}
 		// Render the layers
+		boolean profile = RenderProfiler.isEnabled();
 		for (Layer layer : layers)
 		{
 			RenderEvent e2 = event.clone();
-			synchronized(layer)
+			if (profile)
+			{
+				RenderProfiler.begin();
+				layer.render(e2);
+				RenderProfiler.end(layer, RenderProfiler.LAYER);
+			}
+			else
 			{
 				layer.render(e2);
 			}
@@ -54,6 +65,12 @@ public class LayerSet extends BoundedRenderer
 		}
 	}
 	
+	@Override
+	public boolean isThreadSafe()
+	{
+		return true;
+	}
+	
 	/** Get the number of layers in this layer set.
 	 * @return the number of layers in this set
 	 */
@@ -62,11 +79,28 @@ public class LayerSet extends BoundedRenderer
 		return layers.length;
 	}
 	
-	/** Add the specified renderer to specified layer.
+	/** Add the specified renderer to specified layer, with normal priority
+	 * and no fallback.
 	 * @param obj the Renderer to add
 	 * @param layer the layer to add the Renderer to
 	 */
 	public void addRenderer(Renderer obj, int layer)
+	{
+		addRenderer(obj, layer, FrameBudget.PRIORITY_NORMAL, null);
+	}
+	
+	/** Add the specified renderer to specified layer, with a frame budget
+	 * priority and an optional cheaper fallback. When the frame is running
+	 * out of time, renderers are switched to their fallback or skipped,
+	 * starting with the lowest priority ones (see {@link FrameBudget}.)
+	 * @param obj the Renderer to add
+	 * @param layer the layer to add the Renderer to
+	 * @param priority the frame budget priority, such as
+	 * 		{@link FrameBudget#PRIORITY_DECORATIVE}
+	 * @param fallback the cheaper renderer to draw instead when the frame
+	 * 		budget is running out, or null to skip the renderer instead
+	 */
+	public void addRenderer(Renderer obj, int layer, int priority, Renderer fallback)
 	{
 		if (obj == null)
 		{
@@ -87,11 +121,7 @@ public class LayerSet extends BoundedRenderer
 			Thread.dumpStack();
 			return;
 		}
-		Layer l = layers[layer];
-		synchronized(l)
-		{
-			l.addRenderer(obj);
-		}
+		layers[layer].addRenderer(obj, priority, fallback);
 	}
 	
 	/** Add the specified renderer to all layers.
@@ -139,11 +169,7 @@ public class LayerSet extends BoundedRenderer
 			Thread.dumpStack();
 			return;
 		}
-		Layer l = layers[layer];
-		synchronized(l)
-		{
-			l.removeRenderer(obj);
-		}
+		layers[layer].removeRenderer(obj);
 	}
 	
 	/** Remove the specified renderer from all layers.
@@ -192,11 +218,7 @@ public class LayerSet extends BoundedRenderer
 			Thread.dumpStack();
 			return;
 		}
-		Layer l = layers[layer];
-		synchronized(l)
-		{
-			l.recursiveRemoveRenderer(obj);
-		}
+		layers[layer].recursiveRemoveRenderer(obj);
 	}
 	
 	/** Removes the specified Renderer from all layers, and also calls
@@ -220,6 +242,42 @@ public class LayerSet extends BoundedRenderer
 		}
 	}
 	
+	/** Apply a world to screen transform (such as a camera) to an entire
+	 * layer. The transform is applied once before the layer renders, so the
+	 * renderers in the layer draw in world coordinates.
+	 * @param layer the layer to apply the transform to
+	 * @param vt the transform, or null to render the layer in screen
+	 * 		coordinates again
+	 */
+	public void setViewTransform(int layer, ViewTransform vt)
+	{
+		if (layer >= getNumLayers())
+		{
+			System.out.println(
+					"ERROR: Attempted to set the view transform of an invalid "
+					+ "layer index: "
+					+ Integer.toString(layer)
+					);
+			Thread.dumpStack();
+			return;
+		}
+		layers[layer].setViewTransform(vt);
+	}
+	
+	/** Get the world to screen transform applied to a layer.
+	 * @param layer the layer to get the transform of
+	 * @return the transform, or null if there is none (or the layer index
+	 * 		is invalid)
+	 */
+	public ViewTransform getViewTransform(int layer)
+	{
+		if (layer >= getNumLayers())
+		{
+			return null;
+		}
+		return layers[layer].getViewTransform();
+	}
+	
 	/** Clear the specified layer.
 	 * @param layer the index of the layer (first index at 0)
 	 */
@@ -235,11 +293,7 @@ public class LayerSet extends BoundedRenderer
 			Thread.dumpStack();
 			return;
 		}
-		Layer l = layers[layer];
-		synchronized(l)
-		{
-			l.clear();
-		}
+		layers[layer].clear();
 	}
 	
 	/** Removes all Renderers from all layers. */
@@ -247,10 +301,7 @@ public class LayerSet extends BoundedRenderer
 	{
 		for (Layer layer : layers)
 		{
-			synchronized(layer)
-			{
-				layer.clear();
-			}
+			layer.clear();
 		}
 	}
 }
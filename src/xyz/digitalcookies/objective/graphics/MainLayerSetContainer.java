@@ -20,8 +20,15 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.swing.JComponent;
 
+import xyz.digitalcookies.objective.Settings;
+import xyz.digitalcookies.objective.utility.JobPool;
+
 /** Handles multiple layers of rendering for a window.
  * Gets the drawing surface for the specified window layer.
  * @author Bryan Charles Bettis
@@ -33,6 +40,17 @@ class MainLayerSetContainer extends JComponent
 	
 	/** The primary layer set which is drawn to the screen. */
 	private MainLayerSet mainLayers;
+	/** The back buffer that tiles are rendered into when tiled rendering
+	 * is enabled, and that frames are rendered into at a lower resolution
+	 * when dynamic resolution is enabled.
+	 */
+	private BufferedImage backBuffer;
+	/** Picks the resolution scale when dynamic resolution is enabled. */
+	private ResolutionScaler scaler;
+	/** When the previous frame was rendered, in nanoseconds. */
+	private long lastFrameTime = 0;
+	/** The average number of frames rendered per second. */
+	private volatile double avgFPS = -1;
 	
 	/** Standard layer container for the specified window.
 	 * @param dims the initial dimensions of the layers
@@ -42,6 +60,7 @@ class MainLayerSetContainer extends JComponent
 	{
 		// Setup the layers
 		mainLayers = new MainLayerSet(numLayers);
+		scaler = new ResolutionScaler();
 		setPreferredSize(dims);
 	}
 	
@@ -69,15 +88,197 @@ class MainLayerSetContainer extends JComponent
 	 */
 	public void render(Graphics2D g)
 	{
-		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		updateFPS();
+		AnimationClock.advance();
+		boolean dynRes = (boolean) Settings.getSetting(Settings.DYN_RES);
+		long start = System.nanoTime();
+		FrameBudget.beginFrame();
+		if (RenderProfiler.isEnabled())
+		{
+			RenderProfiler.beginFrame();
+			renderFrame(g, dynRes);
+			RenderProfiler.endFrame();
+		}
+		else
+		{
+			renderFrame(g, dynRes);
+		}
+		FrameBudget.endFrame();
+		// Adjust the resolution for the next frame
+		if (dynRes)
+		{
+			scaler.update(System.nanoTime() - start);
+		}
+		else if (scaler.getScale() != 1.0 || !scaler.isAntialiased())
+		{
+			scaler.reset();
+		}
+	}
+	
+	/** Get the average rate frames are being rendered at.
+	 * @return the average FPS, or -1 if no frames have been rendered
+	 */
+	public double getAvgFPS()
+	{
+		return avgFPS;
+	}
+	
+	/** Get the resolution scale the main layer set is being rendered at.
+	 * @return the resolution scale, where 1.0 is the full window size
+	 */
+	public double getRenderScale()
+	{
+		return scaler.getScale();
+	}
+	
+	/** Render a frame of the main layer set, in tiles and/or at a lower
+	 * resolution if enabled.
+	 * @param g the root graphics context to draw to
+	 * @param dynRes if dynamic resolution is enabled
+	 */
+	private void renderFrame(Graphics2D g, boolean dynRes)
+	{
+		int tiles = (int) Settings.getSetting(Settings.RENDER_TILES);
+		double scale = dynRes ? scaler.getScale() : 1.0;
+		boolean antialias = !dynRes || scaler.isAntialiased();
+		int width = mainLayers.getWidth();
+		int height = mainLayers.getHeight();
+		int bufWidth = (int) Math.ceil(width * scale);
+		int bufHeight = (int) Math.ceil(height * scale);
+		if (width <= 0 || height <= 0 || bufWidth <= 0 || bufHeight <= 0)
+		{
+			renderRegion(g, null, 0, 0, width, height, 1.0, antialias);
+			return;
+		}
+		boolean tiled = tiles > 1 && bufHeight >= tiles;
+		// Render everything on this thread, straight to the screen
+		if (!tiled && scale == 1.0)
+		{
+			renderRegion(g, null, 0, 0, width, height, 1.0, antialias);
+			return;
+		}
+		BufferedImage buffer = getBackBuffer(bufWidth, bufHeight);
+		if (tiled)
+		{
+			// Split the frame into horizontal bands, one job per band
+			List<Runnable> jobs = new ArrayList<Runnable>(tiles);
+			for (int i = 0; i < tiles; ++i)
+			{
+				int top = bufHeight * i / tiles;
+				int bottom = bufHeight * (i + 1) / tiles;
+				jobs.add(
+						()->
+						{
+							Graphics2D tg = buffer.createGraphics();
+							tg.clipRect(0, top, bufWidth, bottom - top);
+							renderRegion(
+									tg,
+									buffer,
+									0,
+									top,
+									bufWidth,
+									bottom - top,
+									scale,
+									antialias
+									);
+							tg.dispose();
+						}
+						);
+			}
+			JobPool.runAll(jobs);
+		}
+		else
+		{
+			Graphics2D bg = buffer.createGraphics();
+			renderRegion(bg, buffer, 0, 0, bufWidth, bufHeight, scale, antialias);
+			bg.dispose();
+		}
+		// Present the finished frame, upscaling it if needed
+		if (scale == 1.0)
+		{
+			g.drawImage(buffer, 0, 0, null);
+		}
+		else
+		{
+			g.setRenderingHint(
+					RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR
+					);
+			g.drawImage(buffer, 0, 0, width, height, null);
+		}
+	}
+	
+	/** Update the average FPS using the time since the previous frame. */
+	private void updateFPS()
+	{
+		long now = System.nanoTime();
+		if (lastFrameTime != 0 && now > lastFrameTime)
+		{
+			double fps = 1000000000.0 / (now - lastFrameTime);
+			if (avgFPS < 0)
+			{
+				avgFPS = fps;
+			}
+			else
+			{
+				// Smooth out the average FPS
+				avgFPS = avgFPS * 0.9 + fps * 0.1;
+			}
+		}
+		lastFrameTime = now;
+	}
+	
+	/** Clear the specified region and then render the main layer set over
+	 * it. Tiles clip the graphics context to their region beforehand.
+	 * @param g the graphics context to draw to
+	 * @param target the image the graphics context draws to, or null
+	 * @param x the x coordinate of the region
+	 * @param y the y coordinate of the region
+	 * @param width the width of the region
+	 * @param height the height of the region
+	 * @param scale the resolution scale to render the layer set at
+	 * @param antialias if antialiasing should be enabled
+	 */
+	private void renderRegion(Graphics2D g, BufferedImage target, int x, int y, int width, int height, double scale, boolean antialias)
+	{
+		g.setRenderingHint(
+				RenderingHints.KEY_ANTIALIASING,
+				antialias
+						? RenderingHints.VALUE_ANTIALIAS_ON
+						: RenderingHints.VALUE_ANTIALIAS_OFF
+				);
 		// Clear the graphics context
 		g.setColor(Color.black);
-		g.fillRect(0, 0, mainLayers.getWidth(), mainLayers.getHeight());
+		g.fillRect(x, y, width, height);
+		// The layer set still renders in window coordinates
+		if (scale != 1.0)
+		{
+			g.scale(scale, scale);
+		}
 		// Render the main layer set
-		RenderEvent event = new RenderEvent((Graphics2D) g);
+		RenderEvent event = new RenderEvent((Graphics2D) g, target);
 		mainLayers.render(event);
 	}
 	
+	/** Get the back buffer used for tiled rendering, replacing it when the
+	 * size of the main layer set has changed.
+	 * @param width the width the buffer must have
+	 * @param height the height the buffer must have
+	 * @return a buffer of the specified size
+	 */
+	private BufferedImage getBackBuffer(int width, int height)
+	{
+		if (
+				backBuffer == null
+				|| backBuffer.getWidth() != width
+				|| backBuffer.getHeight() != height
+				)
+		{
+			backBuffer = ImageDrawer.createImage(width, height);
+		}
+		return backBuffer;
+	}
+	
 	/** Resizes the main layer container.
 	 * @param newDims the new dimensions
 	 */
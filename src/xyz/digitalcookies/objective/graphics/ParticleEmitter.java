@@ -0,0 +1,206 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+/** Spawns particles into a {@link ParticleSystem}, either continuously at a
+ * set rate or in bursts. Particles start at the position of the emitter
+ * and move in a random direction within the spread around the emitter's
+ * direction, with a random speed and lifetime within the set ranges.
+ * <br>
+ * <br>The settings of an emitter can be changed at any time; the changes
+ * are used the next time the particle system updates.
+ * @author Bryan Charles Bettis
+ */
+public class ParticleEmitter
+{
+	/** The x coordinate particles are spawned at. */
+	private volatile float x;
+	/** The y coordinate particles are spawned at. */
+	private volatile float y;
+	/** Particles spawned per second. */
+	private volatile float rate;
+	/** The direction particles move in, in radians. */
+	private volatile float direction;
+	/** How far from the direction particles can move, in radians. */
+	private volatile float spread;
+	/** The slowest a particle can start moving, in pixels per second. */
+	private volatile float minSpeed;
+	/** The fastest a particle can start moving, in pixels per second. */
+	private volatile float maxSpeed;
+	/** The shortest a particle can live, in seconds. */
+	private volatile float minLife;
+	/** The longest a particle can live, in seconds. */
+	private volatile float maxLife;
+	/** The ARGB color of spawned particles. */
+	private volatile int color;
+	/** If particles are being spawned continuously. */
+	private volatile boolean enabled;
+	/** Fraction of a particle left over from the last update. */
+	private float carry;
+	/** Particles waiting to be spawned by a burst. */
+	private int pendingBurst;
+	
+	/** Create an emitter that spawns particles in every direction.
+	 * @param x the x coordinate to spawn particles at
+	 * @param y the y coordinate to spawn particles at
+	 * @param rate how many particles to spawn per second
+	 * @param color the ARGB color of the particles
+	 */
+	public ParticleEmitter(float x, float y, float rate, int color)
+	{
+		this.x = x;
+		this.y = y;
+		this.rate = rate;
+		this.color = color;
+		direction = 0;
+		spread = (float) Math.PI;
+		minSpeed = 20;
+		maxSpeed = 60;
+		minLife = 1;
+		maxLife = 2;
+		enabled = true;
+		carry = 0;
+		pendingBurst = 0;
+	}
+	
+	/** Move the emitter.
+	 * @param x the x coordinate to spawn particles at
+	 * @param y the y coordinate to spawn particles at
+	 */
+	public void setPosition(float x, float y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+	
+	/** Set how many particles are spawned per second while enabled.
+	 * @param rate the number of particles per second
+	 */
+	public void setRate(float rate)
+	{
+		this.rate = rate;
+	}
+	
+	/** Set the direction particles move in.
+	 * @param direction the direction in radians (0 is to the right)
+	 * @param spread how far from the direction particles can move, in
+	 * 		radians (PI spreads particles in every direction)
+	 */
+	public void setDirection(float direction, float spread)
+	{
+		this.direction = direction;
+		this.spread = spread;
+	}
+	
+	/** Set the range of starting speeds of particles.
+	 * @param minSpeed the slowest speed, in pixels per second
+	 * @param maxSpeed the fastest speed, in pixels per second
+	 */
+	public void setSpeed(float minSpeed, float maxSpeed)
+	{
+		this.minSpeed = minSpeed;
+		this.maxSpeed = maxSpeed;
+	}
+	
+	/** Set the range of lifetimes of particles.
+	 * @param minLife the shortest lifetime, in seconds
+	 * @param maxLife the longest lifetime, in seconds
+	 */
+	public void setLife(float minLife, float maxLife)
+	{
+		this.minLife = minLife;
+		this.maxLife = maxLife;
+	}
+	
+	/** Set the color of spawned particles.
+	 * @param color the ARGB color (the alpha fades out over the lifetime)
+	 */
+	public void setColor(int color)
+	{
+		this.color = color;
+	}
+	
+	/** Check if this emitter is continuously spawning particles.
+	 * @return true if particles are spawned at the set rate
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	/** Start or stop continuously spawning particles. Bursts are spawned
+	 * either way.
+	 * @param enabled true to spawn particles at the set rate
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+	
+	/** Spawn a number of particles all at once, the next time the particle
+	 * system updates.
+	 * @param count the number of particles to spawn
+	 */
+	public synchronized void burst(int count)
+	{
+		pendingBurst += Math.max(count, 0);
+	}
+	
+	/** Spawn the particles for an update of the particle system.
+	 * @param system the system to spawn particles into
+	 * @param elapsed the seconds since the last update
+	 */
+	synchronized void emit(ParticleSystem system, float elapsed)
+	{
+		float toSpawn = carry + pendingBurst;
+		pendingBurst = 0;
+		if (enabled)
+		{
+			toSpawn += rate * elapsed;
+		}
+		int count = (int) toSpawn;
+		carry = enabled ? toSpawn - count : 0;
+		float px = x;
+		float py = y;
+		float dir = direction;
+		float spr = spread;
+		float speedMin = minSpeed;
+		float speedRange = maxSpeed - minSpeed;
+		float lifeMin = minLife;
+		float lifeRange = maxLife - minLife;
+		int c = color;
+		for (int i = 0; i < count; ++i)
+		{
+			float angle = dir + (system.nextRandom() * 2 - 1) * spr;
+			float speed = speedMin + system.nextRandom() * speedRange;
+			if (
+					!system.spawn(
+							px,
+							py,
+							(float) Math.cos(angle) * speed,
+							(float) Math.sin(angle) * speed,
+							lifeMin + system.nextRandom() * lifeRange,
+							c
+							)
+					)
+			{
+				// The system is full
+				carry = 0;
+				return;
+			}
+		}
+	}
+}
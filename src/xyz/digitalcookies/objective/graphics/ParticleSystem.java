@@ -0,0 +1,518 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import xyz.digitalcookies.objective.scene.Camera;
+import xyz.digitalcookies.objective.utility.JobPool;
+
+/** A large number of small, short lived particles, stored as parallel
+ * arrays (one array per property) instead of one object per particle.
+ * Spawning and removing particles does not allocate anything: dead
+ * particles are removed by moving the last live particle into their slot.
+ * Updating is split between the threads of the {@link JobPool}.
+ * <br>
+ * <br>{@link #update(double)} should be called from one thread (such as
+ * the game state thread.) Each update publishes the positions and colors
+ * to a second set of arrays for rendering, so rendering never sees a
+ * half-updated system. Rendering draws every particle into a private
+ * image covering the visible area and then draws that image in one call,
+ * so when rendering in tiles each tile draws its own particles in
+ * parallel.
+ * <br>
+ * <br>Particles are square, fade out over their lifetime, and are
+ * positioned in world coordinates through the optional camera, like
+ * {@link TileMap}.
+ * @author Bryan Charles Bettis
+ */
+public class ParticleSystem implements Renderer
+{
+	/** Particles per job when updating in parallel. */
+	private static final int UPDATE_CHUNK = 8192;
+	
+	/** The maximum number of live particles. */
+	private final int capacity;
+	/** The number of live particles. */
+	private int count;
+	/** The x coordinates of the particles. */
+	private final float[] x;
+	/** The y coordinates of the particles. */
+	private final float[] y;
+	/** The x velocities of the particles. */
+	private final float[] vx;
+	/** The y velocities of the particles. */
+	private final float[] vy;
+	/** The seconds each particle has left to live. */
+	private final float[] life;
+	/** The total lifetime of each particle. */
+	private final float[] maxLife;
+	/** The ARGB color of each particle. */
+	private final int[] color;
+	/** The x coordinates being rendered. */
+	private float[] drawX;
+	/** The y coordinates being rendered. */
+	private float[] drawY;
+	/** The premultiplied colors being rendered. */
+	private int[] drawColor;
+	/** The number of particles being rendered. */
+	private int drawCount;
+	/** The x coordinates being published by the next update. */
+	private float[] backX;
+	/** The y coordinates being published by the next update. */
+	private float[] backY;
+	/** The colors being published by the next update. */
+	private int[] backColor;
+	/** Keeps rendering from seeing the arrays being swapped. */
+	private final ReentrantReadWriteLock swapLock;
+	/** The emitters spawning particles into this system. */
+	private final ArrayList<ParticleEmitter> emitters;
+	/** Acceleration applied to all particles along x. */
+	private volatile float gravityX;
+	/** Acceleration applied to all particles along y. */
+	private volatile float gravityY;
+	/** The width and height of a particle, in pixels. */
+	private volatile int particleSize;
+	/** The camera used to position the particles, or null. */
+	private volatile Camera camera;
+	/** The state of the random number generator. */
+	private long seed;
+	/** The seconds being simulated by the current update. */
+	private float step;
+	/** Moves a range of particles for the current update. */
+	private final JobPool.RangeJob integrateJob;
+	/** Publishes a range of particles for rendering. */
+	private final JobPool.RangeJob publishJob;
+	/** The image each render thread draws particles into. */
+	private final ThreadLocal<BufferedImage> canvas;
+	
+	/** Create an empty particle system.
+	 * @param capacity the maximum number of live particles
+	 */
+	public ParticleSystem(int capacity)
+	{
+		this.capacity = Math.max(capacity, 0);
+		count = 0;
+		x = new float[this.capacity];
+		y = new float[this.capacity];
+		vx = new float[this.capacity];
+		vy = new float[this.capacity];
+		life = new float[this.capacity];
+		maxLife = new float[this.capacity];
+		color = new int[this.capacity];
+		drawX = new float[this.capacity];
+		drawY = new float[this.capacity];
+		drawColor = new int[this.capacity];
+		drawCount = 0;
+		backX = new float[this.capacity];
+		backY = new float[this.capacity];
+		backColor = new int[this.capacity];
+		swapLock = new ReentrantReadWriteLock();
+		emitters = new ArrayList<ParticleEmitter>();
+		gravityX = 0;
+		gravityY = 0;
+		particleSize = 2;
+		seed = System.nanoTime() | 1;
+		integrateJob = this::integrate;
+		publishJob = this::publish;
+		canvas = new ThreadLocal<BufferedImage>();
+	}
+	
+	/** Spawn emitted particles, move all particles, remove dead particles,
+	 * and publish the results for rendering.
+	 * @param elapsed the seconds since the last update
+	 */
+	public synchronized void update(double elapsed)
+	{
+		step = (float) elapsed;
+		synchronized (emitters)
+		{
+			for (int i = 0; i < emitters.size(); ++i)
+			{
+				emitters.get(i).emit(this, step);
+			}
+		}
+		JobPool.parallelFor(0, count, UPDATE_CHUNK, integrateJob);
+		removeDead();
+		JobPool.parallelFor(0, count, UPDATE_CHUNK, publishJob);
+		// Make the published particles the ones that are rendered
+		swapLock.writeLock().lock();
+		try
+		{
+			float[] tempX = drawX;
+			float[] tempY = drawY;
+			int[] tempColor = drawColor;
+			drawX = backX;
+			drawY = backY;
+			drawColor = backColor;
+			drawCount = count;
+			backX = tempX;
+			backY = tempY;
+			backColor = tempColor;
+		}
+		finally
+		{
+			swapLock.writeLock().unlock();
+		}
+	}
+	
+	/** Add a particle, unless the system is full.
+	 * @param px the x coordinate of the particle
+	 * @param py the y coordinate of the particle
+	 * @param pvx the x velocity, in pixels per second
+	 * @param pvy the y velocity, in pixels per second
+	 * @param lifetime how long the particle lives, in seconds
+	 * @param argb the ARGB color of the particle
+	 * @return false if the system is full and the particle was not added
+	 */
+	public synchronized boolean spawn(float px, float py, float pvx, float pvy, float lifetime, int argb)
+	{
+		if (count >= capacity)
+		{
+			return false;
+		}
+		// Would die before being drawn
+		if (lifetime <= 0)
+		{
+			return true;
+		}
+		x[count] = px;
+		y[count] = py;
+		vx[count] = pvx;
+		vy[count] = pvy;
+		life[count] = lifetime;
+		maxLife[count] = lifetime;
+		color[count] = argb;
+		++count;
+		return true;
+	}
+	
+	@Override
+	public void render(RenderEvent event)
+	{
+		Graphics2D g = event.getGC();
+		Rectangle view = g.getClipBounds();
+		if (view == null)
+		{
+			BufferedImage target = event.getTargetImage();
+			if (target == null)
+			{
+				return;
+			}
+			view = new Rectangle(0, 0, target.getWidth(), target.getHeight());
+		}
+		if (view.width <= 0 || view.height <= 0)
+		{
+			return;
+		}
+		BufferedImage image = getCanvas(view.width, view.height);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int stride = image.getWidth();
+		Camera cam = camera;
+		float scale = cam == null ? 1 : (float) cam.getScale();
+		float offsetX = (cam == null ? 0 : (float) cam.getPreciseX()) - view.x;
+		float offsetY = (cam == null ? 0 : (float) cam.getPreciseY()) - view.y;
+		int size = particleSize;
+		int drawn = 0;
+		int viewWidth = view.width;
+		int viewHeight = view.height;
+		swapLock.readLock().lock();
+		try
+		{
+			float[] px = drawX;
+			float[] py = drawY;
+			int[] pc = drawColor;
+			int n = drawCount;
+			for (int i = 0; i < n; ++i)
+			{
+				int left = (int) (px[i] * scale + offsetX);
+				int top = (int) (py[i] * scale + offsetY);
+				// Skip particles outside of the view
+				if (
+						left + size <= 0 || top + size <= 0
+						|| left >= viewWidth || top >= viewHeight
+						)
+				{
+					continue;
+				}
+				int c = pc[i];
+				if (c == 0)
+				{
+					continue;
+				}
+				if (
+						size == 1
+						|| (left >= 0 && top >= 0
+						&& left + size <= viewWidth && top + size <= viewHeight)
+						)
+				{
+					// Completely inside the view, the common case
+					plot(pixels, stride, left, top, left + size, top + size, c);
+				}
+				else
+				{
+					plot(
+							pixels,
+							stride,
+							Math.max(left, 0),
+							Math.max(top, 0),
+							Math.min(left + size, viewWidth),
+							Math.min(top + size, viewHeight),
+							c
+							);
+				}
+				++drawn;
+			}
+		}
+		finally
+		{
+			swapLock.readLock().unlock();
+		}
+		if (drawn > 0)
+		{
+			ImageDrawer.drawRegion(
+					event,
+					image,
+					view.x,
+					view.y,
+					0,
+					0,
+					view.width,
+					view.height
+					);
+		}
+	}
+	
+	@Override
+	public boolean isThreadSafe()
+	{
+		return true;
+	}
+	
+	/** Add an emitter that spawns particles into this system.
+	 * @param emitter the emitter to add
+	 */
+	public void addEmitter(ParticleEmitter emitter)
+	{
+		synchronized (emitters)
+		{
+			if (!emitters.contains(emitter))
+			{
+				emitters.add(emitter);
+			}
+		}
+	}
+	
+	/** Stop an emitter from spawning particles into this system. Particles
+	 * it already spawned are not removed.
+	 * @param emitter the emitter to remove
+	 */
+	public void removeEmitter(ParticleEmitter emitter)
+	{
+		synchronized (emitters)
+		{
+			emitters.remove(emitter);
+		}
+	}
+	
+	/** Remove all live particles. */
+	public synchronized void clear()
+	{
+		count = 0;
+	}
+	
+	/** Get the number of live particles.
+	 * @return the number of live particles
+	 */
+	public synchronized int getCount()
+	{
+		return count;
+	}
+	
+	/** Get the maximum number of live particles.
+	 * @return the capacity of this system
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/** Set the acceleration applied to all particles, such as gravity.
+	 * @param ax the acceleration along x, in pixels per second squared
+	 * @param ay the acceleration along y, in pixels per second squared
+	 */
+	public void setGravity(float ax, float ay)
+	{
+		gravityX = ax;
+		gravityY = ay;
+	}
+	
+	/** Set the size particles are drawn at.
+	 * @param size the width and height of a particle, in pixels
+	 */
+	public void setParticleSize(int size)
+	{
+		particleSize = Math.max(size, 1);
+	}
+	
+	/** Set the camera used to position the particles.
+	 * @param camera the camera, or null to draw particles unscaled at
+	 * 		their world coordinates
+	 */
+	public void setCamera(Camera camera)
+	{
+		this.camera = camera;
+	}
+	
+	/** Get a random number, used by emitters during updates.
+	 * @return a random number from 0 (inclusive) to 1 (exclusive)
+	 */
+	float nextRandom()
+	{
+		// xorshift, so emitting does not contend on a shared generator
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		return (seed >>> 40) / (float) (1 << 24);
+	}
+	
+	/** Move a range of particles and age them.
+	 * @param start the first particle to update
+	 * @param end one past the last particle to update
+	 */
+	private void integrate(int start, int end)
+	{
+		float dt = step;
+		float ax = gravityX * dt;
+		float ay = gravityY * dt;
+		for (int i = start; i < end; ++i)
+		{
+			vx[i] += ax;
+			vy[i] += ay;
+			x[i] += vx[i] * dt;
+			y[i] += vy[i] * dt;
+			life[i] -= dt;
+		}
+	}
+	
+	/** Remove dead particles by moving the last live particle into each
+	 * dead particle's slot.
+	 */
+	private void removeDead()
+	{
+		int i = 0;
+		while (i < count)
+		{
+			if (life[i] > 0)
+			{
+				++i;
+				continue;
+			}
+			int last = --count;
+			x[i] = x[last];
+			y[i] = y[last];
+			vx[i] = vx[last];
+			vy[i] = vy[last];
+			life[i] = life[last];
+			maxLife[i] = maxLife[last];
+			color[i] = color[last];
+		}
+	}
+	
+	/** Copy a range of particles to the arrays published for rendering,
+	 * fading out the color by the remaining lifetime.
+	 * @param start the first particle to publish
+	 * @param end one past the last particle to publish
+	 */
+	private void publish(int start, int end)
+	{
+		for (int i = start; i < end; ++i)
+		{
+			backX[i] = x[i];
+			backY[i] = y[i];
+			int c = color[i];
+			int a = (int) ((c >>> 24) * (life[i] / maxLife[i]));
+			backColor[i] = premultiply(c, a);
+		}
+	}
+	
+	/** Get the canvas of the current thread, cleared and big enough for
+	 * the specified size.
+	 * @param width the width needed
+	 * @param height the height needed
+	 * @return the cleared canvas
+	 */
+	private BufferedImage getCanvas(int width, int height)
+	{
+		BufferedImage image = canvas.get();
+		if (image == null || image.getWidth() < width || image.getHeight() < height)
+		{
+			image = ImageDrawer.createImage(
+					Math.max(width, image == null ? 0 : image.getWidth()),
+					Math.max(height, image == null ? 0 : image.getHeight())
+					);
+			canvas.set(image);
+			return image;
+		}
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int stride = image.getWidth();
+		for (int row = 0; row < height; ++row)
+		{
+			Arrays.fill(pixels, row * stride, row * stride + width, 0);
+		}
+		return image;
+	}
+	
+	/** Blend a premultiplied color over a rectangle of pixels.
+	 * @param pixels the pixels of the canvas
+	 * @param stride the width of the canvas
+	 * @param left the left edge of the rectangle (inclusive)
+	 * @param top the top edge of the rectangle (inclusive)
+	 * @param right the right edge of the rectangle (exclusive)
+	 * @param bottom the bottom edge of the rectangle (exclusive)
+	 * @param c the premultiplied ARGB color
+	 */
+	private static void plot(int[] pixels, int stride, int left, int top, int right, int bottom, int c)
+	{
+		int inv = 255 - (c >>> 24);
+		for (int row = top; row < bottom; ++row)
+		{
+			int index = row * stride + left;
+			for (int col = left; col < right; ++col, ++index)
+			{
+				int d = pixels[index];
+				pixels[index] = d == 0 ? c : c + PixelBlitter.mulPacked(d, inv);
+			}
+		}
+	}
+	
+	/** Premultiply a color by an alpha value.
+	 * @param argb the ARGB color (its own alpha is replaced)
+	 * @param a the alpha to use, from 0 to 255
+	 * @return the premultiplied color
+	 */
+	private static int premultiply(int argb, int a)
+	{
+		a = Math.max(0, Math.min(a, 255));
+		return PixelBlitter.mulPacked(argb | 0xff000000, a);
+	}
+}
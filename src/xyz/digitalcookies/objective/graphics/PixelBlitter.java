@@ -0,0 +1,316 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/** Copies and alpha blends integer ARGB pixels directly between the data
+ * buffers of two images, skipping the generic Java2D drawImage path. Only
+ * unscaled, unrotated draws of TYPE_INT_ARGB or TYPE_INT_ARGB_PRE images
+ * onto TYPE_INT_ARGB_PRE images are supported (blending into straight alpha
+ * needs a divide per channel, which made it slower than Java2D); {@link #canBlit(Graphics2D, BufferedImage, BufferedImage)}
+ * checks if a draw qualifies.
+ * <br>
+ * <br>Reading the pixel array of an image stops Java2D from accelerating
+ * it, so only images created by {@link #createImage(int, int)} (such as
+ * atlases, tile chunks and loaded resources) are drawn by this blitter.
+ * Other images are left to Java2D.
+ * @author Bryan Charles Bettis
+ */
+class PixelBlitter
+{
+	/** An image created for this blitter, whose pixel array it may use.
+	 * @author Bryan Charles Bettis
+	 */
+	private static class BlitImage extends BufferedImage
+	{
+		/** Create a TYPE_INT_ARGB_PRE image.
+		 * @param width the width of the image
+		 * @param height the height of the image
+		 */
+		private BlitImage(int width, int height)
+		{
+			super(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+	}
+	
+	/** Constructor hidden because this is an exclusively-static class. */
+	private PixelBlitter()
+	{
+	}
+	
+	/** Create an image this blitter can draw, and draw to.
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @return a new TYPE_INT_ARGB_PRE image
+	 */
+	static BufferedImage createImage(int width, int height)
+	{
+		return new BlitImage(width, height);
+	}
+	
+	/** Check if drawing the specified source image with the specified
+	 * graphics context can be done by this blitter.
+	 * @param g the graphics context that would have drawn the image
+	 * @param src the image to draw
+	 * @param dst the image the graphics context draws to
+	 * @return true if {@link #blit(Graphics2D, BufferedImage, int, int, int,
+	 * 		int, int, int, BufferedImage)} will produce the same result as
+	 * 		drawing with the graphics context
+	 */
+	static boolean canBlit(Graphics2D g, BufferedImage src, BufferedImage dst)
+	{
+		if (
+				!(src instanceof BlitImage)
+				|| !(dst instanceof BlitImage)
+				|| !isSupportedType(src)
+				|| !isSupportedType(dst)
+				|| dst.getType() != BufferedImage.TYPE_INT_ARGB_PRE
+				)
+		{
+			return false;
+		}
+		// Only whole pixel translations are supported
+		AffineTransform at = g.getTransform();
+		if (
+				(at.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0
+				|| at.getTranslateX() != (int) at.getTranslateX()
+				|| at.getTranslateY() != (int) at.getTranslateY()
+				)
+		{
+			return false;
+		}
+		// Only normal, fully opaque drawing is supported
+		Composite comp = g.getComposite();
+		if (!(comp instanceof AlphaComposite))
+		{
+			return false;
+		}
+		AlphaComposite ac = (AlphaComposite) comp;
+		if (ac.getRule() != AlphaComposite.SRC_OVER || ac.getAlpha() != 1.0f)
+		{
+			return false;
+		}
+		// Only rectangular clips are supported
+		Shape clip = g.getClip();
+		return clip == null || clip instanceof Rectangle;
+	}
+	
+	/** Draw a region of the source image onto the destination image, using
+	 * the translation and clip of the specified graphics context. Callers
+	 * must check {@link #canBlit(Graphics2D, BufferedImage, BufferedImage)}
+	 * first.
+	 * @param g the graphics context providing the translation and clip
+	 * @param src the image to draw
+	 * @param sx the x coordinate of the region in the source image
+	 * @param sy the y coordinate of the region in the source image
+	 * @param width the width of the region
+	 * @param height the height of the region
+	 * @param x the x coordinate to draw the region at
+	 * @param y the y coordinate to draw the region at
+	 * @param dst the image to draw to
+	 */
+	static void blit(Graphics2D g, BufferedImage src, int sx, int sy, int width, int height, int x, int y, BufferedImage dst)
+	{
+		AffineTransform at = g.getTransform();
+		int tx = (int) at.getTranslateX();
+		int ty = (int) at.getTranslateY();
+		// Clip to the destination image
+		int left = 0;
+		int top = 0;
+		int right = dst.getWidth();
+		int bottom = dst.getHeight();
+		// Clip to the graphics context clip (in device space)
+		Rectangle clip = g.getClipBounds();
+		if (clip != null)
+		{
+			left = Math.max(left, clip.x + tx);
+			top = Math.max(top, clip.y + ty);
+			right = Math.min(right, clip.x + clip.width + tx);
+			bottom = Math.min(bottom, clip.y + clip.height + ty);
+		}
+		blit(src, sx, sy, width, height, x + tx, y + ty, dst, left, top, right, bottom);
+	}
+	
+	/** Draw a region of the source image onto the destination image at
+	 * the specified device coordinates, limited to the specified clip
+	 * bounds. The destination must be a TYPE_INT_ARGB_PRE image.
+	 * @param src the image to draw
+	 * @param sx the x coordinate of the region in the source image
+	 * @param sy the y coordinate of the region in the source image
+	 * @param width the width of the region
+	 * @param height the height of the region
+	 * @param dx the x coordinate in the destination image
+	 * @param dy the y coordinate in the destination image
+	 * @param dst the image to draw to
+	 * @param left the left edge of the clip (inclusive)
+	 * @param top the top edge of the clip (inclusive)
+	 * @param right the right edge of the clip (exclusive)
+	 * @param bottom the bottom edge of the clip (exclusive)
+	 */
+	static void blit(BufferedImage src, int sx, int sy, int width, int height, int dx, int dy, BufferedImage dst, int left, int top, int right, int bottom)
+	{
+		// Limit the source region to the source image
+		if (sx < 0)
+		{
+			width += sx;
+			dx -= sx;
+			sx = 0;
+		}
+		if (sy < 0)
+		{
+			height += sy;
+			dy -= sy;
+			sy = 0;
+		}
+		width = Math.min(width, src.getWidth() - sx);
+		height = Math.min(height, src.getHeight() - sy);
+		// Limit the destination region to the clip
+		int x0 = Math.max(dx, left);
+		int y0 = Math.max(dy, top);
+		int x1 = Math.min(dx + width, right);
+		int y1 = Math.min(dy + height, bottom);
+		if (x0 >= x1 || y0 >= y1)
+		{
+			return;
+		}
+		int[] srcPix = getPixels(src);
+		int[] dstPix = getPixels(dst);
+		int srcScan = getScanlineStride(src);
+		int dstScan = getScanlineStride(dst);
+		int srcOff = getOffset(src);
+		int dstOff = getOffset(dst);
+		boolean srcPre = src.isAlphaPremultiplied();
+		int count = x1 - x0;
+		for (int row = y0; row < y1; ++row)
+		{
+			int si = srcOff + (sy + row - dy) * srcScan + sx + x0 - dx;
+			int di = dstOff + row * dstScan + x0;
+			blendRow(srcPix, si, srcPre, dstPix, di, count);
+		}
+	}
+	
+	/** Blend a row of source pixels over a row of destination pixels.
+	 * Two color channels are processed per multiply by keeping them in
+	 * separate 16 bit lanes of an int.
+	 * @param src the source pixels
+	 * @param si the index of the first source pixel
+	 * @param srcPre if the source pixels are premultiplied
+	 * @param dst the (premultiplied) destination pixels
+	 * @param di the index of the first destination pixel
+	 * @param count the number of pixels to blend
+	 */
+	private static void blendRow(int[] src, int si, boolean srcPre, int[] dst, int di, int count)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			int s = src[si + i];
+			int sa = s >>> 24;
+			// Transparent pixel; nothing to draw
+			if (sa == 0)
+			{
+				continue;
+			}
+			// Opaque pixel; premultiplied and straight are the same
+			if (sa == 255)
+			{
+				dst[di + i] = s;
+				continue;
+			}
+			// Premultiply the source
+			if (!srcPre)
+			{
+				s = (s & 0xff000000) | (mulPacked(s, sa) & 0x00ffffff);
+			}
+			// Source over a premultiplied destination is a single multiply
+			dst[di + i] = s + mulPacked(dst[di + i], 255 - sa);
+		}
+	}
+	
+	/** Multiply all four 8 bit channels of a pixel by the specified value,
+	 * treating 255 as 1.0.
+	 * @param c the pixel
+	 * @param a the value to multiply each channel by (0-255)
+	 * @return the pixel with each channel multiplied and rounded
+	 */
+	static int mulPacked(int c, int a)
+	{
+		int rb = (c & 0x00ff00ff) * a + 0x00800080;
+		rb = ((rb + ((rb >>> 8) & 0x00ff00ff)) >>> 8) & 0x00ff00ff;
+		int ag = ((c >>> 8) & 0x00ff00ff) * a + 0x00800080;
+		ag = (ag + ((ag >>> 8) & 0x00ff00ff)) & 0xff00ff00;
+		return ag | rb;
+	}
+	
+	/** Check if the specified image stores its pixels in a supported
+	 * format.
+	 * @param img the image to check
+	 * @return true if the pixels can be read or written by this blitter
+	 */
+	private static boolean isSupportedType(BufferedImage img)
+	{
+		int type = img.getType();
+		return
+				(
+						type == BufferedImage.TYPE_INT_ARGB
+						|| type == BufferedImage.TYPE_INT_ARGB_PRE
+						)
+				&& img.getRaster().getDataBuffer() instanceof DataBufferInt
+				&& img.getSampleModel() instanceof SinglePixelPackedSampleModel;
+	}
+	
+	/** Get the pixel array of an image.
+	 * @param img an image of a supported type
+	 * @return the backing pixel array of the image
+	 */
+	private static int[] getPixels(BufferedImage img)
+	{
+		return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+	}
+	
+	/** Get the number of array elements between the start of two rows of an
+	 * image.
+	 * @param img an image of a supported type
+	 * @return the scanline stride of the image
+	 */
+	private static int getScanlineStride(BufferedImage img)
+	{
+		return ((SinglePixelPackedSampleModel)
+				img.getRaster().getSampleModel()).getScanlineStride();
+	}
+	
+	/** Get the index of the first pixel of an image in its pixel array.
+	 * @param img an image of a supported type
+	 * @return the index of the pixel at (0,0)
+	 */
+	private static int getOffset(BufferedImage img)
+	{
+		Raster r = img.getRaster();
+		int scan = getScanlineStride(img);
+		return r.getDataBuffer().getOffset()
+				- r.getSampleModelTranslateY() * scan
+				- r.getSampleModelTranslateX();
+	}
+}
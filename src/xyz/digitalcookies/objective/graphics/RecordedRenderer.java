@@ -0,0 +1,96 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** A Renderer that draws whatever was last recorded into it, so that
+ * drawing can be worked out on one thread (such as the game state thread)
+ * while the render thread only replays the result. Two command buffers are
+ * used: one being recorded into and one being rendered, which are swapped
+ * when {@link #publish()} is called.
+ * <br>
+ * <br>Only one thread should record at a time:
+ * <br>RenderCommandBuffer buffer = recorded.beginRecording();
+ * <br>buffer.fillRect(...); ...
+ * <br>recorded.publish();
+ * @author Bryan Charles Bettis
+ */
+public class RecordedRenderer implements Renderer
+{
+	/** The buffer that is rendered. */
+	private RenderCommandBuffer front;
+	/** The buffer that is recorded into. */
+	private RenderCommandBuffer back;
+	/** Lets several render threads replay at once, but not during a swap. */
+	private ReentrantReadWriteLock swapLock;
+	
+	/** Basic constructor. */
+	public RecordedRenderer()
+	{
+		front = new RenderCommandBuffer();
+		back = new RenderCommandBuffer();
+		swapLock = new ReentrantReadWriteLock();
+	}
+	
+	@Override
+	public void render(RenderEvent event)
+	{
+		swapLock.readLock().lock();
+		try
+		{
+			front.replay(event);
+		}
+		finally
+		{
+			swapLock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public boolean isThreadSafe()
+	{
+		return true;
+	}
+	
+	/** Clear and get the buffer to record the next set of commands into.
+	 * The commands will not be rendered until {@link #publish()} is called.
+	 * @return the buffer to record into
+	 */
+	public RenderCommandBuffer beginRecording()
+	{
+		back.reset();
+		return back;
+	}
+	
+	/** Make the most recently recorded commands the ones that are
+	 * rendered.
+	 */
+	public void publish()
+	{
+		swapLock.writeLock().lock();
+		try
+		{
+			RenderCommandBuffer temp = front;
+			front = back;
+			back = temp;
+		}
+		finally
+		{
+			swapLock.writeLock().unlock();
+		}
+	}
+}
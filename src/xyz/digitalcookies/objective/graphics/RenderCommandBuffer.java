@@ -0,0 +1,352 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/** A recorded list of draw commands that can be replayed later, on any
+ * thread, onto the graphics context of a render event. Commands are stored
+ * as integers in a reusable array (with images, colors, etc. kept in a
+ * separate reference array), so recording a frame allocates nothing once
+ * the buffer has grown to fit. A buffer is also a Renderer, so a buffer
+ * recorded once can be added to a layer to cache static content.
+ * <br>
+ * <br>A buffer is not thread safe; do not record into a buffer while it is
+ * being replayed. {@link RecordedRenderer} handles double buffering for
+ * recording on one thread and replaying on another.
+ * @author Bryan Charles Bettis
+ */
+public class RenderCommandBuffer implements Renderer
+{
+	/** Set the drawing color: ref(color). */
+	private static final int SET_COLOR = 0;
+	/** Fill a rectangle: x, y, width, height. */
+	private static final int FILL_RECT = 1;
+	/** Outline a rectangle: x, y, width, height. */
+	private static final int DRAW_RECT = 2;
+	/** Draw a line: x1, y1, x2, y2. */
+	private static final int DRAW_LINE = 3;
+	/** Draw an image: ref(image), x, y, width, height. */
+	private static final int DRAW_IMAGE = 4;
+	/** Draw part of an image: ref(image), dx, dy, sx, sy, width, height. */
+	private static final int DRAW_IMAGE_REGION = 5;
+	/** Draw text: ref(text), ref(font), x, y. */
+	private static final int DRAW_TEXT = 6;
+	/** Translate the origin: x, y. */
+	private static final int TRANSLATE = 7;
+	
+	/** The opcodes and integer arguments of the recorded commands. */
+	private int[] commands;
+	/** The number of used elements in the command array. */
+	private int numCommands;
+	/** The objects referenced by the recorded commands. */
+	private Object[] refs;
+	/** The number of used elements in the reference array. */
+	private int numRefs;
+	
+	/** Basic constructor. */
+	public RenderCommandBuffer()
+	{
+		commands = new int[64];
+		refs = new Object[16];
+		numCommands = 0;
+		numRefs = 0;
+	}
+	
+	@Override
+	public void render(RenderEvent event)
+	{
+		replay(event);
+	}
+	
+	/** Removes all recorded commands, keeping the allocated storage for
+	 * reuse.
+	 */
+	public void reset()
+	{
+		// Release references so the buffer does not keep objects alive
+		Arrays.fill(refs, 0, numRefs, null);
+		numCommands = 0;
+		numRefs = 0;
+	}
+	
+	/** Check if this buffer has no recorded commands.
+	 * @return true if there is nothing to replay
+	 */
+	public boolean isEmpty()
+	{
+		return numCommands == 0;
+	}
+	
+	/** Record a change of the drawing color.
+	 * @param color the color to draw following shapes with
+	 */
+	public void setColor(Color color)
+	{
+		ensureCapacity(2, 1);
+		commands[numCommands++] = SET_COLOR;
+		commands[numCommands++] = addRef(color);
+	}
+	
+	/** Record filling a rectangle with the current color.
+	 * @param x the x coordinate of the upper left corner
+	 * @param y the y coordinate of the upper left corner
+	 * @param width the width of the rectangle
+	 * @param height the height of the rectangle
+	 */
+	public void fillRect(int x, int y, int width, int height)
+	{
+		addCommand(FILL_RECT, x, y, width, height);
+	}
+	
+	/** Record outlining a rectangle with the current color.
+	 * @param x the x coordinate of the upper left corner
+	 * @param y the y coordinate of the upper left corner
+	 * @param width the width of the rectangle
+	 * @param height the height of the rectangle
+	 */
+	public void drawRect(int x, int y, int width, int height)
+	{
+		addCommand(DRAW_RECT, x, y, width, height);
+	}
+	
+	/** Record drawing a line with the current color.
+	 * @param x1 the x coordinate of the start of the line
+	 * @param y1 the y coordinate of the start of the line
+	 * @param x2 the x coordinate of the end of the line
+	 * @param y2 the y coordinate of the end of the line
+	 */
+	public void drawLine(int x1, int y1, int x2, int y2)
+	{
+		addCommand(DRAW_LINE, x1, y1, x2, y2);
+	}
+	
+	/** Record drawing an image at its original size.
+	 * @param img the image to draw
+	 * @param x the x coordinate of the top left corner
+	 * @param y the y coordinate of the top left corner
+	 */
+	public void drawImage(BufferedImage img, int x, int y)
+	{
+		drawImage(img, x, y, img.getWidth(), img.getHeight());
+	}
+	
+	/** Record drawing an image.
+	 * @param img the image to draw
+	 * @param x the x coordinate of the top left corner
+	 * @param y the y coordinate of the top left corner
+	 * @param width the width to draw the image as
+	 * @param height the height to draw the image as
+	 */
+	public void drawImage(BufferedImage img, int x, int y, int width, int height)
+	{
+		ensureCapacity(6, 1);
+		commands[numCommands++] = DRAW_IMAGE;
+		commands[numCommands++] = addRef(img);
+		commands[numCommands++] = x;
+		commands[numCommands++] = y;
+		commands[numCommands++] = width;
+		commands[numCommands++] = height;
+	}
+	
+	/** Record drawing part of an image (such as a sprite from a sprite
+	 * sheet) at its original size.
+	 * @param img the image containing the region to draw
+	 * @param dx the x coordinate to draw the region at
+	 * @param dy the y coordinate to draw the region at
+	 * @param sx the x coordinate of the region within the image
+	 * @param sy the y coordinate of the region within the image
+	 * @param width the width of the region
+	 * @param height the height of the region
+	 */
+	public void drawImageRegion(BufferedImage img, int dx, int dy, int sx, int sy, int width, int height)
+	{
+		ensureCapacity(8, 1);
+		commands[numCommands++] = DRAW_IMAGE_REGION;
+		commands[numCommands++] = addRef(img);
+		commands[numCommands++] = dx;
+		commands[numCommands++] = dy;
+		commands[numCommands++] = sx;
+		commands[numCommands++] = sy;
+		commands[numCommands++] = width;
+		commands[numCommands++] = height;
+	}
+	
+	/** Record drawing text, the same way as
+	 * {@link TextDrawer#drawText(Graphics2D, String, int, int, Font)}.
+	 * @param text the text to draw
+	 * @param x the left edge of the text
+	 * @param y the top of the text
+	 * @param font the font to use, or null to use the default font
+	 */
+	public void drawText(String text, int x, int y, Font font)
+	{
+		ensureCapacity(5, 2);
+		commands[numCommands++] = DRAW_TEXT;
+		commands[numCommands++] = addRef(text);
+		commands[numCommands++] = addRef(font);
+		commands[numCommands++] = x;
+		commands[numCommands++] = y;
+	}
+	
+	/** Record moving the origin of following commands.
+	 * @param x the distance to move the origin right
+	 * @param y the distance to move the origin down
+	 */
+	public void translate(int x, int y)
+	{
+		ensureCapacity(3, 0);
+		commands[numCommands++] = TRANSLATE;
+		commands[numCommands++] = x;
+		commands[numCommands++] = y;
+	}
+	
+	/** Replay the recorded commands onto the graphics context of the
+	 * specified render event. Image draws go through
+	 * {@link ImageDrawer#drawGraphic(RenderEvent, BufferedImage, int, int,
+	 * int, int)}, so they use the direct pixel path when the event allows
+	 * it. The graphics context is left in the state the commands put it in.
+	 * @param event the render event to draw with
+	 */
+	public void replay(RenderEvent event)
+	{
+		Graphics2D g = event.getGC();
+		int i = 0;
+		while (i < numCommands)
+		{
+			switch (commands[i])
+			{
+				case SET_COLOR:
+					g.setColor((Color) refs[commands[i+1]]);
+					i += 2;
+					break;
+				case FILL_RECT:
+					RenderProfiler.countDrawCall();
+					g.fillRect(commands[i+1], commands[i+2], commands[i+3], commands[i+4]);
+					i += 5;
+					break;
+				case DRAW_RECT:
+					RenderProfiler.countDrawCall();
+					g.drawRect(commands[i+1], commands[i+2], commands[i+3], commands[i+4]);
+					i += 5;
+					break;
+				case DRAW_LINE:
+					RenderProfiler.countDrawCall();
+					g.drawLine(commands[i+1], commands[i+2], commands[i+3], commands[i+4]);
+					i += 5;
+					break;
+				case DRAW_IMAGE:
+					ImageDrawer.drawGraphic(
+							event,
+							(BufferedImage) refs[commands[i+1]],
+							commands[i+2],
+							commands[i+3],
+							commands[i+4],
+							commands[i+5]
+							);
+					i += 6;
+					break;
+				case DRAW_IMAGE_REGION:
+					ImageDrawer.drawRegion(
+							event,
+							(BufferedImage) refs[commands[i+1]],
+							commands[i+2],
+							commands[i+3],
+							commands[i+4],
+							commands[i+5],
+							commands[i+6],
+							commands[i+7]
+							);
+					i += 8;
+					break;
+				case DRAW_TEXT:
+					Font font = (Font) refs[commands[i+2]];
+					TextDrawer.drawText(
+							g,
+							(String) refs[commands[i+1]],
+							commands[i+3],
+							commands[i+4],
+							font == null ? TextDrawer.getDefaultFont() : font
+							);
+					i += 5;
+					break;
+				case TRANSLATE:
+					g.translate(commands[i+1], commands[i+2]);
+					i += 3;
+					break;
+				default:
+					System.out.println(
+							"INTERNAL ERROR: Unknown render command "
+							+ Integer.toString(commands[i])
+							);
+					return;
+			}
+		}
+	}
+	
+	/** Record a command with four integer arguments.
+	 * @param op the opcode of the command
+	 * @param a the first argument
+	 * @param b the second argument
+	 * @param c the third argument
+	 * @param d the fourth argument
+	 */
+	private void addCommand(int op, int a, int b, int c, int d)
+	{
+		ensureCapacity(5, 0);
+		commands[numCommands++] = op;
+		commands[numCommands++] = a;
+		commands[numCommands++] = b;
+		commands[numCommands++] = c;
+		commands[numCommands++] = d;
+	}
+	
+	/** Store a referenced object.
+	 * @param obj the object to store
+	 * @return the index of the stored object
+	 */
+	private int addRef(Object obj)
+	{
+		refs[numRefs] = obj;
+		return numRefs++;
+	}
+	
+	/** Grow the storage arrays if needed.
+	 * @param ints the number of integers about to be added
+	 * @param objs the number of references about to be added
+	 */
+	private void ensureCapacity(int ints, int objs)
+	{
+		if (numCommands + ints > commands.length)
+		{
+			commands = Arrays.copyOf(
+					commands,
+					Math.max(commands.length * 2, numCommands + ints)
+					);
+		}
+		if (numRefs + objs > refs.length)
+		{
+			refs = Arrays.copyOf(
+					refs,
+					Math.max(refs.length * 2, numRefs + objs)
+					);
+		}
+	}
+}
@@ -16,6 +16,7 @@
 package xyz.digitalcookies.objective.graphics;
 
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 
 import xyz.digitalcookies.objective.EngineEvent;
 
@@ -28,13 +29,27 @@ public class RenderEvent extends EngineEvent implements Cloneable
 {
 	/** The graphics context used for drawing. */
 	private Graphics2D g;
+	/** The image the graphics context draws to, if known. */
+	private BufferedImage target;
 	
 	/** Basic render event constructor.
 	 * @param g the graphics context
 	 */
 	public RenderEvent(Graphics2D g)
+	{
+		this(g, null);
+	}
+	
+	/** Constructor for render events drawing to a known image, which allows
+	 * simple image draws to write pixels to the image directly.
+	 * @param g the graphics context
+	 * @param target the image the graphics context draws to, or null if
+	 * 		not drawing to a BufferedImage
+	 */
+	public RenderEvent(Graphics2D g, BufferedImage target)
 	{
 		setGC(g);
+		this.target = target;
 	}
 	
 	/** The graphics context to draw to.
@@ -53,6 +68,15 @@ public class RenderEvent extends EngineEvent implements Cloneable
 		this.g = g;
 	}
 	
+	/** Get the image that the graphics context of this event draws to.
+	 * @return the target image, or null if the graphics context does not
+	 * 		draw to a known BufferedImage
+	 */
+	public BufferedImage getTargetImage()
+	{
+		return target;
+	}
+	
 	/** Create a copy of this render event. The new event will have its own
 	 * graphics context and other property, so modification of the
 	 * new event will not affect the original event (unless the properties
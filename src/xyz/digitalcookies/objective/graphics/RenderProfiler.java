@@ -0,0 +1,527 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/** Opt-in profiler measuring how much of each frame is spent in each
+ * layer and Renderer. For each layer and Renderer this records the time
+ * spent rendering, the number of draw calls made through the engine's
+ * drawing classes (ImageDrawer, TextDrawer, RenderCommandBuffer), and the
+ * number of bytes allocated while rendering (when the JVM supports
+ * measuring it). All values include anything drawn by nested renderers,
+ * such as the contents of a nested LayerSet.
+ * <br>
+ * <br>When disabled (the default) the only cost is one volatile read per
+ * render call. Use {@link RenderProfilerOverlay} to show the most
+ * expensive renderers on screen, or {@link #getEntries()} and
+ * {@link #dump(PrintStream)} to inspect the data from code.
+ * @author Bryan Charles Bettis
+ */
+public class RenderProfiler
+{
+	/** Entry type for layers. */
+	public static final String LAYER = "layer";
+	/** Entry type for renderers in a layer. */
+	public static final String RENDERER = "renderer";
+	/** Entry type for entities in an entity container. */
+	public static final String ENTITY = "entity";
+	/** How many frames an entry can go without being rendered before it
+	 * is dropped.
+	 */
+	private static final int STALE_FRAMES = 120;
+	/** How much each new frame affects the running averages. */
+	private static final double AVG_WEIGHT = 0.1;
+	
+	/** If profiling is enabled. */
+	private static volatile boolean enabled = false;
+	/** The profiling data, by the object being profiled. */
+	private static final IdentityHashMap<Object, Accumulator> entries =
+			new IdentityHashMap<Object, Accumulator>();
+	/** The in-progress measurements of each render thread. */
+	private static final ThreadLocal<SampleStack> samples =
+			ThreadLocal.withInitial(SampleStack::new);
+	/** Used to measure allocated bytes, if supported. */
+	private static final com.sun.management.ThreadMXBean threadBean =
+			getThreadBean();
+	/** The number of the current frame. */
+	private static long frame = 0;
+	/** The start time of the current frame. */
+	private static long frameStart = 0;
+	/** The average total time of a frame, in nanoseconds. */
+	private static double avgFrameNanos = 0;
+	
+	/** A snapshot of the profiling data for a single layer or renderer.
+	 * The "last frame" values are from the most recently completed frame.
+	 * @author Bryan Charles Bettis
+	 */
+	public static class ProfileEntry
+	{
+		/** The name of the profiled object. */
+		private final String name;
+		/** The type of the profiled object. */
+		private final String type;
+		/** The average time spent per frame. */
+		private final double avgNanos;
+		/** The time spent last frame. */
+		private final long lastNanos;
+		/** The number of render calls last frame. */
+		private final int lastCalls;
+		/** The number of draw calls last frame. */
+		private final int lastDrawCalls;
+		/** The bytes allocated last frame. */
+		private final long lastBytes;
+		/** The average bytes allocated per frame. */
+		private final double avgBytes;
+		
+		/** Create a snapshot of the specified accumulator.
+		 * @param acc the accumulated profiling data
+		 */
+		private ProfileEntry(Accumulator acc)
+		{
+			name = acc.name;
+			type = acc.type;
+			avgNanos = acc.avgNanos;
+			lastNanos = acc.lastNanos;
+			lastCalls = acc.lastCalls;
+			lastDrawCalls = acc.lastDrawCalls;
+			lastBytes = acc.lastBytes;
+			avgBytes = acc.avgBytes;
+		}
+		
+		/** Get the name of the profiled object.
+		 * @return the name, based on its class and identity
+		 */
+		public String getName()
+		{
+			return name;
+		}
+		
+		/** Get what kind of object was profiled.
+		 * @return one of {@link RenderProfiler#LAYER},
+		 * 		{@link RenderProfiler#RENDERER}, or
+		 * 		{@link RenderProfiler#ENTITY}
+		 */
+		public String getType()
+		{
+			return type;
+		}
+		
+		/** Get the average render time per frame.
+		 * @return the average time in milliseconds
+		 */
+		public double getAvgTimeMilli()
+		{
+			return avgNanos / 1000000.0;
+		}
+		
+		/** Get the render time of the last frame.
+		 * @return the time in milliseconds
+		 */
+		public double getLastTimeMilli()
+		{
+			return lastNanos / 1000000.0;
+		}
+		
+		/** Get the number of times the object was rendered last frame
+		 * (more than one when rendering in tiles.)
+		 * @return the number of render calls
+		 */
+		public int getCalls()
+		{
+			return lastCalls;
+		}
+		
+		/** Get the number of draw calls made last frame.
+		 * @return the number of draw calls
+		 */
+		public int getDrawCalls()
+		{
+			return lastDrawCalls;
+		}
+		
+		/** Get the number of bytes allocated while rendering last frame.
+		 * @return the allocated bytes, or 0 if not supported by the JVM
+		 */
+		public long getAllocatedBytes()
+		{
+			return lastBytes;
+		}
+		
+		/** Get the average number of bytes allocated per frame.
+		 * @return the average allocated bytes
+		 */
+		public double getAvgAllocatedBytes()
+		{
+			return avgBytes;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format(
+					"%-8s %-40s avg %7.3f ms  last %7.3f ms  calls %4d  "
+					+ "draws %5d  alloc %8d B",
+					type,
+					name,
+					getAvgTimeMilli(),
+					getLastTimeMilli(),
+					lastCalls,
+					lastDrawCalls,
+					lastBytes
+					);
+		}
+	}
+	
+	/** Constructor hidden because this is an exclusively-static class. */
+	private RenderProfiler()
+	{
+	}
+	
+	/** Check if profiling is enabled.
+	 * @return true if render calls are being measured
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	/** Enable or disable profiling. Disabling keeps the collected data
+	 * (and the references to the profiled objects) until {@link #reset()}
+	 * is called.
+	 * @param enable true to start measuring render calls
+	 */
+	public static void setEnabled(boolean enable)
+	{
+		enabled = enable;
+	}
+	
+	/** Remove all collected profiling data. */
+	public static void reset()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+			avgFrameNanos = 0;
+		}
+	}
+	
+	/** Get the average total render time of a frame.
+	 * @return the average frame render time in milliseconds
+	 */
+	public static double getAvgFrameTimeMilli()
+	{
+		return avgFrameNanos / 1000000.0;
+	}
+	
+	/** Get a snapshot of the profiling data, sorted from the highest
+	 * average render time to the lowest.
+	 * @return the profiling data of every layer and renderer rendered
+	 * 		recently
+	 */
+	public static List<ProfileEntry> getEntries()
+	{
+		List<ProfileEntry> list = new ArrayList<ProfileEntry>();
+		synchronized (entries)
+		{
+			for (Accumulator acc : entries.values())
+			{
+				list.add(new ProfileEntry(acc));
+			}
+		}
+		list.sort(
+				(ProfileEntry a, ProfileEntry b)->
+				{
+					return Double.compare(b.avgNanos, a.avgNanos);
+				}
+				);
+		return list;
+	}
+	
+	/** Print the profiling data, most expensive first.
+	 * @param out the stream to print to
+	 */
+	public static void dump(PrintStream out)
+	{
+		out.println(
+				String.format(
+						"Render profile (avg frame %.3f ms):",
+						getAvgFrameTimeMilli()
+						)
+				);
+		for (ProfileEntry entry : getEntries())
+		{
+			out.println(entry.toString());
+		}
+	}
+	
+	/** Print the profiling data to standard output. */
+	public static void dump()
+	{
+		dump(System.out);
+	}
+	
+	/** Count a draw call made by the current thread. Called by the engine's
+	 * drawing classes; custom drawing code can call this too.
+	 */
+	public static void countDrawCall()
+	{
+		if (enabled)
+		{
+			++samples.get().drawCalls;
+		}
+	}
+	
+	/** Start measuring a render call on the current thread. Must be
+	 * followed by a matching call to {@link #end(Object, String)} on the
+	 * same thread.
+	 */
+	public static void begin()
+	{
+		samples.get().push();
+	}
+	
+	/** Finish measuring a render call on the current thread and add the
+	 * results to the profiling data of the specified object.
+	 * @param profiled the layer or renderer that was rendered
+	 * @param type the type of the profiled object
+	 */
+	public static void end(Object profiled, String type)
+	{
+		SampleStack stack = samples.get();
+		stack.pop();
+		Accumulator acc;
+		synchronized (entries)
+		{
+			acc = entries.get(profiled);
+			if (acc == null)
+			{
+				acc = new Accumulator(
+						profiled.getClass().getSimpleName()
+						+ "@"
+						+ Integer.toHexString(System.identityHashCode(profiled)),
+						type
+						);
+				entries.put(profiled, acc);
+			}
+		}
+		acc.add(stack.nanos, stack.draws, stack.bytes);
+	}
+	
+	/** Called at the start of each frame by the graphics system. */
+	static void beginFrame()
+	{
+		frameStart = System.nanoTime();
+	}
+	
+	/** Called at the end of each frame by the graphics system, to make the
+	 * measurements of the frame available.
+	 */
+	static void endFrame()
+	{
+		long frameNanos = System.nanoTime() - frameStart;
+		synchronized (entries)
+		{
+			++frame;
+			avgFrameNanos += (frameNanos - avgFrameNanos) * AVG_WEIGHT;
+			Iterator<Accumulator> it = entries.values().iterator();
+			while (it.hasNext())
+			{
+				Accumulator acc = it.next();
+				acc.finishFrame(frame);
+				// Drop renderers that are no longer being rendered
+				if (frame - acc.lastSeen > STALE_FRAMES)
+				{
+					it.remove();
+				}
+			}
+		}
+	}
+	
+	/** Get the number of bytes allocated by the current thread.
+	 * @return the allocated bytes, or 0 if not supported
+	 */
+	private static long getAllocatedBytes()
+	{
+		if (threadBean == null)
+		{
+			return 0;
+		}
+		return threadBean.getThreadAllocatedBytes(
+				Thread.currentThread().getId()
+				);
+	}
+	
+	/** Get the bean used for measuring allocations.
+	 * @return the bean, or null if measuring allocations is not supported
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean()
+	{
+		try
+		{
+			java.lang.management.ThreadMXBean bean =
+					ManagementFactory.getThreadMXBean();
+			if (
+					bean instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) bean)
+							.isThreadAllocatedMemorySupported()
+					)
+			{
+				com.sun.management.ThreadMXBean sunBean =
+						(com.sun.management.ThreadMXBean) bean;
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+				return sunBean;
+			}
+		}
+		catch (UnsupportedOperationException | LinkageError e)
+		{
+		}
+		return null;
+	}
+	
+	/** The accumulated measurements of a single profiled object.
+	 * @author Bryan Charles Bettis
+	 */
+	private static class Accumulator
+	{
+		/** The name of the profiled object. */
+		private String name;
+		/** The type of the profiled object. */
+		private final String type;
+		/** Time spent so far this frame. */
+		private long nanos;
+		/** Render calls so far this frame. */
+		private int calls;
+		/** Draw calls so far this frame. */
+		private int drawCalls;
+		/** Bytes allocated so far this frame. */
+		private long bytes;
+		/** Time spent last frame. */
+		private long lastNanos;
+		/** Render calls last frame. */
+		private int lastCalls;
+		/** Draw calls last frame. */
+		private int lastDrawCalls;
+		/** Bytes allocated last frame. */
+		private long lastBytes;
+		/** Average time spent per frame. */
+		private double avgNanos;
+		/** Average bytes allocated per frame. */
+		private double avgBytes;
+		/** The last frame this object was rendered in. */
+		private long lastSeen;
+		
+		/** Basic constructor.
+		 * @param name the name of the profiled object
+		 * @param type the type of the profiled object
+		 */
+		private Accumulator(String name, String type)
+		{
+			this.name = name;
+			this.type = type;
+			lastSeen = frame;
+		}
+		
+		/** Add the measurements of a render call.
+		 * @param nanos the time taken
+		 * @param drawCalls the number of draw calls made
+		 * @param bytes the number of bytes allocated
+		 */
+		private synchronized void add(long nanos, int drawCalls, long bytes)
+		{
+			this.nanos += nanos;
+			this.drawCalls += drawCalls;
+			this.bytes += bytes;
+			++calls;
+		}
+		
+		/** Move this frame's measurements into the last frame values.
+		 * @param frame the number of the frame that finished
+		 */
+		private synchronized void finishFrame(long frame)
+		{
+			if (calls > 0)
+			{
+				lastSeen = frame;
+			}
+			lastNanos = nanos;
+			lastCalls = calls;
+			lastDrawCalls = drawCalls;
+			lastBytes = bytes;
+			avgNanos += (nanos - avgNanos) * AVG_WEIGHT;
+			avgBytes += (bytes - avgBytes) * AVG_WEIGHT;
+			nanos = 0;
+			calls = 0;
+			drawCalls = 0;
+			bytes = 0;
+		}
+	}
+	
+	/** The start values of the render calls being measured on a thread,
+	 * stored in arrays so that measuring does not allocate.
+	 * @author Bryan Charles Bettis
+	 */
+	private static class SampleStack
+	{
+		/** Start times. */
+		private long[] startNanos = new long[16];
+		/** Draw call counts at the start. */
+		private int[] startDraws = new int[16];
+		/** Allocated bytes at the start. */
+		private long[] startBytes = new long[16];
+		/** The number of render calls being measured. */
+		private int depth = 0;
+		/** The number of draw calls made by this thread. */
+		private int drawCalls = 0;
+		/** The time taken by the most recently finished render call. */
+		private long nanos;
+		/** The draw calls of the most recently finished render call. */
+		private int draws;
+		/** The allocations of the most recently finished render call. */
+		private long bytes;
+		
+		/** Start measuring a render call. */
+		private void push()
+		{
+			if (depth == startNanos.length)
+			{
+				startNanos = Arrays.copyOf(startNanos, depth * 2);
+				startDraws = Arrays.copyOf(startDraws, depth * 2);
+				startBytes = Arrays.copyOf(startBytes, depth * 2);
+			}
+			startBytes[depth] = getAllocatedBytes();
+			startDraws[depth] = drawCalls;
+			startNanos[depth] = System.nanoTime();
+			++depth;
+		}
+		
+		/** Finish measuring the most recent render call. */
+		private void pop()
+		{
+			long now = System.nanoTime();
+			--depth;
+			nanos = now - startNanos[depth];
+			draws = drawCalls - startDraws[depth];
+			bytes = getAllocatedBytes() - startBytes[depth];
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.List;
+
+/** Draws the most expensive layers and renderers measured by
+ * {@link RenderProfiler}, for finding what is using up the frame budget.
+ * Add it to the top layer of the main layer set and enable the profiler.
+ * Nothing is drawn while the profiler is disabled.
+ * @author Bryan Charles Bettis
+ */
+public class RenderProfilerOverlay implements Renderer
+{
+	/** How often the shown values are refreshed, in milliseconds. */
+	private static final long REFRESH_INTERVAL = 500;
+	/** The background drawn behind the text. */
+	private static final Color BACKGROUND = new Color(0, 0, 0, 180);
+	
+	/** The x coordinate of the upper left corner. */
+	private int x;
+	/** The y coordinate of the upper left corner. */
+	private int y;
+	/** The maximum number of entries to show. */
+	private int maxEntries;
+	/** The font the text is drawn with. */
+	private volatile Font font;
+	/** The lines currently being shown. */
+	private String[] lines;
+	/** When the shown lines were last refreshed. */
+	private long lastRefresh;
+	
+	/** Basic constructor.
+	 * @param x the x coordinate of the upper left corner of the overlay
+	 * @param y the y coordinate of the upper left corner of the overlay
+	 * @param maxEntries the number of most expensive entries to show
+	 */
+	public RenderProfilerOverlay(int x, int y, int maxEntries)
+	{
+		this.x = x;
+		this.y = y;
+		this.maxEntries = maxEntries;
+		font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+		lines = new String[0];
+		lastRefresh = 0;
+	}
+	
+	@Override
+	public void render(RenderEvent event)
+	{
+		if (!RenderProfiler.isEnabled())
+		{
+			return;
+		}
+		String[] toDraw = refreshLines();
+		Graphics2D g = event.getGC();
+		g.setFont(font);
+		int lineHeight = g.getFontMetrics().getHeight();
+		int width = 0;
+		for (String line : toDraw)
+		{
+			width = Math.max(width, g.getFontMetrics().stringWidth(line));
+		}
+		g.setColor(BACKGROUND);
+		g.fillRect(x, y, width + 8, lineHeight * toDraw.length + 8);
+		g.setColor(Color.white);
+		for (int i = 0; i < toDraw.length; ++i)
+		{
+			TextDrawer.drawText(g, toDraw[i], x + 4, y + 4 + lineHeight * i, font);
+		}
+	}
+	
+	/** Set the number of most expensive entries to show.
+	 * @param maxEntries the number of entries to show
+	 */
+	public synchronized void setMaxEntries(int maxEntries)
+	{
+		this.maxEntries = maxEntries;
+		lastRefresh = 0;
+	}
+	
+	/** Set the font the overlay is drawn with.
+	 * @param font the font to use (a monospaced font is recommended)
+	 */
+	public synchronized void setFont(Font font)
+	{
+		this.font = font;
+	}
+	
+	/** Get the lines to show, recreating them from the profiling data if
+	 * they are older than the refresh interval.
+	 * @return the lines to draw
+	 */
+	private synchronized String[] refreshLines()
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastRefresh < REFRESH_INTERVAL)
+		{
+			return lines;
+		}
+		lastRefresh = now;
+		List<RenderProfiler.ProfileEntry> entries = RenderProfiler.getEntries();
+		int shown = Math.min(maxEntries, entries.size());
+		String[] newLines = new String[shown + 1];
+		newLines[0] = String.format(
+				"FPS %.1f  frame %.2f ms  fallbacks %d  skipped %d",
+				GraphicsManager.getAvgFPS(),
+				RenderProfiler.getAvgFrameTimeMilli(),
+				FrameBudget.getLastFallbackCount(),
+				FrameBudget.getLastSkipCount()
+				);
+		for (int i = 0; i < shown; ++i)
+		{
+			RenderProfiler.ProfileEntry entry = entries.get(i);
+			newLines[i + 1] = String.format(
+					"%6.2f ms %5d draws %8d B  %s",
+					entry.getAvgTimeMilli(),
+					entry.getDrawCalls(),
+					entry.getAllocatedBytes(),
+					entry.getName()
+					);
+		}
+		lines = newLines;
+		return lines;
+	}
+}
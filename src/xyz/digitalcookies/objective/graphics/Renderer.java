@@ -29,12 +29,26 @@ public interface Renderer
 	 */
 	public abstract void render(RenderEvent event);
 	
+	/** Check if this renderer can be rendered by several threads at the
+	 * same time, such as when the frame is rendered in bands (see
+	 * {@link xyz.digitalcookies.objective.Settings#RENDER_TILES}.)
+	 * Renderers that return false are never rendered by more than one
+	 * thread at a time, so they can change their own state while
+	 * rendering. False by default.
+	 * @return true if render can be called from several threads at once
+	 */
+	public default boolean isThreadSafe()
+	{
+		return false;
+	}
+	
 	/** Cleans up a renderer before it is no longer used. This must be called
 	 * when changing game states to remove Renderers that will not be needed
-	 * in the new game state.
+	 * in the new game state. Removes the renderer from every layer it has
+	 * been added to, in any layer set.
 	 */
 	public default void destroy()
 	{
-		GraphicsManager.getMainLayerSet().recursiveRemoveRenderer(this);
+		RendererIndex.removeEverywhere(this);
 	}
 }
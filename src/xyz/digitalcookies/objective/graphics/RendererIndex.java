@@ -0,0 +1,99 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/** Keeps track of which layers each Renderer has been added to, so that a
+ * renderer can be removed from everywhere it is without searching every
+ * layer and layer set. Layers update this index as renderers are added
+ * and removed.
+ * @author Bryan Charles Bettis
+ */
+class RendererIndex
+{
+	/** The layers each renderer is in, by identity. */
+	private static final IdentityHashMap<Renderer, ArrayList<Layer>> index =
+			new IdentityHashMap<Renderer, ArrayList<Layer>>();
+	
+	/** Constructor hidden because this is an exclusively-static class. */
+	private RendererIndex()
+	{
+	}
+	
+	/** Record that a renderer was added to a layer.
+	 * @param renderer the renderer that was added
+	 * @param layer the layer it was added to
+	 */
+	static void added(Renderer renderer, Layer layer)
+	{
+		synchronized (index)
+		{
+			ArrayList<Layer> layers = index.get(renderer);
+			if (layers == null)
+			{
+				layers = new ArrayList<Layer>(2);
+				index.put(renderer, layers);
+			}
+			layers.add(layer);
+		}
+	}
+	
+	/** Record that a renderer was removed from a layer.
+	 * @param renderer the renderer that was removed
+	 * @param layer the layer it was removed from
+	 */
+	static void removed(Renderer renderer, Layer layer)
+	{
+		synchronized (index)
+		{
+			ArrayList<Layer> layers = index.get(renderer);
+			if (layers == null)
+			{
+				return;
+			}
+			// Compare by identity, layers do not override equals
+			layers.remove(layer);
+			if (layers.isEmpty())
+			{
+				index.remove(renderer);
+			}
+		}
+	}
+	
+	/** Remove a renderer from every layer it is in.
+	 * @param renderer the renderer to remove
+	 */
+	static void removeEverywhere(Renderer renderer)
+	{
+		Layer[] layers;
+		synchronized (index)
+		{
+			ArrayList<Layer> found = index.get(renderer);
+			if (found == null)
+			{
+				return;
+			}
+			layers = found.toArray(new Layer[found.size()]);
+		}
+		// Not holding the index lock, since layers lock themselves first
+		for (Layer layer : layers)
+		{
+			layer.removeRenderer(renderer);
+		}
+	}
+}
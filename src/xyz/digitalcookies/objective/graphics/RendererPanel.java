@@ -15,7 +15,7 @@
 
 package xyz.digitalcookies.objective.graphics;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
 
 /** A RendererPanel organizes the BoundedRenderers that have been added to it
@@ -38,7 +38,11 @@ public class RendererPanel extends BoundedRenderer
 	/** A 2D list containing BoundedRenderers organized relative to each
 	 * other.
 	 */
-	protected LinkedList<LinkedList<BoundedRenderer>> rendererPositioning;
+	protected ArrayList<ArrayList<BoundedRenderer>> rendererPositioning;
+	/** If the positions of the contained elements or the dimensions of
+	 * this panel need to be recalculated before the next render.
+	 */
+	private volatile boolean layoutDirty = true;
 	/** Number of pixels between elements in the same row. */
 	private int columnSpacing = 4;
 	/** Number of pixels between element rows. */
@@ -75,7 +79,7 @@ public class RendererPanel extends BoundedRenderer
 		setPos(x, y);
 		setDims(getWidth(), getHeight());
 		renderers = new ConcurrentHashMap<String, BoundedRenderer>();
-		rendererPositioning = new LinkedList<LinkedList<BoundedRenderer>>();
+		rendererPositioning = new ArrayList<ArrayList<BoundedRenderer>>();
 	}
 	
 	@Override
@@ -98,20 +102,42 @@ public class RendererPanel extends BoundedRenderer
 	public synchronized void render(RenderEvent event)
 	{
 		super.render(event);
-		// Update positions of elements & panel dims before rendering
-		updatePositions();
-		updateDims();
+		// Update positions of elements & panel dims if anything changed
+		validateLayout();
 		// For each row
-		for (LinkedList<BoundedRenderer> row : rendererPositioning)
+		for (int r = 0; r < rendererPositioning.size(); ++r)
 		{
+			ArrayList<BoundedRenderer> row = rendererPositioning.get(r);
 			// Draw each contained element
-			for (BoundedRenderer br : row)
+			for (int c = 0; c < row.size(); ++c)
 			{
-				br.render(event);
+				row.get(c).render(event);
 			}
 		}
 	}
 	
+	@Override
+	public void setX(int x)
+	{
+		if (x != getX())
+		{
+			super.setX(x);
+			// Contained elements need to move with the panel
+			layoutDirty = true;
+		}
+	}
+	
+	@Override
+	public void setY(int y)
+	{
+		if (y != getY())
+		{
+			super.setY(y);
+			// Contained elements need to move with the panel
+			layoutDirty = true;
+		}
+	}
+	
 	@Override
 	public synchronized void destroy()
 	{
@@ -145,6 +171,7 @@ public class RendererPanel extends BoundedRenderer
 	public void setColumnSpacing(int spacing)
 	{
 		columnSpacing = spacing;
+		invalidateLayout();
 	}
 	
 	/** Set the number of pixels of spacing between each row.
@@ -154,6 +181,7 @@ public class RendererPanel extends BoundedRenderer
 	public void setRowSpacing(int spacing)
 	{
 		rowSpacing = spacing;
+		invalidateLayout();
 	}
 	
 	/** Add the specified element and use the specified tag to access it, and
@@ -220,7 +248,7 @@ public class RendererPanel extends BoundedRenderer
 	public synchronized  void addRenderer(BoundedRenderer obj, String name, RelativePosition relPos, BoundedRenderer relTo)
 	{
 		// Cannot position relative to element not in the panel
-		if (!renderers.containsValue(relTo))
+		if (relTo == null || relTo.getParentPanel() != this)
 		{
 			System.out.println(
 					"WARNING: Attempt to add a BoundedRenderer to a "
@@ -371,12 +399,67 @@ public class RendererPanel extends BoundedRenderer
 		{
 			return;
 		}
-		// Iterate over the rows to find the element
-		for (LinkedList<BoundedRenderer> row : rendererPositioning)
+		// Find the row containing the element
+		for (int r = 0; r < rendererPositioning.size(); ++r)
+		{
+			ArrayList<BoundedRenderer> row = rendererPositioning.get(r);
+			if (row.remove(obj))
+			{
+				// Remove the row if it is now empty
+				if (row.isEmpty())
+				{
+					rendererPositioning.remove(r);
+				}
+				break;
+			}
+		}
+		obj.setParentPanel(null);
+		invalidateLayout();
+	}
+	
+	/** Mark the layout of this panel as out of date, so it will be
+	 * recalculated before the next render. Since a change in layout may
+	 * change the size of this panel, any panel containing this panel is
+	 * also marked. Called automatically when elements are added, removed,
+	 * or resized.
+	 */
+	protected void invalidateLayout()
+	{
+		layoutDirty = true;
+		RendererPanel parent = getParentPanel();
+		if (parent != null)
+		{
+			parent.invalidateLayout();
+		}
+	}
+	
+	/** Recalculate the positions of the contained elements and the
+	 * dimensions of this panel, if anything has changed since the last time
+	 * they were calculated. Nested panels are brought up to date first, so
+	 * their dimensions are correct when positioning around them.
+	 */
+	protected synchronized void validateLayout()
+	{
+		if (!layoutDirty)
+		{
+			return;
+		}
+		// Make sure nested panels have the correct dimensions
+		for (int r = 0; r < rendererPositioning.size(); ++r)
 		{
-			// Try to remove the element
-			row.remove(obj);
+			ArrayList<BoundedRenderer> row = rendererPositioning.get(r);
+			for (int c = 0; c < row.size(); ++c)
+			{
+				BoundedRenderer br = row.get(c);
+				if (br instanceof RendererPanel)
+				{
+					((RendererPanel) br).validateLayout();
+				}
+			}
 		}
+		layoutDirty = false;
+		updatePositions();
+		updateDims();
 	}
 	
 	/** Adds the specified BoundedRenderer at the specified position. Creates
@@ -431,9 +514,9 @@ public class RendererPanel extends BoundedRenderer
 			fRowIns = 0;
 		}
 		// Remove any placeholder elements from the new row
-		if (!renderers.containsValue(rendererPositioning.get(fRowIns).getFirst()))
+		if (rendererPositioning.get(fRowIns).get(0).getParentPanel() != this)
 		{
-			rendererPositioning.get(fRowIns).removeFirst();
+			rendererPositioning.get(fRowIns).remove(0);
 		}
 		// Limit the column value to prevent index exceptions
 		if (colInsert > rendererPositioning.get(fRowIns).size())
@@ -448,33 +531,27 @@ public class RendererPanel extends BoundedRenderer
 		rendererPositioning.get(fRowIns).add(fColIns, obj);
 		// Add to the tagged list (for easier access)
 		renderers.put(name, obj);
+		obj.setParentPanel(this);
 		// Update positions to prevent glitchy positioning
-		updatePositions();
-		updateDims();
+		invalidateLayout();
+		validateLayout();
 	}
 	
 	/** Update the absolute positions of contained elements. */
 	protected synchronized void updatePositions()
 	{
-		// Remove any completely empty rows
-		rendererPositioning.removeIf(
-				(LinkedList<BoundedRenderer> row)->
-				{
-					return row.isEmpty();
-				}
-				);
 		// Iterate over rows
 		for (int r = 0; r < rendererPositioning.size(); ++r)
 		{
 			// Get the actual row
-			LinkedList<BoundedRenderer> row = rendererPositioning.get(r);
+			ArrayList<BoundedRenderer> row = rendererPositioning.get(r);
 			// Empty row; ignore it
 			if (row.isEmpty())
 			{
 				continue;
 			}
 			// Iterate over the columns (individual GUIObjects)
-			for (int c = 0; c < rendererPositioning.get(r).size(); ++c)
+			for (int c = 0; c < row.size(); ++c)
 			{
 				// Get the actual object
 				BoundedRenderer obj = row.get(c);
@@ -503,7 +580,7 @@ public class RendererPanel extends BoundedRenderer
 				{
 					// Get the first object in previous row
 					BoundedRenderer aboveFirst =
-							rendererPositioning.get(r-1).getFirst();
+							rendererPositioning.get(r-1).get(0);
 					if (aboveFirst == null)
 					{
 						System.out.println(
@@ -565,7 +642,7 @@ public class RendererPanel extends BoundedRenderer
 	 */
 	protected void insertRow(int insertAt)
 	{
-		rendererPositioning.add(insertAt, new LinkedList<BoundedRenderer>());
+		rendererPositioning.add(insertAt, new ArrayList<BoundedRenderer>());
 		rendererPositioning.get(insertAt).add(new Placeholder(0,0,100,1));
 	}
 	
@@ -583,7 +660,7 @@ public class RendererPanel extends BoundedRenderer
 			return 0;
 		}
 		// Get the row
-		LinkedList<BoundedRenderer> r = rendererPositioning.get(row);
+		ArrayList<BoundedRenderer> r = rendererPositioning.get(row);
 		// Check if the row is not setup or is empty
 		if (r == null || r.isEmpty())
 		{
@@ -611,7 +688,8 @@ public class RendererPanel extends BoundedRenderer
 	 */
 	protected int getRowWidth(int row)
 	{
-		BoundedRenderer obj = rendererPositioning.get(row).getLast();
+		ArrayList<BoundedRenderer> r = rendererPositioning.get(row);
+		BoundedRenderer obj = r.get(r.size() - 1);
 		return obj.getX() - getX() + obj.getWidth();
 	}
 }
@@ -0,0 +1,176 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import xyz.digitalcookies.objective.Settings;
+
+/** Picks the resolution scale and antialiasing used for rendering the main
+ * layer set, based on how long recent frames took to render compared to
+ * the frame budget (from the TARGET_FPS setting.) When frames are too slow,
+ * antialiasing is turned off first and then the scale is lowered; when
+ * frames are fast again the scale is raised back up first and then
+ * antialiasing is turned back on. Changes are only made when the average
+ * render time is outside the hysteresis band around the budget, and not
+ * again until the average has had time to settle.
+ * @author Bryan Charles Bettis
+ */
+class ResolutionScaler
+{
+	/** The scale is always a multiple of this. */
+	private static final double SCALE_STEP = 0.05;
+	/** The number of frames to wait after a change before changing again. */
+	private static final int SETTLE_FRAMES = 30;
+	
+	/** The current resolution scale. */
+	private volatile double scale;
+	/** If antialiasing is currently enabled. */
+	private volatile boolean antialias;
+	/** The average render time of a frame, in nanoseconds. */
+	private double avgNanos;
+	/** Frames left before another change can be made. */
+	private int settleFrames;
+	
+	/** Basic constructor. */
+	public ResolutionScaler()
+	{
+		scale = 1.0;
+		antialias = true;
+		avgNanos = 0;
+		settleFrames = SETTLE_FRAMES;
+	}
+	
+	/** Get the scale to render the next frame at.
+	 * @return the resolution scale, where 1.0 is the full window size
+	 */
+	public double getScale()
+	{
+		return scale;
+	}
+	
+	/** Check if the next frame should be antialiased.
+	 * @return true if antialiasing should be enabled
+	 */
+	public boolean isAntialiased()
+	{
+		return antialias;
+	}
+	
+	/** Go back to full quality, such as when dynamic resolution has been
+	 * turned off.
+	 */
+	public synchronized void reset()
+	{
+		scale = 1.0;
+		antialias = true;
+		avgNanos = 0;
+		settleFrames = SETTLE_FRAMES;
+	}
+	
+	/** Update the scale and antialiasing using the render time of the
+	 * frame that just finished.
+	 * @param frameNanos how long the frame took to render
+	 */
+	public synchronized void update(long frameNanos)
+	{
+		double minScale = ((Number) Settings.getSetting(
+				Settings.DYN_RES_MIN_SCALE
+				)).doubleValue();
+		double maxScale = ((Number) Settings.getSetting(
+				Settings.DYN_RES_MAX_SCALE
+				)).doubleValue();
+		double hysteresis = ((Number) Settings.getSetting(
+				Settings.DYN_RES_HYSTERESIS
+				)).doubleValue();
+		int fps = (int) Settings.getSetting(Settings.TARGET_FPS);
+		double budget = 1000000000.0 / (fps > 0 ? fps : 60);
+		// Keep the scale within the bounds even if they were just changed
+		scale = clamp(scale, minScale, maxScale);
+		if (avgNanos == 0)
+		{
+			avgNanos = frameNanos;
+		}
+		else
+		{
+			avgNanos = avgNanos * 0.9 + frameNanos * 0.1;
+		}
+		if (settleFrames > 0)
+		{
+			--settleFrames;
+			return;
+		}
+		// Too slow, lower the quality
+		if (avgNanos > budget * (1 + hysteresis))
+		{
+			if (antialias)
+			{
+				antialias = false;
+			}
+			else if (scale > minScale)
+			{
+				// Rendering time is roughly proportional to the pixel count
+				double target = scale * Math.sqrt(budget / avgNanos);
+				scale = clamp(
+						Math.min(quantize(target), scale - SCALE_STEP),
+						minScale,
+						maxScale
+						);
+			}
+			else
+			{
+				return;
+			}
+			settleFrames = SETTLE_FRAMES;
+		}
+		// Fast enough to raise the quality
+		else if (avgNanos < budget * (1 - hysteresis))
+		{
+			if (scale < maxScale)
+			{
+				scale = clamp(scale + SCALE_STEP, minScale, maxScale);
+			}
+			else if (!antialias)
+			{
+				antialias = true;
+			}
+			else
+			{
+				return;
+			}
+			settleFrames = SETTLE_FRAMES;
+		}
+	}
+	
+	/** Round a scale down to a multiple of the scale step, so the buffer
+	 * size only changes in steps.
+	 * @param value the scale to round
+	 * @return the rounded scale
+	 */
+	private static double quantize(double value)
+	{
+		return Math.floor(value / SCALE_STEP + 1e-6) * SCALE_STEP;
+	}
+	
+	/** Clamp a value to a range.
+	 * @param value the value to clamp
+	 * @param min the minimum value
+	 * @param max the maximum value
+	 * @return the clamped value
+	 */
+	private static double clamp(double value, double min, double max)
+	{
+		return Math.max(min, Math.min(max, value));
+	}
+}
@@ -19,6 +19,8 @@ import java.awt.Font;
 import java.awt.Graphics2D;
 
 /** Contains a bunch of methods used to draw text to a graphics context.
+ * For drawing lots of short strings every frame, see {@link BitmapFont},
+ * which does not lay out and measure the text each time it is drawn.
  * TODO revamp this classes static methods
  * @author Bryan Charles Bettis
  */
@@ -86,6 +88,7 @@ public class TextDrawer
 	 */
 	public static void drawText(Graphics2D g, String text, int x, int y, Font font)
 	{
+		RenderProfiler.countDrawCall();
 		g.setFont(font);
 		g.drawString(
 				text,
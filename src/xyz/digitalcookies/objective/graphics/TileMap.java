@@ -0,0 +1,376 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import xyz.digitalcookies.objective.scene.Camera;
+
+/** A grid of tiles drawn as a single Renderer. Tile IDs are stored in a
+ * plain int array, and refer to square tiles in an atlas image, numbered
+ * left to right and then top to bottom. The map is split into chunks of
+ * {@link #CHUNK_TILES} by {@link #CHUNK_TILES} tiles, and each chunk is
+ * baked into its own image the first time it is visible. Changing a tile
+ * only marks its chunk to be baked again, and only the chunks visible
+ * through the camera are drawn, so the cost of rendering depends on the
+ * size of the screen instead of the size of the map.
+ * <br>
+ * <br>The map is drawn with its upper left corner at world coordinate
+ * (0,0), so a tile at (x,y) is drawn at screen coordinate
+ * (x * tileSize * scale + cameraX, y * tileSize * scale + cameraY).
+ * @author Bryan Charles Bettis
+ */
+public class TileMap implements Renderer
+{
+	/** The tile ID of a tile with nothing drawn in it. */
+	public static final int EMPTY = -1;
+	/** The width and height of a chunk, in tiles. */
+	public static final int CHUNK_TILES = 16;
+	
+	/** The width of the map, in tiles. */
+	private final int width;
+	/** The height of the map, in tiles. */
+	private final int height;
+	/** The width and height of a tile, in pixels. */
+	private final int tileSize;
+	/** The tile IDs, row by row. */
+	private final int[] tiles;
+	/** The number of chunk columns. */
+	private final int chunksX;
+	/** The number of chunk rows. */
+	private final int chunksY;
+	/** The baked image of each chunk, or null if not baked yet. Once an
+	 * image is stored here it is never drawn to again, since other bands may
+	 * still be drawing it.
+	 */
+	private final BufferedImage[] chunkImages;
+	/** If each chunk needs to be baked again. */
+	private final boolean[] dirtyChunks;
+	/** The image containing the tiles. */
+	private BufferedImage atlas;
+	/** The number of tiles in each row of the atlas. */
+	private int atlasColumns;
+	/** The camera used to position the map, or null. */
+	private volatile Camera camera;
+	
+	/** Create an empty tile map.
+	 * @param width the width of the map, in tiles
+	 * @param height the height of the map, in tiles
+	 * @param tileSize the width and height of a tile, in pixels
+	 * @param atlas the image containing the tiles
+	 */
+	public TileMap(int width, int height, int tileSize, BufferedImage atlas)
+	{
+		this.width = Math.max(width, 0);
+		this.height = Math.max(height, 0);
+		this.tileSize = Math.max(tileSize, 1);
+		tiles = new int[this.width * this.height];
+		Arrays.fill(tiles, EMPTY);
+		chunksX = (this.width + CHUNK_TILES - 1) / CHUNK_TILES;
+		chunksY = (this.height + CHUNK_TILES - 1) / CHUNK_TILES;
+		chunkImages = new BufferedImage[chunksX * chunksY];
+		dirtyChunks = new boolean[chunksX * chunksY];
+		setAtlas(atlas);
+	}
+	
+	@Override
+	public void render(RenderEvent event)
+	{
+		Rectangle view = getViewBounds(event);
+		if (view == null)
+		{
+			return;
+		}
+		Camera cam = camera;
+		double scale = cam == null ? 1.0 : cam.getScale();
+		double camX = cam == null ? 0.0 : cam.getPreciseX();
+		double camY = cam == null ? 0.0 : cam.getPreciseY();
+		if (scale <= 0)
+		{
+			return;
+		}
+		// Find the chunks that overlap the visible area
+		double chunkSize = CHUNK_TILES * tileSize * scale;
+		int firstX = Math.max(0, (int) Math.floor((view.x - camX) / chunkSize));
+		int firstY = Math.max(0, (int) Math.floor((view.y - camY) / chunkSize));
+		int lastX = Math.min(
+				chunksX - 1,
+				(int) Math.floor((view.x + view.width - camX) / chunkSize)
+				);
+		int lastY = Math.min(
+				chunksY - 1,
+				(int) Math.floor((view.y + view.height - camY) / chunkSize)
+				);
+		for (int cy = firstY; cy <= lastY; ++cy)
+		{
+			for (int cx = firstX; cx <= lastX; ++cx)
+			{
+				BufferedImage chunk = getChunkImage(cx, cy);
+				if (chunk == null)
+				{
+					continue;
+				}
+				// Round both edges so neighboring chunks have no gaps
+				int worldX = cx * CHUNK_TILES * tileSize;
+				int worldY = cy * CHUNK_TILES * tileSize;
+				int x0 = (int) Math.round(worldX * scale + camX);
+				int y0 = (int) Math.round(worldY * scale + camY);
+				int x1 = (int) Math.round((worldX + chunk.getWidth()) * scale + camX);
+				int y1 = (int) Math.round((worldY + chunk.getHeight()) * scale + camY);
+				ImageDrawer.drawGraphic(event, chunk, x0, y0, x1 - x0, y1 - y0);
+			}
+		}
+	}
+	
+	@Override
+	public boolean isThreadSafe()
+	{
+		return true;
+	}
+	
+	/** Get the tile ID at the specified tile coordinates.
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @return the tile ID, or {@link #EMPTY} if outside of the map
+	 */
+	public synchronized int getTile(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+		{
+			return EMPTY;
+		}
+		return tiles[y * width + x];
+	}
+	
+	/** Change the tile at the specified tile coordinates. The chunk
+	 * containing the tile is baked again the next time it is drawn.
+	 * @param x the x coordinate of the tile
+	 * @param y the y coordinate of the tile
+	 * @param id the new tile ID, or {@link #EMPTY}
+	 */
+	public synchronized void setTile(int x, int y, int id)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+		{
+			System.out.println(
+					"WARNING: Attempted to set a tile outside of a tile map: "
+					+ Integer.toString(x)
+					+ ","
+					+ Integer.toString(y)
+					);
+			return;
+		}
+		int index = y * width + x;
+		if (tiles[index] == id)
+		{
+			return;
+		}
+		tiles[index] = id;
+		dirtyChunks[(y / CHUNK_TILES) * chunksX + x / CHUNK_TILES] = true;
+	}
+	
+	/** Change all tiles in a rectangle of the map. Parts of the rectangle
+	 * outside of the map are ignored.
+	 * @param x the x coordinate of the upper left tile
+	 * @param y the y coordinate of the upper left tile
+	 * @param w the width of the rectangle, in tiles
+	 * @param h the height of the rectangle, in tiles
+	 * @param id the new tile ID, or {@link #EMPTY}
+	 */
+	public synchronized void fill(int x, int y, int w, int h, int id)
+	{
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + w, width);
+		int bottom = Math.min(y + h, height);
+		for (int ty = top; ty < bottom; ++ty)
+		{
+			for (int tx = left; tx < right; ++tx)
+			{
+				int index = ty * width + tx;
+				if (tiles[index] != id)
+				{
+					tiles[index] = id;
+					dirtyChunks[(ty / CHUNK_TILES) * chunksX + tx / CHUNK_TILES] = true;
+				}
+			}
+		}
+	}
+	
+	/** Replace the tile atlas, which bakes every chunk again.
+	 * @param atlas the image containing the tiles
+	 */
+	public synchronized void setAtlas(BufferedImage atlas)
+	{
+		if (atlas == null)
+		{
+			System.out.println("WARNING: Specified a null tile map atlas.");
+			Thread.dumpStack();
+		}
+		this.atlas = atlas;
+		atlasColumns = atlas == null ? 0 : atlas.getWidth() / tileSize;
+		Arrays.fill(dirtyChunks, true);
+	}
+	
+	/** Set the camera used to position the map.
+	 * @param camera the camera, or null to draw the map at (0,0) unscaled
+	 */
+	public void setCamera(Camera camera)
+	{
+		this.camera = camera;
+	}
+	
+	/** Get the camera used to position the map.
+	 * @return the camera, or null if none is set
+	 */
+	public Camera getCamera()
+	{
+		return camera;
+	}
+	
+	/** Get the width of the map.
+	 * @return the width of the map, in tiles
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	/** Get the height of the map.
+	 * @return the height of the map, in tiles
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	/** Get the size of a tile.
+	 * @return the width and height of a tile, in pixels
+	 */
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+	
+	/** Get the baked image of a chunk, baking it first if it has changed.
+	 * @param cx the x coordinate of the chunk
+	 * @param cy the y coordinate of the chunk
+	 * @return the baked image of the chunk
+	 */
+	private synchronized BufferedImage getChunkImage(int cx, int cy)
+	{
+		int index = cy * chunksX + cx;
+		if (dirtyChunks[index] || chunkImages[index] == null)
+		{
+			bakeChunk(cx, cy);
+			dirtyChunks[index] = false;
+		}
+		return chunkImages[index];
+	}
+	
+	/** Draw the tiles of a chunk into a new image, and replace the image of
+	 * the chunk with it. The old image is left as it is, since other bands
+	 * may still be drawing it.
+	 * @param cx the x coordinate of the chunk
+	 * @param cy the y coordinate of the chunk
+	 */
+	private void bakeChunk(int cx, int cy)
+	{
+		int index = cy * chunksX + cx;
+		int firstX = cx * CHUNK_TILES;
+		int firstY = cy * CHUNK_TILES;
+		int tilesX = Math.min(CHUNK_TILES, width - firstX);
+		int tilesY = Math.min(CHUNK_TILES, height - firstY);
+		BufferedImage image = ImageDrawer.createImage(
+				tilesX * tileSize,
+				tilesY * tileSize
+				);
+		if (atlas == null || atlasColumns <= 0)
+		{
+			chunkImages[index] = image;
+			return;
+		}
+		int atlasTiles = atlasColumns * (atlas.getHeight() / tileSize);
+		Graphics2D g = image.createGraphics();
+		RenderEvent event = new RenderEvent(g, image);
+		for (int ty = 0; ty < tilesY; ++ty)
+		{
+			int row = (firstY + ty) * width + firstX;
+			for (int tx = 0; tx < tilesX; ++tx)
+			{
+				int id = tiles[row + tx];
+				if (id < 0 || id >= atlasTiles)
+				{
+					continue;
+				}
+				ImageDrawer.drawRegion(
+						event,
+						atlas,
+						tx * tileSize,
+						ty * tileSize,
+						(id % atlasColumns) * tileSize,
+						(id / atlasColumns) * tileSize,
+						tileSize,
+						tileSize
+						);
+			}
+		}
+		g.dispose();
+		chunkImages[index] = image;
+	}
+	
+	/** Get the area of the screen that can be drawn to, in the coordinates
+	 * of the graphics context. This is the clip if there is one, otherwise
+	 * the target image of the render event, otherwise the whole device (so
+	 * when drawing to an image without a render event that knows the image,
+	 * the graphics context should be clipped to the visible area.)
+	 * @param event the render event being drawn with
+	 * @return the visible area, or null if it could not be determined
+	 */
+	private Rectangle getViewBounds(RenderEvent event)
+	{
+		Graphics2D g = event.getGC();
+		Rectangle clip = g.getClipBounds();
+		if (clip != null)
+		{
+			return clip;
+		}
+		// Not clipped, so use the whole image/device in user space
+		BufferedImage target = event.getTargetImage();
+		Rectangle device;
+		if (target != null)
+		{
+			device = new Rectangle(0, 0, target.getWidth(), target.getHeight());
+		}
+		else
+		{
+			device = g.getDeviceConfiguration().getBounds();
+		}
+		try
+		{
+			return g.getTransform().createInverse()
+					.createTransformedShape(device).getBounds();
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.graphics;
+
+import java.awt.geom.AffineTransform;
+
+/** A transform from world coordinates to screen coordinates that can be
+ * applied to an entire layer with
+ * {@link LayerSet#setViewTransform(int, ViewTransform)}, so the renderers
+ * in the layer draw in world coordinates and do not need to transform
+ * their own coordinates (and must not also apply the same camera
+ * themselves.)
+ * @author Bryan Charles Bettis
+ */
+public interface ViewTransform
+{
+	/** Get the current world to screen transform. The returned transform
+	 * must not be modified; implementations may return a cached instance.
+	 * @return the transform from world coordinates to screen coordinates
+	 */
+	public AffineTransform getViewTransform();
+}
@@ -15,7 +15,7 @@
 
 package xyz.digitalcookies.objective.input.gui;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 import xyz.digitalcookies.objective.graphics.BoundedRenderer;
 import xyz.digitalcookies.objective.graphics.RendererPanel;
@@ -48,7 +48,7 @@ public class GUIPanel extends RendererPanel implements GUIElement
 		synchronized (rendererPositioning)
 		{
 			// Update each contained element
-			for (LinkedList<BoundedRenderer> row : rendererPositioning)
+			for (ArrayList<BoundedRenderer> row : rendererPositioning)
 			{
 				for (BoundedRenderer br : row)
 				{
@@ -15,6 +15,7 @@
 
 package xyz.digitalcookies.objective.resources;
 
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.File;
@@ -25,6 +26,8 @@ import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
+import xyz.digitalcookies.objective.graphics.ImageDrawer;
+
 /** Handles the graphics resources managed for the graphics system.
  * @author Bryan Charles Bettis
  */
@@ -52,7 +55,20 @@ public class GraphicsResources extends ResourceHandler<BufferedImage>
 		{
 			return null;
 		}
-		return image;
+		if (image == null)
+		{
+			return null;
+		}
+		// Store images as premultiplied integer ARGB the direct pixel path
+		// can draw, which draws fastest
+		BufferedImage converted = ImageDrawer.createImage(
+				image.getWidth(),
+				image.getHeight()
+				);
+		Graphics2D g = converted.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return converted;
 	}
 	
 	@Override
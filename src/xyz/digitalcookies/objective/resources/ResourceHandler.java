@@ -22,10 +22,19 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Base class for all resource handlers. A resource handler loads,
  * buffers, and other management-related operations for a collection of
  * resources.
+ * <br>
+ * <br>With {@link #setAsyncLoading(boolean) async loading} enabled,
+ * requesting a resource that is not buffered yet starts loading it on a
+ * background thread and returns a placeholder right away, so threads like
+ * the rendering thread never wait for a resource to be read and decoded.
+ * The real resource is returned once it has been loaded.
  * @author Bryan Charles Bettis
  * @param <T> The type of data managed by a resource handler
  */
@@ -35,8 +44,19 @@ public abstract class ResourceHandler<T>
 	private String[] supportedExt;
 	/** Relative path containing resources managed. */
 	private String rootResDir;
+	/** The threads shared by all resource handlers for async loading. */
+	private static ExecutorService loader = null;
+	
 	/** Map of resource indexes to buffered resources. */
-	private HashMap<String, T> resources;
+	private final HashMap<String, T> resources;
+	/** Resources currently being loaded in the background. */
+	private final HashMap<String, CompletableFuture<T>> pending;
+	/** Counts how many times the resources have been re-indexed, so loads
+	 * started before the last re-index are thrown away.
+	 */
+	private int generation;
+	/** If resources should be loaded in the background when not buffered. */
+	private volatile boolean asyncLoading;
 	/** If this resource handler's bufferResources(...) method has been called
 	 * and finished normally (meaning it tried to buffer all indexed
 	 * resources.)
@@ -50,6 +70,9 @@ public abstract class ResourceHandler<T>
 	{
 		rootResDir = null;
 		resources = new HashMap<String, T>();
+		pending = new HashMap<String, CompletableFuture<T>>();
+		generation = 0;
+		asyncLoading = false;
 		supportedExt = null;
 		isBuffered = false;
 		supportsBuffering = false;
@@ -67,6 +90,18 @@ public abstract class ResourceHandler<T>
 	 */
 	protected abstract T getDefaultValue();
 	
+	/** Get the value returned in place of a resource that is still being
+	 * loaded in the background. Subclasses can override this to give a
+	 * placeholder specific to the resource; by default this is the same as
+	 * {@link #getDefaultValue()}.
+	 * @param resource the resource being loaded
+	 * @return the placeholder to use until the resource is loaded
+	 */
+	protected T getPlaceholder(String resource)
+	{
+		return getDefaultValue();
+	}
+	
 	/** Check if the specified named resource exists in this resource
 	 * manager.
 	 * @param resource the name of the resource relative to the root
@@ -77,10 +112,14 @@ public abstract class ResourceHandler<T>
 	 */
 	public boolean resExists(String resource)
 	{
-		return
-				resource != null
-				&& resources != null
-				&& resources.containsKey(resource);
+		if (resource == null)
+		{
+			return false;
+		}
+		synchronized (resources)
+		{
+			return resources.containsKey(resource);
+		}
 	}
 	
 	/** Get the specified resource.
@@ -112,11 +151,17 @@ public abstract class ResourceHandler<T>
 			// Supports buffering, and all resources are already buffered
 			else if (isBuffered())
 			{
-				return resources.getOrDefault(resource, getDefaultValue());
+				return getResValue(resource);
 			}
 			// Supports buffering, but the specified resource not yet buffered
-			else if (resources.getOrDefault(resource, null) == null)
+			else if (!isResBuffered(resource))
 			{
+				// Load in the background and use a placeholder until loaded
+				if (asyncLoading)
+				{
+					CompletableFuture<T> load = getResAsync(resource);
+					return load.isDone() ? load.join() : getPlaceholder(resource);
+				}
 				// Load the resource
 				T res = loadResFromPacks(
 						resource,
@@ -129,12 +174,12 @@ public abstract class ResourceHandler<T>
 				}
 				// Buffer the resource
 				setResValue(resource, res);
-				return resources.getOrDefault(resource, getDefaultValue());
+				return getResValue(resource);
 			}
 			// This specific resource is already buffered
 			else
 			{
-				return resources.getOrDefault(resource, getDefaultValue());
+				return getResValue(resource);
 			}
 		}
 		System.out.println(
@@ -145,6 +190,72 @@ public abstract class ResourceHandler<T>
 		return null;
 	}
 	
+	/** Get the specified resource once it has been loaded, loading it in the
+	 * background if it has not been buffered yet. Waiting on the returned
+	 * future is the same as calling {@link #getRes(String)} with async
+	 * loading disabled.
+	 * @param resource the relative name/path to the resource
+	 * @return a future completed with the resource (or the default value if
+	 * 		it could not be loaded)
+	 */
+	public CompletableFuture<T> getResAsync(String resource)
+	{
+		if (!supportsBuffering())
+		{
+			return CompletableFuture.supplyAsync(
+					()->
+					{
+						return getRes(resource);
+					},
+					getLoader()
+					);
+		}
+		synchronized (resources)
+		{
+			T res = resources.get(resource);
+			if (res != null)
+			{
+				return CompletableFuture.completedFuture(res);
+			}
+			CompletableFuture<T> load = pending.get(resource);
+			if (load == null)
+			{
+				int startGeneration = generation;
+				String[] packs = ResourceManager.getActivePacks();
+				load = CompletableFuture.supplyAsync(
+						()->
+						{
+							return finishLoad(resource, packs, startGeneration);
+						},
+						getLoader()
+						);
+				pending.put(resource, load);
+			}
+			return load;
+		}
+	}
+	
+	/** Check if async loading is enabled.
+	 * @return true if resources that are not buffered are loaded in the
+	 * 		background
+	 */
+	public boolean isAsyncLoading()
+	{
+		return asyncLoading;
+	}
+	
+	/** Set if resources that are not buffered yet should be loaded in the
+	 * background when requested, returning a placeholder until they are
+	 * loaded. Disabled by default. Has no effect if this resource handler
+	 * does not support buffering, or if all resources were buffered when it
+	 * was initialized.
+	 * @param async true to load resources in the background
+	 */
+	public void setAsyncLoading(boolean async)
+	{
+		asyncLoading = async;
+	}
+	
 	/** Initialize this resource handler. This will index the contents of the
 	 * default and current resource packs in ResourcePackManager, and then
 	 * if ResourcePackManager has been told to pre-load all resources, buffer
@@ -318,7 +429,99 @@ public abstract class ResourceHandler<T>
 	 */
 	private void setResValue(String resource, T value)
 	{
-		resources.put(resource, value);
+		synchronized (resources)
+		{
+			resources.put(resource, value);
+		}
+	}
+	
+	/** Get the buffered value of a resource.
+	 * @param resource the access name of the resource
+	 * @return the buffered value, or the default value if the resource is not
+	 * 		buffered or does not exist
+	 */
+	private T getResValue(String resource)
+	{
+		synchronized (resources)
+		{
+			T res = resources.get(resource);
+			return res == null ? getDefaultValue() : res;
+		}
+	}
+	
+	/** Check if a resource has been buffered, without falling back to the
+	 * default value like getResValue(resource).
+	 * @param resource the access name of the resource
+	 * @return true if the resource has a buffered value
+	 */
+	private boolean isResBuffered(String resource)
+	{
+		synchronized (resources)
+		{
+			return resources.get(resource) != null;
+		}
+	}
+	
+	/** Load a resource on a loader thread and buffer it.
+	 * @param resource the resource to load
+	 * @param packs the packs that were active when loading was requested
+	 * @param startGeneration the generation when loading was requested
+	 * @return the loaded resource, or the default value if it could not be
+	 * 		loaded
+	 */
+	private T finishLoad(String resource, String[] packs, int startGeneration)
+	{
+		T res = null;
+		try
+		{
+			res = loadResFromPacks(resource, packs);
+		}
+		catch (Exception e)
+		{
+			System.out.println(
+					"WARNING: Unable to load resource \'" + resource + "\'."
+					);
+			e.printStackTrace();
+		}
+		// Resource not found, use default value
+		if (res == null)
+		{
+			res = getDefaultValue();
+		}
+		synchronized (resources)
+		{
+			pending.remove(resource);
+			// Do not buffer into an index that has since been rebuilt
+			if (startGeneration == generation)
+			{
+				resources.put(resource, res);
+			}
+		}
+		return res;
+	}
+	
+	/** Get the threads used for async loading, starting them if needed.
+	 * @return the executor for loading resources in the background
+	 */
+	private static synchronized ExecutorService getLoader()
+	{
+		if (loader == null)
+		{
+			int threads = Math.max(
+					1,
+					Math.min(4, Runtime.getRuntime().availableProcessors() - 1)
+					);
+			loader = Executors.newFixedThreadPool(
+					threads,
+					(Runnable r)->
+					{
+						Thread t = new Thread(r, "Resource Loader");
+						t.setDaemon(true);
+						return t;
+					}
+					);
+		}
+		return loader;
 	}
 	
 	/** Index all resources contained in one or more of the specified packs.
@@ -334,7 +537,12 @@ public abstract class ResourceHandler<T>
 	{
 		System.out.println("Indexing resources...");
 		// Clear current resource index
-		resources.clear();
+		synchronized (resources)
+		{
+			resources.clear();
+			pending.clear();
+			++generation;
+		}
 		// Index each pack in order listed
 		for (int i = packs.length-1; i >= 0; --i)
 		{
@@ -379,7 +587,12 @@ public abstract class ResourceHandler<T>
 			return;
 		}
 		System.out.println("Buffering resources...");
-		Iterator<String> keys = resources.keySet().iterator();
+		List<String> keyList;
+		synchronized (resources)
+		{
+			keyList = new LinkedList<String>(resources.keySet());
+		}
+		Iterator<String> keys = keyList.iterator();
 		while (keys.hasNext())
 		{
 			String key = keys.next();
@@ -0,0 +1,292 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.Arrays;
+
+/** Stores all entities of an {@link EntityWorld} that have exactly the
+ * same set of components. Each component is stored in its own plain array
+ * (a column), with the values of one entity (a row) next to each other, so
+ * a system can loop over the entities of an archetype without following
+ * any references.
+ * <br>
+ * <br>The value at index k of a component with width w for the entity in
+ * row r is at index r*w+k of the component's array. The arrays are
+ * replaced when the archetype grows, so they should be requested again
+ * instead of being kept between updates.
+ * @author Bryan Charles Bettis
+ */
+public class Archetype
+{
+	/** The set of component types of this archetype, as a mask. */
+	private final long mask;
+	/** The component types of this archetype, ordered by id. */
+	private final ComponentType[] types;
+	/** The column of each component type id, or -1 if not in this type. */
+	private final int[] columnOf;
+	/** The array of values of each component. */
+	private final Object[] columns;
+	/** The entity id in each row. */
+	private int[] entities;
+	/** The number of rows in use. */
+	private int size;
+	
+	/** Create an empty archetype.
+	 * @param mask the set of component types, as a mask
+	 * @param types the component types, ordered by id
+	 */
+	Archetype(long mask, ComponentType[] types)
+	{
+		this.mask = mask;
+		this.types = types;
+		columnOf = new int[ComponentType.MAX_TYPES];
+		Arrays.fill(columnOf, -1);
+		columns = new Object[types.length];
+		int capacity = 16;
+		for (int i = 0; i < types.length; ++i)
+		{
+			columnOf[types[i].getId()] = i;
+			columns[i] = createColumn(types[i], capacity);
+		}
+		entities = new int[capacity];
+		size = 0;
+	}
+	
+	/** Get the number of entities in this archetype.
+	 * @return the number of rows in use
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/** Get the id of the entity in a row.
+	 * @param row the row of the entity
+	 * @return the entity id
+	 */
+	public int getEntity(int row)
+	{
+		return entities[row];
+	}
+	
+	/** Check if entities in this archetype have a component.
+	 * @param type the component type to check for
+	 * @return true if the component is stored in this archetype
+	 */
+	public boolean has(ComponentType type)
+	{
+		return columnOf[type.getId()] >= 0;
+	}
+	
+	/** Get the component types of the entities in this archetype.
+	 * @return a copy of the component types
+	 */
+	public ComponentType[] getComponentTypes()
+	{
+		return types.clone();
+	}
+	
+	/** Get the values of a component stored as doubles.
+	 * @param type a component type of kind DOUBLE
+	 * @return the values of all rows, or null if the component is not in
+	 * 		this archetype or is not stored as doubles
+	 */
+	public double[] getDoubles(ComponentType type)
+	{
+		Object column = getColumn(type, ComponentType.Kind.DOUBLE);
+		return column == null ? null : (double[]) column;
+	}
+	
+	/** Get the values of a component stored as ints.
+	 * @param type a component type of kind INT
+	 * @return the values of all rows, or null if the component is not in
+	 * 		this archetype or is not stored as ints
+	 */
+	public int[] getInts(ComponentType type)
+	{
+		Object column = getColumn(type, ComponentType.Kind.INT);
+		return column == null ? null : (int[]) column;
+	}
+	
+	/** Get the values of a component stored as objects.
+	 * @param type a component type of kind OBJECT
+	 * @return the values of all rows, or null if the component is not in
+	 * 		this archetype or is not stored as objects
+	 */
+	public Object[] getObjects(ComponentType type)
+	{
+		Object column = getColumn(type, ComponentType.Kind.OBJECT);
+		return column == null ? null : (Object[]) column;
+	}
+	
+	/** Get the set of component types of this archetype.
+	 * @return the mask with the bit of each component type set
+	 */
+	long getMask()
+	{
+		return mask;
+	}
+	
+	/** Add a row for an entity, with all values zero (or null.)
+	 * @param entity the id of the entity
+	 * @return the row of the entity
+	 */
+	int add(int entity)
+	{
+		if (size == entities.length)
+		{
+			int capacity = size * 2;
+			entities = Arrays.copyOf(entities, capacity);
+			for (int i = 0; i < types.length; ++i)
+			{
+				columns[i] = growColumn(columns[i], capacity * types[i].getWidth());
+			}
+		}
+		// Clear values left behind by a removed row
+		for (int i = 0; i < types.length; ++i)
+		{
+			int width = types[i].getWidth();
+			if (types[i].getKind() == ComponentType.Kind.DOUBLE)
+			{
+				Arrays.fill((double[]) columns[i], size * width, (size + 1) * width, 0);
+			}
+			else if (types[i].getKind() == ComponentType.Kind.INT)
+			{
+				Arrays.fill((int[]) columns[i], size * width, (size + 1) * width, 0);
+			}
+		}
+		entities[size] = entity;
+		return size++;
+	}
+	
+	/** Remove a row, moving the last row into its place.
+	 * @param row the row to remove
+	 * @return the id of the entity moved into the row, or -1 if the removed
+	 * 		row was the last row
+	 */
+	int remove(int row)
+	{
+		int last = size - 1;
+		int moved = -1;
+		for (int i = 0; i < types.length; ++i)
+		{
+			int width = types[i].getWidth();
+			if (row != last)
+			{
+				System.arraycopy(columns[i], last * width, columns[i], row * width, width);
+			}
+			// Do not keep references to removed objects
+			if (types[i].getKind() == ComponentType.Kind.OBJECT)
+			{
+				Arrays.fill((Object[]) columns[i], last * width, size * width, null);
+			}
+		}
+		if (row != last)
+		{
+			moved = entities[last];
+			entities[row] = moved;
+		}
+		size = last;
+		return moved;
+	}
+	
+	/** Copy the components of a row that are also in another archetype.
+	 * @param row the row to copy from
+	 * @param dst the archetype to copy to
+	 * @param dstRow the row to copy to
+	 */
+	void copyRow(int row, Archetype dst, int dstRow)
+	{
+		for (int i = 0; i < types.length; ++i)
+		{
+			int column = dst.columnOf[types[i].getId()];
+			if (column >= 0)
+			{
+				int width = types[i].getWidth();
+				System.arraycopy(
+						columns[i],
+						row * width,
+						dst.columns[column],
+						dstRow * width,
+						width
+						);
+			}
+		}
+	}
+	
+	/** Get the array of a component, checking its kind.
+	 * @param type the component type
+	 * @param kind the kind of values expected
+	 * @return the array, or null if not found or of a different kind
+	 */
+	Object getColumn(ComponentType type, ComponentType.Kind kind)
+	{
+		int column = columnOf[type.getId()];
+		if (column < 0)
+		{
+			return null;
+		}
+		if (type.getKind() != kind)
+		{
+			System.out.println(
+					"WARNING: Component \'"
+					+ type.getName()
+					+ "\' is not stored as "
+					+ kind.toString()
+					);
+			Thread.dumpStack();
+			return null;
+		}
+		return columns[column];
+	}
+	
+	/** Create an empty array for a component.
+	 * @param type the component type
+	 * @param rows the number of rows to make room for
+	 * @return the new array
+	 */
+	private static Object createColumn(ComponentType type, int rows)
+	{
+		int length = rows * type.getWidth();
+		switch (type.getKind())
+		{
+			case DOUBLE:
+				return new double[length];
+			case INT:
+				return new int[length];
+			default:
+				return new Object[length];
+		}
+	}
+	
+	/** Copy a component array into a larger array.
+	 * @param column the array to grow
+	 * @param length the new length of the array
+	 * @return the new array
+	 */
+	private static Object growColumn(Object column, int length)
+	{
+		if (column instanceof double[])
+		{
+			return Arrays.copyOf((double[]) column, length);
+		}
+		if (column instanceof int[])
+		{
+			return Arrays.copyOf((int[]) column, length);
+		}
+		return Arrays.copyOf((Object[]) column, length);
+	}
+}
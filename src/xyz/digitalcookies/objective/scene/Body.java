@@ -18,12 +18,184 @@ package xyz.digitalcookies.objective.scene;
 /** A body represents the basic physical aspects of an entity that exists
  * within a specific scene, such as size, velocity, position,
  * mass, steering forces, and so on.
+ * <br>
+ * <br>The shape of a body is given by its subclass (such as
+ * {@link BoxBody} or {@link CircleBody}), and is centered on its
+ * position. Bodies added to a {@link CollisionWorld} are checked for
+ * contacts with each other each time the world is updated, and bodies
+ * added to a {@link PhysicsWorld} are also moved by their velocity and
+ * pushed apart when they touch.
  * @author Bryan Charles Bettis
  */
 public abstract class Body
 {
+	/** The x coordinate of the center of this body. */
+	private volatile double x;
+	/** The y coordinate of the center of this body. */
+	private volatile double y;
+	/** The x coordinate to draw this body at. */
+	private volatile double renderX;
+	/** The y coordinate to draw this body at. */
+	private volatile double renderY;
+	/** The mass of this body, or 0 if it can not be moved by physics. */
+	private volatile double mass;
+	/** How much of its speed this body keeps when bouncing. */
+	private volatile double restitution;
+	/** The entity this body belongs to, or null. */
+	private volatile Entity entity;
+	/** The index of this body in its collision world, or -1. */
+	int proxy;
+	/** The index of this body in its physics world, or -1. */
+	int physicsIndex;
+	
 	/** Basic constructor. */
 	public Body()
 	{
+		x = 0;
+		y = 0;
+		renderX = 0;
+		renderY = 0;
+		mass = 1;
+		restitution = 0;
+		entity = null;
+		proxy = -1;
+		physicsIndex = -1;
 	}
+	
+	/** Get the x coordinate of the center of this body.
+	 * @return the x coordinate
+	 */
+	public double getX()
+	{
+		return x;
+	}
+	
+	/** Get the y coordinate of the center of this body.
+	 * @return the y coordinate
+	 */
+	public double getY()
+	{
+		return y;
+	}
+	
+	/** Move the center of this body. When in a physics world, the body
+	 * jumps to the new position instead of moving there smoothly.
+	 * @param x the new x coordinate
+	 * @param y the new y coordinate
+	 */
+	public void setPosition(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+		renderX = x;
+		renderY = y;
+	}
+	
+	/** Get the x coordinate to draw the center of this body at. In a
+	 * physics world this is between the last two physics steps, so drawing
+	 * is smooth even when physics steps and frames do not line up.
+	 * @return the x coordinate to draw at
+	 */
+	public double getRenderX()
+	{
+		return renderX;
+	}
+	
+	/** Get the y coordinate to draw the center of this body at. In a
+	 * physics world this is between the last two physics steps, so drawing
+	 * is smooth even when physics steps and frames do not line up.
+	 * @return the y coordinate to draw at
+	 */
+	public double getRenderY()
+	{
+		return renderY;
+	}
+	
+	/** Move this body from a physics world during a step, without changing
+	 * where it is drawn.
+	 * @param x the new x coordinate
+	 * @param y the new y coordinate
+	 */
+	void moveTo(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+	
+	/** Move this body from a physics world.
+	 * @param x the new x coordinate
+	 * @param y the new y coordinate
+	 * @param renderX the x coordinate to draw at
+	 * @param renderY the y coordinate to draw at
+	 */
+	void moveTo(double x, double y, double renderX, double renderY)
+	{
+		this.x = x;
+		this.y = y;
+		this.renderX = renderX;
+		this.renderY = renderY;
+	}
+	
+	/** Get the mass of this body.
+	 * @return the mass, or 0 if this body is not moved by physics
+	 */
+	public double getMass()
+	{
+		return mass;
+	}
+	
+	/** Set the mass of this body. A mass of 0 makes the body static, so it
+	 * is not moved by forces or contacts (such as walls and floors.)
+	 * @param mass the mass, or 0 for a static body
+	 */
+	public void setMass(double mass)
+	{
+		this.mass = Math.max(mass, 0);
+	}
+	
+	/** Get how bouncy this body is.
+	 * @return the fraction of its speed kept when bouncing off of another
+	 * 		body
+	 */
+	public double getRestitution()
+	{
+		return restitution;
+	}
+	
+	/** Set how bouncy this body is. When two bodies touch, the bouncier
+	 * one is used.
+	 * @param restitution the fraction of its speed kept when bouncing off
+	 * 		of another body, from 0 (no bounce) to 1
+	 */
+	public void setRestitution(double restitution)
+	{
+		this.restitution = Math.max(0, Math.min(1, restitution));
+	}
+	
+	/** Get the entity this body belongs to.
+	 * @return the entity, or null if none was set
+	 */
+	public Entity getEntity()
+	{
+		return entity;
+	}
+	
+	/** Set the entity this body belongs to. If the entity is a
+	 * {@link CollisionListener}, it is told about contacts of this body.
+	 * @param entity the entity, or null
+	 */
+	public void setEntity(Entity entity)
+	{
+		this.entity = entity;
+	}
+	
+	/** Get half of the width of the bounding box of this body.
+	 * @return the distance from the center to the left or right edge
+	 */
+	public abstract double getHalfWidth();
+	
+	/** Get half of the height of the bounding box of this body.
+	 * @return the distance from the center to the top or bottom edge
+	 */
+	public abstract double getHalfHeight();
 }
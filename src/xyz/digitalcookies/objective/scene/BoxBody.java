@@ -0,0 +1,58 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** A body shaped like an axis-aligned rectangle.
+ * @author Bryan Charles Bettis
+ */
+public class BoxBody extends Body
+{
+	/** Half of the width of the box. */
+	private volatile double halfWidth;
+	/** Half of the height of the box. */
+	private volatile double halfHeight;
+	
+	/** Create a box.
+	 * @param width the width of the box
+	 * @param height the height of the box
+	 */
+	public BoxBody(double width, double height)
+	{
+		setSize(width, height);
+	}
+	
+	/** Change the size of the box.
+	 * @param width the width of the box
+	 * @param height the height of the box
+	 */
+	public void setSize(double width, double height)
+	{
+		halfWidth = Math.abs(width) / 2;
+		halfHeight = Math.abs(height) / 2;
+	}
+	
+	@Override
+	public double getHalfWidth()
+	{
+		return halfWidth;
+	}
+	
+	@Override
+	public double getHalfHeight()
+	{
+		return halfHeight;
+	}
+}
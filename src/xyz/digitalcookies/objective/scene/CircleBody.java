@@ -0,0 +1,61 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** A body shaped like a circle.
+ * @author Bryan Charles Bettis
+ */
+public class CircleBody extends Body
+{
+	/** The radius of the circle. */
+	private volatile double radius;
+	
+	/** Create a circle.
+	 * @param radius the radius of the circle
+	 */
+	public CircleBody(double radius)
+	{
+		setRadius(radius);
+	}
+	
+	/** Get the radius of the circle.
+	 * @return the radius
+	 */
+	public double getRadius()
+	{
+		return radius;
+	}
+	
+	/** Change the radius of the circle.
+	 * @param radius the new radius
+	 */
+	public void setRadius(double radius)
+	{
+		this.radius = Math.abs(radius);
+	}
+	
+	@Override
+	public double getHalfWidth()
+	{
+		return radius;
+	}
+	
+	@Override
+	public double getHalfHeight()
+	{
+		return radius;
+	}
+}
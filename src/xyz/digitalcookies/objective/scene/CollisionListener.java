@@ -0,0 +1,32 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** Receives the contacts found by a {@link CollisionWorld}. Entities that
+ * implement this are told about the contacts of their bodies (see
+ * {@link Body#setEntity(Entity)}.)
+ * @author Bryan Charles Bettis
+ */
+public interface CollisionListener
+{
+	/** Called for each contact of a body during a collision world update.
+	 * The event is reused for every contact, so it must not be kept after
+	 * this method returns.
+	 * @param event the contact, from the point of view of this listener's
+	 * 		body when delivered to an entity
+	 */
+	public void contact(ContactEvent event);
+}
@@ -0,0 +1,556 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import xyz.digitalcookies.objective.utility.JobPool;
+
+/** Finds the bodies that are touching each other. Each update, the
+ * bounding boxes of all bodies are sorted along the x axis (sweep and
+ * prune) to find the pairs of bodies whose bounding boxes overlap. Since
+ * bodies usually only move a little between updates, the order from the
+ * last update is kept and only needs small fixes, which takes close to
+ * linear time. The exact shapes of the overlapping pairs are then tested
+ * in parallel on the threads of the {@link JobPool}, and each contact is
+ * sent to the listeners of the world and to the entities of both bodies
+ * that are {@link CollisionListener}s.
+ * <br>
+ * <br>The state of each body is copied into plain arrays at the start of
+ * an update, and the same contact event is reused for every contact, so
+ * updating does not create garbage once the arrays are large enough.
+ * @author Bryan Charles Bettis
+ */
+public class CollisionWorld
+{
+	/** The fewest pairs given to a thread when testing shapes. */
+	private static final int PARALLEL_CHUNK = 512;
+	
+	/** The bodies in this world, by index. */
+	private Body[] bodies;
+	/** The number of bodies in this world. */
+	private int count;
+	/** The x coordinate of the center of each body. */
+	private double[] posX;
+	/** The y coordinate of the center of each body. */
+	private double[] posY;
+	/** Half of the width of each body (the radius of circles.) */
+	private double[] halfW;
+	/** Half of the height of each body. */
+	private double[] halfH;
+	/** If each body is a circle (otherwise it is a box.) */
+	private boolean[] circle;
+	/** The body indexes, sorted by the left edge of their bounding box.
+	 * Removed bodies leave -1 behind, which is dropped by the next sort.
+	 */
+	private int[] order;
+	/** The number of entries in the order, including removed bodies. */
+	private int orderSize;
+	/** The position of each body index in the sorted order. */
+	private int[] rank;
+	/** The first body of each pair with overlapping bounding boxes. */
+	private int[] pairA;
+	/** The second body of each pair with overlapping bounding boxes. */
+	private int[] pairB;
+	/** The x part of the contact normal of each pair. */
+	private double[] normalX;
+	/** The y part of the contact normal of each pair. */
+	private double[] normalY;
+	/** The penetration depth of each pair, or 0 if the shapes do not touch. */
+	private double[] depth;
+	/** The number of bodies added since the order was last sorted. */
+	private int unsorted;
+	/** The number of pairs found by the last update. */
+	private int pairCount;
+	/** The number of pairs that were touching in the last update. */
+	private int contactCount;
+	/** If contacts are being sent out, so bodies can not be moved around. */
+	private boolean delivering;
+	/** Bodies added or removed while contacts were being sent out. */
+	private final ArrayList<Body> pendingAdd;
+	/** Bodies removed while contacts were being sent out. */
+	private final ArrayList<Body> pendingRemove;
+	/** The event reused for every contact. */
+	private final ContactEvent event;
+	/** Listeners told about every contact. */
+	private final CopyOnWriteArrayList<CollisionListener> listeners;
+	/** The listeners as an array, so sending a contact does not create an
+	 * iterator. Replaced whenever the listeners change.
+	 */
+	private volatile CollisionListener[] listenerArray;
+	
+	/** Create an empty collision world. */
+	public CollisionWorld()
+	{
+		int capacity = 64;
+		bodies = new Body[capacity];
+		count = 0;
+		posX = new double[capacity];
+		posY = new double[capacity];
+		halfW = new double[capacity];
+		halfH = new double[capacity];
+		circle = new boolean[capacity];
+		order = new int[capacity];
+		orderSize = 0;
+		rank = new int[capacity];
+		pairA = new int[capacity];
+		pairB = new int[capacity];
+		normalX = new double[capacity];
+		normalY = new double[capacity];
+		depth = new double[capacity];
+		unsorted = 0;
+		pairCount = 0;
+		contactCount = 0;
+		delivering = false;
+		pendingAdd = new ArrayList<Body>();
+		pendingRemove = new ArrayList<Body>();
+		event = new ContactEvent();
+		listeners = new CopyOnWriteArrayList<CollisionListener>();
+		listenerArray = new CollisionListener[0];
+	}
+	
+	/** Add a body to this world. A body can only be in one world at a time.
+	 * @param body the body to add
+	 */
+	public synchronized void add(Body body)
+	{
+		if (body == null || body.proxy >= 0)
+		{
+			System.out.println(
+					"WARNING: Attempted to add a null body or a body that is "
+					+ "already in a collision world."
+					);
+			Thread.dumpStack();
+			return;
+		}
+		if (delivering)
+		{
+			pendingAdd.add(body);
+			return;
+		}
+		if (count == bodies.length)
+		{
+			grow(count * 2);
+		}
+		if (orderSize == order.length)
+		{
+			compactOrder();
+		}
+		int index = count++;
+		bodies[index] = body;
+		body.proxy = index;
+		// Put it at the end; the next update sorts it into place
+		order[orderSize] = index;
+		rank[index] = orderSize;
+		++orderSize;
+		++unsorted;
+	}
+	
+	/** Remove a body from this world.
+	 * @param body the body to remove
+	 */
+	public synchronized void remove(Body body)
+	{
+		// Added while sending contacts, so not really added yet
+		if (delivering && pendingAdd.remove(body))
+		{
+			return;
+		}
+		int index = body.proxy;
+		if (index < 0 || index >= count || bodies[index] != body)
+		{
+			return;
+		}
+		if (delivering)
+		{
+			pendingRemove.add(body);
+			return;
+		}
+		// Leave a gap in the sorted order for the next sort to drop
+		order[rank[index]] = -1;
+		// Move the last body into the empty index
+		int last = --count;
+		if (index != last)
+		{
+			Body moved = bodies[last];
+			bodies[index] = moved;
+			moved.proxy = index;
+			order[rank[last]] = index;
+			rank[index] = rank[last];
+		}
+		bodies[last] = null;
+		body.proxy = -1;
+	}
+	
+	/** Get the number of bodies in this world.
+	 * @return the number of bodies
+	 */
+	public synchronized int getBodyCount()
+	{
+		return count;
+	}
+	
+	/** Get the number of contacts found by the last update.
+	 * @return the number of touching pairs of bodies
+	 */
+	public synchronized int getContactCount()
+	{
+		return contactCount;
+	}
+	
+	/** Add a listener to be told about every contact.
+	 * @param listener the listener to add
+	 */
+	public void addCollisionListener(CollisionListener listener)
+	{
+		synchronized (listeners)
+		{
+			listeners.addIfAbsent(listener);
+			listenerArray = listeners.toArray(new CollisionListener[0]);
+		}
+	}
+	
+	/** Stop telling a listener about contacts.
+	 * @param listener the listener to remove
+	 */
+	public void removeCollisionListener(CollisionListener listener)
+	{
+		synchronized (listeners)
+		{
+			listeners.remove(listener);
+			listenerArray = listeners.toArray(new CollisionListener[0]);
+		}
+	}
+	
+	/** Find all touching bodies and send out the contacts. Bodies added or
+	 * removed by listeners are added or removed once all contacts have been
+	 * sent out.
+	 */
+	public synchronized void update()
+	{
+		refreshBounds();
+		sortOrder();
+		findPairs();
+		// Test the exact shapes of the pairs
+		JobPool.parallelFor(
+				0,
+				pairCount,
+				PARALLEL_CHUNK,
+				(int start, int end)->
+				{
+					for (int i = start; i < end; ++i)
+					{
+						testPair(i);
+					}
+				}
+				);
+		deliverContacts();
+	}
+	
+	/** Copy the position and size of each body into the arrays. */
+	private void refreshBounds()
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			Body body = bodies[i];
+			posX[i] = body.getX();
+			posY[i] = body.getY();
+			halfW[i] = body.getHalfWidth();
+			halfH[i] = body.getHalfHeight();
+			circle[i] = body instanceof CircleBody;
+		}
+	}
+	
+	/** Fix the order of the bodies by the left edge of their bounding box.
+	 * This is an insertion sort since the order is usually almost correct,
+	 * but when many bodies were added since the last update (such as the
+	 * first update) it is a shell sort, so it does not take quadratic time.
+	 */
+	private void sortOrder()
+	{
+		compactOrder();
+		int gap = 1;
+		if (unsorted > count / 4)
+		{
+			while (gap < count / 3)
+			{
+				gap = gap * 3 + 1;
+			}
+		}
+		unsorted = 0;
+		for (; gap > 0; gap /= 3)
+		{
+			for (int i = gap; i < count; ++i)
+			{
+				int index = order[i];
+				double left = posX[index] - halfW[index];
+				int j = i - gap;
+				while (j >= 0 && posX[order[j]] - halfW[order[j]] > left)
+				{
+					order[j + gap] = order[j];
+					j -= gap;
+				}
+				order[j + gap] = index;
+			}
+		}
+		for (int i = 0; i < count; ++i)
+		{
+			rank[order[i]] = i;
+		}
+	}
+	
+	/** Drop the gaps left in the sorted order by removed bodies, keeping the
+	 * order of the rest.
+	 */
+	private void compactOrder()
+	{
+		if (orderSize == count)
+		{
+			return;
+		}
+		int size = 0;
+		for (int i = 0; i < orderSize; ++i)
+		{
+			int index = order[i];
+			if (index >= 0)
+			{
+				order[size] = index;
+				rank[index] = size;
+				++size;
+			}
+		}
+		orderSize = size;
+	}
+	
+	/** Find the pairs of bodies with overlapping bounding boxes. */
+	private void findPairs()
+	{
+		pairCount = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			int a = order[i];
+			double right = posX[a] + halfW[a];
+			double top = posY[a] - halfH[a];
+			double bottom = posY[a] + halfH[a];
+			for (int j = i + 1; j < count; ++j)
+			{
+				int b = order[j];
+				// Sorted by left edge, so nothing after this can overlap
+				if (posX[b] - halfW[b] > right)
+				{
+					break;
+				}
+				if (posY[b] - halfH[b] <= bottom && posY[b] + halfH[b] >= top)
+				{
+					if (pairCount == pairA.length)
+					{
+						growPairs(pairCount * 2);
+					}
+					pairA[pairCount] = a;
+					pairB[pairCount] = b;
+					++pairCount;
+				}
+			}
+		}
+	}
+	
+	/** Test if the shapes of a pair of bodies touch, and store the contact
+	 * normal and depth if they do.
+	 * @param pair the index of the pair
+	 */
+	private void testPair(int pair)
+	{
+		int a = pairA[pair];
+		int b = pairB[pair];
+		double dx = posX[b] - posX[a];
+		double dy = posY[b] - posY[a];
+		depth[pair] = 0;
+		if (circle[a] && circle[b])
+		{
+			double radii = halfW[a] + halfW[b];
+			double distSq = dx * dx + dy * dy;
+			if (distSq >= radii * radii)
+			{
+				return;
+			}
+			double dist = Math.sqrt(distSq);
+			setContact(pair, dist > 0 ? dx / dist : 1, dist > 0 ? dy / dist : 0, radii - dist);
+		}
+		else if (!circle[a] && !circle[b])
+		{
+			double overlapX = halfW[a] + halfW[b] - Math.abs(dx);
+			double overlapY = halfH[a] + halfH[b] - Math.abs(dy);
+			if (overlapX <= 0 || overlapY <= 0)
+			{
+				return;
+			}
+			// Push apart along the axis with the least overlap
+			if (overlapX < overlapY)
+			{
+				setContact(pair, dx < 0 ? -1 : 1, 0, overlapX);
+			}
+			else
+			{
+				setContact(pair, 0, dy < 0 ? -1 : 1, overlapY);
+			}
+		}
+		else if (circle[b])
+		{
+			testBoxCircle(pair, a, b, 1);
+		}
+		else
+		{
+			testBoxCircle(pair, b, a, -1);
+		}
+	}
+	
+	/** Test if a box and a circle touch, and store the contact normal and
+	 * depth if they do.
+	 * @param pair the index of the pair
+	 * @param box the index of the box
+	 * @param circ the index of the circle
+	 * @param sign 1 if the box is the first body of the pair, -1 if not
+	 */
+	private void testBoxCircle(int pair, int box, int circ, double sign)
+	{
+		double dx = posX[circ] - posX[box];
+		double dy = posY[circ] - posY[box];
+		double radius = halfW[circ];
+		// The closest point of the box to the center of the circle
+		double cx = Math.max(-halfW[box], Math.min(halfW[box], dx));
+		double cy = Math.max(-halfH[box], Math.min(halfH[box], dy));
+		if (cx == dx && cy == dy)
+		{
+			// The center is inside the box; push out the nearest side
+			double overlapX = halfW[box] - Math.abs(dx);
+			double overlapY = halfH[box] - Math.abs(dy);
+			if (overlapX < overlapY)
+			{
+				setContact(pair, sign * (dx < 0 ? -1 : 1), 0, overlapX + radius);
+			}
+			else
+			{
+				setContact(pair, 0, sign * (dy < 0 ? -1 : 1), overlapY + radius);
+			}
+			return;
+		}
+		double ox = dx - cx;
+		double oy = dy - cy;
+		double distSq = ox * ox + oy * oy;
+		if (distSq >= radius * radius)
+		{
+			return;
+		}
+		double dist = Math.sqrt(distSq);
+		setContact(pair, sign * ox / dist, sign * oy / dist, radius - dist);
+	}
+	
+	/** Store the contact of a pair.
+	 * @param pair the index of the pair
+	 * @param nx the x part of the normal from the first body to the second
+	 * @param ny the y part of the normal from the first body to the second
+	 * @param d the penetration depth
+	 */
+	private void setContact(int pair, double nx, double ny, double d)
+	{
+		normalX[pair] = nx;
+		normalY[pair] = ny;
+		depth[pair] = d;
+	}
+	
+	/** Send each contact to the listeners and the entities of the bodies,
+	 * then make the adds and removes delayed while sending.
+	 */
+	private void deliverContacts()
+	{
+		delivering = true;
+		contactCount = 0;
+		CollisionListener[] current = listenerArray;
+		try
+		{
+			for (int i = 0; i < pairCount; ++i)
+			{
+				if (depth[i] <= 0)
+				{
+					continue;
+				}
+				++contactCount;
+				Body a = bodies[pairA[i]];
+				Body b = bodies[pairB[i]];
+				event.set(a, b, normalX[i], normalY[i], depth[i]);
+				for (int l = 0; l < current.length; ++l)
+				{
+					current[l].contact(event);
+				}
+				Entity entity = a.getEntity();
+				if (entity instanceof CollisionListener)
+				{
+					((CollisionListener) entity).contact(event);
+				}
+				// Seen from the other body
+				entity = b.getEntity();
+				if (entity instanceof CollisionListener)
+				{
+					event.set(b, a, -normalX[i], -normalY[i], depth[i]);
+					((CollisionListener) entity).contact(event);
+				}
+			}
+		}
+		finally
+		{
+			delivering = false;
+		}
+		for (Body body : pendingRemove)
+		{
+			remove(body);
+		}
+		pendingRemove.clear();
+		for (Body body : pendingAdd)
+		{
+			add(body);
+		}
+		pendingAdd.clear();
+	}
+	
+	/** Make room for more bodies.
+	 * @param capacity the new number of bodies there is room for
+	 */
+	private void grow(int capacity)
+	{
+		bodies = Arrays.copyOf(bodies, capacity);
+		posX = Arrays.copyOf(posX, capacity);
+		posY = Arrays.copyOf(posY, capacity);
+		halfW = Arrays.copyOf(halfW, capacity);
+		halfH = Arrays.copyOf(halfH, capacity);
+		circle = Arrays.copyOf(circle, capacity);
+		order = Arrays.copyOf(order, capacity);
+		rank = Arrays.copyOf(rank, capacity);
+	}
+	
+	/** Make room for more pairs.
+	 * @param capacity the new number of pairs there is room for
+	 */
+	private void growPairs(int capacity)
+	{
+		pairA = Arrays.copyOf(pairA, capacity);
+		pairB = Arrays.copyOf(pairB, capacity);
+		normalX = Arrays.copyOf(normalX, capacity);
+		normalY = Arrays.copyOf(normalY, capacity);
+		depth = Arrays.copyOf(depth, capacity);
+	}
+}
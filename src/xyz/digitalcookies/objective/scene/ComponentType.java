@@ -0,0 +1,174 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** Describes a kind of component that entities in an {@link EntityWorld}
+ * can have, such as a position or a velocity. A component is a fixed
+ * number of values of one primitive kind (or object references), which
+ * are stored in plain arrays by each {@link Archetype}; for example a 2D
+ * position is 2 doubles, stored as x,y pairs.
+ * <br>
+ * <br>Component types should be created once (such as in static fields)
+ * and shared, since at most {@link #MAX_TYPES} can be created.
+ * @author Bryan Charles Bettis
+ */
+public final class ComponentType
+{
+	/** The most component types that can be created. */
+	public static final int MAX_TYPES = 64;
+	
+	/** The id of the next component type created. */
+	private static int nextId = 0;
+	/** Every component type created, by id (before any types are created.) */
+	private static final ComponentType[] registry =
+			new ComponentType[MAX_TYPES];
+	
+	/** A Renderer drawn for the entity each time the world is rendered, so
+	 * entities in a world can be drawn with existing renderers.
+	 */
+	public static final ComponentType RENDERER =
+			new ComponentType("renderer", Kind.OBJECT, 1);
+	
+	/** The values stored for a component.
+	 * @author Bryan Charles Bettis
+	 */
+	public enum Kind
+	{
+		/** Stored in a double array. */
+		DOUBLE,
+		/** Stored in an int array. */
+		INT,
+		/** Stored in an Object array. */
+		OBJECT
+	}
+	
+	/** The name of the component, used for debugging. */
+	private final String name;
+	/** The kind of values the component stores. */
+	private final Kind kind;
+	/** The number of values the component stores for each entity. */
+	private final int width;
+	/** The unique id of this component type. */
+	private final int id;
+	
+	/** Create a new component type.
+	 * @param name the name of the component (used for debugging)
+	 * @param kind the kind of values stored for the component
+	 * @param width the number of values stored for each entity
+	 * @throws IllegalStateException if {@link #MAX_TYPES} component types
+	 * 		have already been created
+	 */
+	public ComponentType(String name, Kind kind, int width)
+	{
+		this.name = name;
+		this.kind = kind;
+		this.width = Math.max(width, 1);
+		synchronized (ComponentType.class)
+		{
+			if (nextId >= MAX_TYPES)
+			{
+				throw new IllegalStateException(
+						"Too many component types created (max "
+						+ Integer.toString(MAX_TYPES)
+						+ ")."
+						);
+			}
+			id = nextId++;
+			registry[id] = this;
+		}
+	}
+	
+	/** Get the name of this component type.
+	 * @return the name given when the type was created
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/** Get the kind of values stored for this component.
+	 * @return the kind of values
+	 */
+	public Kind getKind()
+	{
+		return kind;
+	}
+	
+	/** Get the number of values stored for each entity with this component.
+	 * @return the number of values per entity
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	/** Get the unique id of this component type.
+	 * @return the id, from 0 to {@link #MAX_TYPES}-1
+	 */
+	public int getId()
+	{
+		return id;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+	
+	/** Get the bit representing this component type in a set of types.
+	 * @return the mask bit of this type
+	 */
+	long getMask()
+	{
+		return 1L << id;
+	}
+	
+	/** Get the set of the specified component types as a mask.
+	 * @param types the component types
+	 * @return the mask with the bit of each type set
+	 */
+	static long getMask(ComponentType... types)
+	{
+		long mask = 0;
+		for (ComponentType type : types)
+		{
+			mask |= type.getMask();
+		}
+		return mask;
+	}
+	
+	/** Get the component types in a mask.
+	 * @param mask the set of component types
+	 * @return the component types, ordered by id
+	 */
+	static ComponentType[] getTypes(long mask)
+	{
+		ComponentType[] types = new ComponentType[Long.bitCount(mask)];
+		int i = 0;
+		synchronized (ComponentType.class)
+		{
+			for (int id = 0; id < nextId; ++id)
+			{
+				if ((mask & (1L << id)) != 0)
+				{
+					types[i++] = registry[id];
+				}
+			}
+		}
+		return types;
+	}
+}
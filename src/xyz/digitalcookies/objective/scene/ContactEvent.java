@@ -0,0 +1,104 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** Describes two bodies of a {@link CollisionWorld} that are touching.
+ * The normal points from the first body toward the second, and the depth
+ * is how far the second body would have to move along the normal to stop
+ * touching the first. A single event is reused for all contacts of an
+ * update, so it should not be kept by listeners.
+ * @author Bryan Charles Bettis
+ */
+public class ContactEvent extends SceneEvent
+{
+	/** The first body. */
+	private Body bodyA;
+	/** The second body. */
+	private Body bodyB;
+	/** The x part of the contact normal. */
+	private double normalX;
+	/** The y part of the contact normal. */
+	private double normalY;
+	/** How far the bodies overlap. */
+	private double depth;
+	
+	/** Get the first body of the contact.
+	 * @return the first body
+	 */
+	public Body getBodyA()
+	{
+		return bodyA;
+	}
+	
+	/** Get the second body of the contact.
+	 * @return the second body
+	 */
+	public Body getBodyB()
+	{
+		return bodyB;
+	}
+	
+	/** Get the body touching the specified body.
+	 * @param self one of the bodies of the contact
+	 * @return the other body
+	 */
+	public Body getOther(Body self)
+	{
+		return self == bodyA ? bodyB : bodyA;
+	}
+	
+	/** Get the x part of the normal, pointing from the first body toward
+	 * the second.
+	 * @return the x part of the unit normal
+	 */
+	public double getNormalX()
+	{
+		return normalX;
+	}
+	
+	/** Get the y part of the normal, pointing from the first body toward
+	 * the second.
+	 * @return the y part of the unit normal
+	 */
+	public double getNormalY()
+	{
+		return normalY;
+	}
+	
+	/** Get how far the bodies overlap along the normal.
+	 * @return the penetration depth
+	 */
+	public double getDepth()
+	{
+		return depth;
+	}
+	
+	/** Change the contact this event describes.
+	 * @param bodyA the first body
+	 * @param bodyB the second body
+	 * @param normalX the x part of the normal from A toward B
+	 * @param normalY the y part of the normal from A toward B
+	 * @param depth how far the bodies overlap
+	 */
+	void set(Body bodyA, Body bodyB, double normalX, double normalY, double depth)
+	{
+		this.bodyA = bodyA;
+		this.bodyB = bodyB;
+		this.normalX = normalX;
+		this.normalY = normalY;
+		this.depth = depth;
+	}
+}
@@ -31,6 +31,18 @@ public interface Entity extends Renderer
 	 */
 	public boolean utilizesBody();
 	
+	/** Get the body of this entity, if it has one. Entities added to an
+	 * {@link EntityContainer} with a {@link PhysicsWorld} that utilize a
+	 * body and return a body here have the body added to the physics world
+	 * automatically, so the body always has the position from the physics
+	 * world. None by default.
+	 * @return the body of this entity, or null
+	 */
+	public default Body getBody()
+	{
+		return null;
+	}
+	
 	/** Tell this entity to update itself. Updating includes interaction
 	 * with other entities and general actions and changes made by the
 	 * entity.
@@ -39,6 +51,19 @@ public interface Entity extends Renderer
 	 */
 	public void update(EntityUpdateEvent event);
 	
+	/** Check if this entity can be updated at the same time as other
+	 * entities from another thread, when its container is set to
+	 * {@link EntityContainer#setParallelUpdate(boolean) update in parallel}.
+	 * Entities that return false are updated one at a time on the thread
+	 * updating the container, after the parallel entities. True by default.
+	 * @return true if this entity can be updated from any thread, without
+	 * 		being locked
+	 */
+	public default boolean supportsParallelUpdate()
+	{
+		return true;
+	}
+	
 	@Override
 	public default void render(RenderEvent event)
 	{
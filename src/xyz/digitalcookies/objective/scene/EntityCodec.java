@@ -0,0 +1,52 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.nio.ByteBuffer;
+
+/** Converts entities of one type to and from bytes, for saving them in a
+ * {@link SceneSnapshot}. The version of the codec is saved with each
+ * snapshot and given back when reading, so a codec can still read the
+ * snapshots saved by older versions of itself after the format of an
+ * entity changes.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity converted
+ */
+public interface EntityCodec<T extends Entity>
+{
+	/** Get the version of the format written by this codec. Should be
+	 * changed each time the format is changed.
+	 * @return the version of the format
+	 */
+	public int getVersion();
+	
+	/** Write an entity. If the buffer runs out of room, the entity is
+	 * written again into a larger buffer, so this should only read from
+	 * the entity. Entities may be written from multiple threads at the same
+	 * time.
+	 * @param entity the entity to write
+	 * @param out the buffer to write the entity to
+	 */
+	public void write(T entity, ByteBuffer out);
+	
+	/** Read an entity written by this codec (or an older version of it.)
+	 * @param in the bytes of the entity, positioned at the start of the
+	 * 		entity and limited to the end of it
+	 * @param version the version of the codec that wrote the entity
+	 * @return the entity read
+	 */
+	public T read(ByteBuffer in, int version);
+}
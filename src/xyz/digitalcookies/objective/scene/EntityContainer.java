@@ -16,26 +16,168 @@
 package xyz.digitalcookies.objective.scene;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Predicate;
 
 import xyz.digitalcookies.objective.graphics.RenderEvent;
+import xyz.digitalcookies.objective.graphics.RenderProfiler;
 import xyz.digitalcookies.objective.graphics.Renderer;
+import xyz.digitalcookies.objective.utility.JobPool;
 
 /** Holds multiple entities and provides various methods for rendering,
- * updating, and so on all the entities in this container.
+ * updating, and so on all the entities in this container. Adding,
+ * removing, and checking for an entity take constant time; removing an
+ * entity moves the last entity into its place, so the order entities are
+ * updated and rendered in can change when entities are removed.
+ * {@link EntityHandle Handles} can be used to refer to an entity in the
+ * container without keeping it from being removed.
+ * <br>
+ * <br>Entities can be updated in parallel by enabling
+ * {@link #setParallelUpdate(boolean)}, which splits the entities between
+ * the threads of the {@link JobPool} without locking each entity.
+ * {@link PhasedEntity Phased entities} have their read phase run for all
+ * entities before any entity is updated.
+ * <br>
+ * <br>When a {@link #setPhysicsWorld(PhysicsWorld) physics world} is set,
+ * the bodies of entities that utilize a body are added to the world when
+ * the entities are added, and removed when the entities are removed.
+ * Likewise, entities of the class of an {@link #addPool(EntityPool) added
+ * pool} are released to the pool when they are removed.
+ * <br>
+ * <br>Entities can be given tags (such as "enemy"), and
+ * {@link #addQuery(String, Class[], String[]) queries} for the entities
+ * of some classes or with some tags are kept up to date as entities are
+ * added, removed and tagged, which is much faster than
+ * {@link #getEntities(Predicate)} for sets of entities read every update.
  * @author Bryan Charles Bettis
  * @param <T> the type of entity this container will be storing
  */
 public class EntityContainer<T extends Entity> implements Renderer
 {
+	/** The fewest entities given to a thread during a parallel update. */
+	private static final int PARALLEL_CHUNK = 64;
+	
 	/** The list of entities in this container. */
 	private ArrayList<T> entities;
 	/** The predicate to use to remove entities at the end of each
 	 * updateEntites(event).
 	 */
-	private Predicate<T> postUpdateRemoveIf;
+	private volatile Predicate<T> postUpdateRemoveIf;
+	/** If entities are updated in parallel. */
+	private volatile boolean parallelUpdate = false;
+	/** The physics world the bodies of the entities are added to, or null. */
+	private volatile PhysicsWorld physicsWorld = null;
+	/** The pools removed entities are released to, by entity class. Only
+	 * used while holding the lock on the entity list.
+	 */
+	private final HashMap<Class<?>, EntityPool<?>> pools =
+			new HashMap<Class<?>, EntityPool<?>>();
+	/** The number of updates in progress. Adding and removing
+	 * entities is delayed while this is above 0. Only used while holding the
+	 * lock on the entity list.
+	 */
+	private int activePasses = 0;
+	/** The handle slot of each entity. */
+	private final HashMap<T, Integer> slotOf = new HashMap<T, Integer>();
+	/** The handle slot of the entity at each index of the entity list. */
+	private int[] slotAt = new int[16];
+	/** The index in the entity list of the entity in each handle slot. */
+	private int[] indexOfSlot = new int[16];
+	/** The generation of each handle slot, which changes each time the
+	 * entity in the slot is removed so old handles stop working.
+	 */
+	private int[] slotGeneration = new int[16];
+	/** Handle slots not in use. */
+	private int[] freeSlots = new int[16];
+	/** The number of handle slots not in use. */
+	private int numFree = 0;
+	/** The number of handle slots ever used. */
+	private int numSlots = 0;
+	/** The tags of the entity in each handle slot, as bits. */
+	private long[] slotTags = new long[16];
+	/** The bit of each tag used by this container. */
+	private final HashMap<String, Integer> tagBits = new HashMap<String, Integer>();
+	/** The queries, by name. */
+	private final HashMap<String, EntityQuery<T>> queries =
+			new HashMap<String, EntityQuery<T>>();
+	/** The queries, for quickly updating each of them. */
+	private final ArrayList<EntityQuery<T>> queryList = new ArrayList<EntityQuery<T>>();
+	/** The array reused to hold the entities being updated, or null while
+	 * an update is using it.
+	 */
+	private Object[] updateSnapshot = null;
+	/** The array reused to hold the entities being rendered, or null while
+	 * a render is using it.
+	 */
+	private Object[] renderSnapshot = null;
+	/** Adds and removes delayed until the next sync point. */
+	private final ConcurrentLinkedQueue<Change<T>> pendingChanges =
+			new ConcurrentLinkedQueue<Change<T>>();
+	
+	/** An add, remove or tag change (or an action to run after the changes
+	 * before it) that was delayed until the next sync point.
+	 * @author Bryan Charles Bettis
+	 * @param <T> the type of entity in the container
+	 */
+	private static class Change<T>
+	{
+		/** The entity to add or remove, or null for a filter. */
+		final T entity;
+		/** The filter of entities to remove, or null. */
+		final Predicate<T> filter;
+		/** True to add the entity (or tag), false to remove it. */
+		final boolean add;
+		/** The tag to add or remove, or null to add or remove the entity. */
+		final String tag;
+		/** The action to run, or null. */
+		final Runnable action;
+		
+		/** Create a delayed add or remove.
+		 * @param entity the entity to add or remove, or null
+		 * @param filter the filter of entities to remove, or null
+		 * @param add true to add the entity, false to remove
+		 */
+		Change(T entity, Predicate<T> filter, boolean add)
+		{
+			this.entity = entity;
+			this.filter = filter;
+			this.add = add;
+			tag = null;
+			action = null;
+		}
+		
+		/** Create a delayed tag change.
+		 * @param entity the entity to tag
+		 * @param add true to add the tag, false to remove
+		 * @param tag the tag to add or remove
+		 */
+		Change(T entity, boolean add, String tag)
+		{
+			this.entity = entity;
+			this.filter = null;
+			this.add = add;
+			this.tag = tag;
+			action = null;
+		}
+		
+		/** Create a delayed action.
+		 * @param action the action to run
+		 */
+		Change(Runnable action)
+		{
+			entity = null;
+			filter = null;
+			add = false;
+			tag = null;
+			this.action = action;
+		}
+	}
 	
 	/** Standard constructor. */
 	public EntityContainer()
@@ -70,50 +212,203 @@ public class EntityContainer<T extends Entity> implements Renderer
 	 * will not notice that they are in this container.) Changes made to this
 	 * container during the update (for example adding or removing entities)
 	 * will not take place until the update has finished.
+	 * <br>
+	 * <br>The end of an update is the sync point of this container: the
+	 * adds and removes delayed during this update are made, and then the
+	 * entities matching the
+	 * {@link #setCycleRemoveIf(Predicate) cycle removal predicate} are
+	 * removed, all at once. If another update is still in progress, the
+	 * changes wait for it to finish instead.
+	 * <br>
+	 * <br>The entities updated are the ones in this container when the update
+	 * starts. The entity list is not locked while the entities are updated,
+	 * so entities can read this container (for example with
+	 * {@link #contains(Entity)} or a query) from any thread during the update.
 	 * @param event the entity update event to pass in to each entity update
 	 */
 	public void updateEntities(EntityUpdateEvent event)
 	{
+		Object[] snapshot;
+		int count;
+		synchronized (entities)
+		{
+			++activePasses;
+			count = entities.size();
+			snapshot = takeSnapshot(updateSnapshot);
+			updateSnapshot = null;
+		}
 		// Update entities
+		try
+		{
+			if (parallelUpdate)
+			{
+				updateParallel(snapshot, count, event);
+			}
+			else
+			{
+				updateSerial(snapshot, count, event);
+			}
+		}
+		finally
+		{
+			// Do not keep removed entities alive in the reused array
+			Arrays.fill(snapshot, 0, count, null);
+			synchronized (entities)
+			{
+				updateSnapshot = snapshot;
+				--activePasses;
+				Predicate<T> removeIf = postUpdateRemoveIf;
+				if (activePasses == 0)
+				{
+					applyChanges(removeIf);
+				}
+				else if (removeIf != null)
+				{
+					// Remove the entities once the other pass is done
+					pendingChanges.add(new Change<T>(null, removeIf, false));
+				}
+			}
+		}
+	}
+	
+	/** Make the adds and removes that were delayed while the entities were
+	 * being updated, without waiting for the end of the next update. Does
+	 * nothing if called during an update of this container.
+	 */
+	public void applyChanges()
+	{
 		synchronized (entities)
 		{
-			entities.forEach(
-					(T entity)->
-					{
-						synchronized (entity)
-						{
-							entity.update(event);
-						}
-					}
-					);
+			if (activePasses == 0)
+			{
+				applyChanges(null);
+			}
 		}
-		// Run the post-update entity removal predicate
-		if (postUpdateRemoveIf != null)
+	}
+	
+	/** Run an action once the adds and removes made before it have been
+	 * made. The action is run right away, unless this is called during an
+	 * update, in which case it is run at the end of the update (while the
+	 * container is locked, so it should only hand work off to another thread
+	 * or set flags.)
+	 * @param action the action to run
+	 */
+	public void runAfterChanges(Runnable action)
+	{
+		synchronized (entities)
 		{
-			synchronized (postUpdateRemoveIf)
+			if (activePasses > 0)
 			{
-				removeIf(postUpdateRemoveIf);
+				pendingChanges.add(new Change<T>(action));
+				return;
 			}
 		}
+		action.run();
 	}
 	
+	/** Render the entities that are in this container when the render
+	 * starts. Rendering does not delay adds and removes; they are made right
+	 * away (or at the end of the update, during one) and show up from the
+	 * next render on.
+	 * @param event the render event to clone for each entity
+	 */
 	@Override
 	public void render(RenderEvent event)
 	{
-		// Render all entities
+		boolean profile = RenderProfiler.isEnabled();
+		Object[] snapshot;
+		int count;
 		synchronized (entities)
 		{
-			entities.forEach(
-					(T entity)->
-					{
-						RenderEvent event2 = event.clone();
-						synchronized (entity)
-						{
-							entity.render(event2);
-						}
-						event2.getGC().dispose();
-					}
-					);
+			count = entities.size();
+			snapshot = takeSnapshot(renderSnapshot);
+			renderSnapshot = null;
+		}
+		// Render all entities
+		try
+		{
+			renderEntities(snapshot, count, event, profile);
+		}
+		finally
+		{
+			Arrays.fill(snapshot, 0, count, null);
+			synchronized (entities)
+			{
+				renderSnapshot = snapshot;
+			}
+		}
+	}
+	
+	/** Copy the entities into an array for an update or render, reusing
+	 * the spare array if it is large enough. Called while holding the lock
+	 * on the entity list.
+	 * @param spare the array reused for the pass, or null if there is none
+	 * 		(such as when another pass of the same kind is using it)
+	 * @return an array starting with the entities, followed by nulls
+	 */
+	private Object[] takeSnapshot(Object[] spare)
+	{
+		int size = entities.size();
+		if (spare == null || spare.length < size)
+		{
+			// Leave room so the array is not replaced each time one is added
+			spare = new Object[size + size / 2 + 1];
+		}
+		return entities.toArray(spare);
+	}
+	
+	/** Render each entity. Called without holding the lock on the entity
+	 * list. Entities are locked while they render, unless they are
+	 * {@link Renderer#isThreadSafe() thread safe} (such as an
+	 * {@link EntityWorld}, which must not wait for its own update.)
+	 * @param snapshot the entities to render
+	 * @param count the number of entities in the snapshot
+	 * @param event the render event to clone for each entity
+	 * @param profile if the render time of each entity should be profiled
+	 */
+	@SuppressWarnings("unchecked")
+	private void renderEntities(
+			Object[] snapshot,
+			int count,
+			RenderEvent event,
+			boolean profile
+			)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			Object entity = snapshot[i];
+			RenderEvent event2 = event.clone();
+			if (((T) entity).isThreadSafe())
+			{
+				renderEntity((T) entity, event2, profile);
+			}
+			else
+			{
+				synchronized (entity)
+				{
+					renderEntity((T) entity, event2, profile);
+				}
+			}
+			event2.getGC().dispose();
+		}
+	}
+	
+	/** Render an entity, profiling it if enabled.
+	 * @param entity the entity to render
+	 * @param event the render event for the entity
+	 * @param profile if the render time of the entity should be profiled
+	 */
+	private static void renderEntity(Entity entity, RenderEvent event, boolean profile)
+	{
+		if (profile)
+		{
+			RenderProfiler.begin();
+			entity.render(event);
+			RenderProfiler.end(entity, RenderProfiler.ENTITY);
+		}
+		else
+		{
+			entity.render(event);
 		}
 	}
 	
@@ -131,7 +426,7 @@ public class EntityContainer<T extends Entity> implements Renderer
 		boolean result = false;
 		synchronized (entities)
 		{
-			result = entities.contains(entity);
+			result = slotOf.containsKey(entity);
 		}
 		return result;
 	}
@@ -141,7 +436,8 @@ public class EntityContainer<T extends Entity> implements Renderer
 	 * @param entity the entity to add
 	 * @return true if the entity was added, false if the addition failed
 	 * 		(e.g. entity already exists in this container, or the change has
-	 * 		been delayed while updating or rendering is in progress)
+	 * 		been delayed while an update is in progress; delayed changes are
+	 * 		made at the end of the update)
 	 */
 	public boolean addEntity(T entity)
 	{
@@ -155,16 +451,15 @@ public class EntityContainer<T extends Entity> implements Renderer
 			return false;
 		}
 		boolean result = false;
-		// Already contains entity
-		if (contains(entity))
-		{
-			result = false;
-		}
-		else
+		synchronized (entities)
 		{
-			synchronized (entities)
+			if (activePasses > 0)
+			{
+				pendingChanges.add(new Change<T>(entity, null, true));
+			}
+			else
 			{
-				result = entities.add(entity);
+				result = insert(entity);
 			}
 		}
 		return result;
@@ -222,7 +517,14 @@ public class EntityContainer<T extends Entity> implements Renderer
 		boolean changed = false;
 		synchronized (entities)
 		{
-			changed = entities.remove(entity);
+			if (activePasses > 0)
+			{
+				pendingChanges.add(new Change<T>(entity, null, false));
+			}
+			else
+			{
+				changed = delete(entity);
+			}
 		}
 		return changed;
 	}
@@ -236,7 +538,17 @@ public class EntityContainer<T extends Entity> implements Renderer
 		boolean changed = false;
 		synchronized (this.entities)
 		{
-			changed = this.entities.removeAll(entities);
+			for (T entity : entities)
+			{
+				if (activePasses > 0)
+				{
+					pendingChanges.add(new Change<T>(entity, null, false));
+				}
+				else
+				{
+					changed |= delete(entity);
+				}
+			}
 		}
 		return changed;
 	}
@@ -269,7 +581,14 @@ public class EntityContainer<T extends Entity> implements Renderer
 		boolean changed = false;
 		synchronized (entities)
 		{
-			changed = entities.removeIf(filter);
+			if (activePasses > 0)
+			{
+				pendingChanges.add(new Change<T>(null, filter, false));
+			}
+			else
+			{
+				changed = deleteIf(filter);
+			}
 		}
 		return changed;
 	}
@@ -281,10 +600,7 @@ public class EntityContainer<T extends Entity> implements Renderer
 	 */
 	public void setCycleRemoveIf(Predicate<T> filter)
 	{
-		synchronized (postUpdateRemoveIf)
-		{
-			postUpdateRemoveIf = filter;
-		}
+		postUpdateRemoveIf = filter;
 	}
 	
 	/** Gets all entities contained in this container. Removing, adding,
@@ -305,7 +621,9 @@ public class EntityContainer<T extends Entity> implements Renderer
 	/** Get all entities in this container that evaluate true for the
 	 * specified predicate. Specifying null for the predicate is
 	 * equivalent to calling getEntities(), which returns all entities
-	 * in this container.
+	 * in this container. This checks every entity and copies the matches,
+	 * so a {@link #addQuery(String, Class, String...) query} should be
+	 * used for sets of entities read often.
 	 * @param filter the filter to evaluate each entity with (entities that
 	 * 		evaluate true for this will be returned)
 	 * @return all entities in this container matching the specified
@@ -389,7 +707,41 @@ public class EntityContainer<T extends Entity> implements Renderer
 	{
 		synchronized (entities)
 		{
+			if (activePasses > 0)
+			{
+				pendingChanges.add(new Change<T>(null, (T entity)->true, false));
+				return;
+			}
+			PhysicsWorld world = physicsWorld;
+			if (world != null)
+			{
+				for (T entity : entities)
+				{
+					world.remove(entity);
+				}
+			}
+			ArrayList<T> removed = pools.isEmpty() ? null : new ArrayList<T>(entities);
 			entities.clear();
+			slotOf.clear();
+			Arrays.fill(slotTags, 0);
+			for (EntityQuery<T> query : queryList)
+			{
+				query.clear();
+			}
+			// Handles to the removed entities are no longer valid
+			for (int slot = 0; slot < numSlots; ++slot)
+			{
+				++slotGeneration[slot];
+				freeSlots[slot] = slot;
+			}
+			numFree = numSlots;
+			if (removed != null)
+			{
+				for (T entity : removed)
+				{
+					releaseToPool(entity);
+				}
+			}
 		}
 	}
 	
@@ -412,4 +764,663 @@ public class EntityContainer<T extends Entity> implements Renderer
 		}
 		return size;
 	}
+	
+	/** Check if entities are updated in parallel.
+	 * @return true if entities are split between multiple threads when
+	 * 		updating
+	 */
+	public boolean isParallelUpdate()
+	{
+		return parallelUpdate;
+	}
+	
+	/** Get the physics world the bodies of the entities are added to.
+	 * @return the physics world, or null if none is set
+	 */
+	public PhysicsWorld getPhysicsWorld()
+	{
+		return physicsWorld;
+	}
+	
+	/** Release entities of the class of a pool to the pool when they are
+	 * removed from this container (including by {@link #clear()}.) Only
+	 * entities of exactly the class of the pool are released, and only one
+	 * pool can be added for each class.
+	 * @param pool the pool to release removed entities to
+	 */
+	public void addPool(EntityPool<? extends T> pool)
+	{
+		synchronized (entities)
+		{
+			pools.put(pool.getType(), pool);
+		}
+	}
+	
+	/** Stop releasing removed entities to a pool.
+	 * @param pool the pool to stop releasing entities to
+	 */
+	public void removePool(EntityPool<? extends T> pool)
+	{
+		synchronized (entities)
+		{
+			pools.remove(pool.getType(), pool);
+		}
+	}
+	
+	/** Give an entity a tag. Entities can have up to 64 different tags
+	 * between them in one container. Delayed until the end of the update
+	 * when called during one.
+	 * @param entity the entity to tag, which must be in this container
+	 * @param tag the tag to add
+	 */
+	public void addTag(T entity, String tag)
+	{
+		synchronized (entities)
+		{
+			if (activePasses > 0)
+			{
+				pendingChanges.add(new Change<T>(entity, true, tag));
+			}
+			else
+			{
+				changeTag(entity, tag, true);
+			}
+		}
+	}
+	
+	/** Take a tag away from an entity. Delayed until the end of the update
+	 * when called during one.
+	 * @param entity the entity to untag
+	 * @param tag the tag to remove
+	 */
+	public void removeTag(T entity, String tag)
+	{
+		synchronized (entities)
+		{
+			if (activePasses > 0)
+			{
+				pendingChanges.add(new Change<T>(entity, false, tag));
+			}
+			else
+			{
+				changeTag(entity, tag, false);
+			}
+		}
+	}
+	
+	/** Check if an entity has a tag.
+	 * @param entity the entity
+	 * @param tag the tag
+	 * @return true if the entity is in this container and has the tag
+	 */
+	public boolean hasTag(T entity, String tag)
+	{
+		synchronized (entities)
+		{
+			Integer slot = slotOf.get(entity);
+			Integer bit = tagBits.get(tag);
+			return slot != null && bit != null && (slotTags[slot] & (1L << bit)) != 0;
+		}
+	}
+	
+	/** Add a query for the entities that are instances of a class (or
+	 * interface) and have all of the specified tags. See
+	 * {@link #addQuery(String, Class[], String[])}.
+	 * @param name the name of the query
+	 * @param type the class or interface the entities must be an instance
+	 * 		of (Entity.class for any entity)
+	 * @param tags the tags the entities must have
+	 * @return the query, or null if the query could not be added
+	 */
+	public EntityQuery<T> addQuery(String name, Class<?> type, String... tags)
+	{
+		return addQuery(name, new Class<?>[] {type}, tags);
+	}
+	
+	/** Add a query for the entities that are instances of all of the
+	 * specified classes and interfaces (such as interfaces used as
+	 * components, like {@link CollisionListener}) and have all of the
+	 * specified tags. The query starts with the matching entities already
+	 * in this container, and is then kept up to date until it is removed.
+	 * If a query with the name was already added, that query is returned.
+	 * @param name the name of the query
+	 * @param types the classes and interfaces the entities must be
+	 * 		instances of
+	 * @param tags the tags the entities must have
+	 * @return the query, or null if the query could not be added
+	 */
+	public EntityQuery<T> addQuery(String name, Class<?>[] types, String[] tags)
+	{
+		synchronized (entities)
+		{
+			EntityQuery<T> query = queries.get(name);
+			if (query != null)
+			{
+				return query;
+			}
+			long mask = 0;
+			for (String tag : tags)
+			{
+				int bit = getTagBit(tag);
+				if (bit < 0)
+				{
+					return null;
+				}
+				mask |= 1L << bit;
+			}
+			query = new EntityQuery<T>(name, types, mask);
+			for (int i = 0; i < entities.size(); ++i)
+			{
+				int slot = slotAt[i];
+				query.update(slot, entities.get(i), slotTags[slot]);
+			}
+			queries.put(name, query);
+			queryList.add(query);
+			return query;
+		}
+	}
+	
+	/** Get a query that was added.
+	 * @param name the name of the query
+	 * @return the query, or null if there is no query with the name
+	 */
+	public EntityQuery<T> getQuery(String name)
+	{
+		synchronized (entities)
+		{
+			return queries.get(name);
+		}
+	}
+	
+	/** Stop keeping a query up to date.
+	 * @param name the name of the query
+	 */
+	public void removeQuery(String name)
+	{
+		synchronized (entities)
+		{
+			EntityQuery<T> query = queries.remove(name);
+			if (query != null)
+			{
+				queryList.remove(query);
+			}
+		}
+	}
+	
+	/** Set the physics world the bodies of the entities are added to. The
+	 * bodies of entities already in this container are moved from the old
+	 * world to the new one; the new world adds each body once the old one
+	 * has removed it, so the worlds can be updated in any order.
+	 * @param world the physics world, or null to stop adding bodies
+	 */
+	public void setPhysicsWorld(PhysicsWorld world)
+	{
+		synchronized (entities)
+		{
+			PhysicsWorld old = physicsWorld;
+			if (old == world)
+			{
+				return;
+			}
+			for (T entity : entities)
+			{
+				if (old != null)
+				{
+					old.remove(entity);
+				}
+				if (world != null)
+				{
+					world.add(entity);
+				}
+			}
+			physicsWorld = world;
+		}
+	}
+	
+	/** Set if entities should be updated in parallel, by splitting them
+	 * between the threads of the {@link JobPool}. Entities are not locked
+	 * while being updated in parallel, so they must only change their own
+	 * state (see {@link PhasedEntity}); entities that can not be updated this
+	 * way can opt out with {@link Entity#supportsParallelUpdate()}.
+	 * Disabled by default.
+	 * @param parallel true to update entities in parallel
+	 */
+	public void setParallelUpdate(boolean parallel)
+	{
+		parallelUpdate = parallel;
+	}
+	
+	/** Update the entities one at a time, locking each entity. Called
+	 * without holding the lock on the entity list.
+	 * @param snapshot the entities to update
+	 * @param count the number of entities in the snapshot
+	 * @param event the event to pass to each entity
+	 */
+	@SuppressWarnings("unchecked")
+	private void updateSerial(Object[] snapshot, int count, EntityUpdateEvent event)
+	{
+		// Let phased entities look around before anything changes
+		for (int i = 0; i < count; ++i)
+		{
+			Object entity = snapshot[i];
+			if (entity instanceof PhasedEntity)
+			{
+				synchronized (entity)
+				{
+					((PhasedEntity) entity).readPhase(event);
+				}
+			}
+		}
+		for (int i = 0; i < count; ++i)
+		{
+			Object entity = snapshot[i];
+			synchronized (entity)
+			{
+				((T) entity).update(event);
+			}
+		}
+	}
+	
+	/** Update the entities in parallel. Called without holding the lock on
+	 * the entity list, so the entities can read this container from the job
+	 * pool threads.
+	 * @param snapshot the entities to update
+	 * @param count the number of entities in the snapshot
+	 * @param event the event to pass to each entity
+	 */
+	@SuppressWarnings("unchecked")
+	private void updateParallel(Object[] snapshot, int count, EntityUpdateEvent event)
+	{
+		boolean phased = false;
+		boolean unsafe = false;
+		for (int i = 0; i < count; ++i)
+		{
+			Object entity = snapshot[i];
+			phased |= entity instanceof PhasedEntity;
+			unsafe |= !((T) entity).supportsParallelUpdate();
+		}
+		// Finish every read phase before any entity is updated
+		if (phased)
+		{
+			JobPool.parallelFor(
+					0,
+					count,
+					PARALLEL_CHUNK,
+					(int start, int end)->
+					{
+						for (int i = start; i < end; ++i)
+						{
+							Object entity = snapshot[i];
+							if (
+									entity instanceof PhasedEntity
+									&& ((T) entity).supportsParallelUpdate()
+									)
+							{
+								((PhasedEntity) entity).readPhase(event);
+							}
+						}
+					}
+					);
+			if (unsafe)
+			{
+				for (int i = 0; i < count; ++i)
+				{
+					Object entity = snapshot[i];
+					if (
+							entity instanceof PhasedEntity
+							&& !((T) entity).supportsParallelUpdate()
+							)
+					{
+						synchronized (entity)
+						{
+							((PhasedEntity) entity).readPhase(event);
+						}
+					}
+				}
+			}
+		}
+		JobPool.parallelFor(
+				0,
+				count,
+				PARALLEL_CHUNK,
+				(int start, int end)->
+				{
+					for (int i = start; i < end; ++i)
+					{
+						T entity = (T) snapshot[i];
+						if (entity.supportsParallelUpdate())
+						{
+							entity.update(event);
+						}
+					}
+				}
+				);
+		// Entities that opted out are updated one at a time
+		if (unsafe)
+		{
+			for (int i = 0; i < count; ++i)
+			{
+				Object entity = snapshot[i];
+				if (!((T) entity).supportsParallelUpdate())
+				{
+					synchronized (entity)
+					{
+						((T) entity).update(event);
+					}
+				}
+			}
+		}
+	}
+	
+	/** Make all delayed adds and removes in one batch. Removal filters are
+	 * grouped together into a single pass over the entities, in between the
+	 * adds they were delayed before or after. Called while holding the lock on
+	 * the entity list.
+	 * @param removeIf entities to remove after the delayed changes are made,
+	 * 		or null
+	 */
+	private void applyChanges(Predicate<T> removeIf)
+	{
+		Set<T> removed = new HashSet<T>();
+		List<Predicate<T>> filters = new ArrayList<Predicate<T>>();
+		Change<T> change;
+		while ((change = pendingChanges.poll()) != null)
+		{
+			if (change.action != null)
+			{
+				// Finish the changes delayed before the action first
+				removeAll(removed, filters);
+				change.action.run();
+			}
+			else if (change.tag != null)
+			{
+				// Tags can only be changed on entities already added
+				removeAll(removed, filters);
+				changeTag(change.entity, change.tag, change.add);
+			}
+			else if (change.add)
+			{
+				// Keep the order of removes made before the add
+				removeAll(removed, filters);
+				insert(change.entity);
+			}
+			else if (change.filter != null)
+			{
+				filters.add(change.filter);
+			}
+			else
+			{
+				removed.add(change.entity);
+			}
+		}
+		if (removeIf != null)
+		{
+			filters.add(removeIf);
+		}
+		removeAll(removed, filters);
+	}
+	
+	/** Remove the specified entities and the entities matching the filters,
+	 * and then empty the set and list. The filters are all tested in a
+	 * single pass over the entities.
+	 * @param removed the entities to remove
+	 * @param filters the filters of entities to remove
+	 */
+	private void removeAll(Set<T> removed, List<Predicate<T>> filters)
+	{
+		for (T entity : removed)
+		{
+			delete(entity);
+		}
+		if (!filters.isEmpty())
+		{
+			deleteIf(
+					(T entity)->
+					{
+						for (Predicate<T> filter : filters)
+						{
+							if (filter.test(entity))
+							{
+								return true;
+							}
+						}
+						return false;
+					}
+					);
+		}
+		removed.clear();
+		filters.clear();
+	}
+	
+	/** Get a handle to an entity in this container. The handle stops
+	 * working once the entity is removed, even if it is added again later.
+	 * @param entity the entity to get a handle for
+	 * @return a handle to the entity, or null if the entity is not in this
+	 * 		container
+	 */
+	public EntityHandle<T> getHandle(T entity)
+	{
+		synchronized (entities)
+		{
+			Integer slot = slotOf.get(entity);
+			if (slot == null)
+			{
+				return null;
+			}
+			return new EntityHandle<T>(this, slot, slotGeneration[slot]);
+		}
+	}
+	
+	/** Get the entity in a handle slot, if it has not been removed since the
+	 * handle was created.
+	 * @param slot the handle slot
+	 * @param generation the generation of the slot when the handle was made
+	 * @return the entity, or null if it has been removed
+	 */
+	T getEntity(int slot, int generation)
+	{
+		synchronized (entities)
+		{
+			if (slotGeneration[slot] != generation)
+			{
+				return null;
+			}
+			return entities.get(indexOfSlot[slot]);
+		}
+	}
+	
+	/** Add an entity to the end of the list and give it a handle slot.
+	 * Called while holding the lock on the entity list.
+	 * @param entity the entity to add
+	 * @return true if added, false if already in this container
+	 */
+	private boolean insert(T entity)
+	{
+		if (slotOf.containsKey(entity))
+		{
+			return false;
+		}
+		int slot;
+		if (numFree > 0)
+		{
+			slot = freeSlots[--numFree];
+		}
+		else
+		{
+			slot = numSlots++;
+			if (slot == indexOfSlot.length)
+			{
+				indexOfSlot = Arrays.copyOf(indexOfSlot, slot * 2);
+				slotTags = Arrays.copyOf(slotTags, slot * 2);
+				slotGeneration = Arrays.copyOf(slotGeneration, slot * 2);
+				freeSlots = Arrays.copyOf(freeSlots, slot * 2);
+			}
+		}
+		int index = entities.size();
+		if (index == slotAt.length)
+		{
+			slotAt = Arrays.copyOf(slotAt, index * 2);
+		}
+		entities.add(entity);
+		slotAt[index] = slot;
+		indexOfSlot[slot] = index;
+		slotOf.put(entity, slot);
+		slotTags[slot] = 0;
+		for (EntityQuery<T> query : queryList)
+		{
+			query.update(slot, entity, 0);
+		}
+		PhysicsWorld world = physicsWorld;
+		if (world != null)
+		{
+			world.add(entity);
+		}
+		return true;
+	}
+	
+	/** Remove an entity by moving the last entity into its place. Called
+	 * while holding the lock on the entity list.
+	 * @param entity the entity to remove
+	 * @return true if removed, false if not in this container
+	 */
+	private boolean delete(T entity)
+	{
+		Integer slot = slotOf.get(entity);
+		if (slot == null)
+		{
+			return false;
+		}
+		deleteAt(indexOfSlot[slot]);
+		return true;
+	}
+	
+	/** Remove the entity at an index of the list by moving the last entity
+	 * into its place. Called while holding the lock on the entity list.
+	 * @param index the index of the entity to remove
+	 */
+	private void deleteAt(int index)
+	{
+		int slot = slotAt[index];
+		int last = entities.size() - 1;
+		T removed = entities.get(index);
+		slotOf.remove(removed);
+		for (EntityQuery<T> query : queryList)
+		{
+			query.remove(slot);
+		}
+		slotTags[slot] = 0;
+		PhysicsWorld world = physicsWorld;
+		if (world != null)
+		{
+			world.remove(removed);
+		}
+		if (index != last)
+		{
+			entities.set(index, entities.get(last));
+			slotAt[index] = slotAt[last];
+			indexOfSlot[slotAt[index]] = index;
+		}
+		entities.remove(last);
+		++slotGeneration[slot];
+		freeSlots[numFree++] = slot;
+		releaseToPool(removed);
+	}
+	
+	/** Add or remove a tag of an entity, and update the queries. Called
+	 * while holding the lock on the entity list.
+	 * @param entity the entity
+	 * @param tag the tag
+	 * @param add true to add the tag, false to remove it
+	 */
+	private void changeTag(T entity, String tag, boolean add)
+	{
+		Integer slot = slotOf.get(entity);
+		if (slot == null)
+		{
+			System.out.println(
+					"WARNING: Attempted to change a tag of an entity that is "
+					+ "not in the entity container."
+					);
+			return;
+		}
+		int bit = getTagBit(tag);
+		if (bit < 0)
+		{
+			return;
+		}
+		long tags = slotTags[slot];
+		long changed = add ? tags | (1L << bit) : tags & ~(1L << bit);
+		if (changed == tags)
+		{
+			return;
+		}
+		slotTags[slot] = changed;
+		for (EntityQuery<T> query : queryList)
+		{
+			query.update(slot, entity, changed);
+		}
+	}
+	
+	/** Get the bit used for a tag, picking one if the tag is new. Called
+	 * while holding the lock on the entity list.
+	 * @param tag the tag
+	 * @return the bit of the tag, or -1 if there are already 64 tags
+	 */
+	private int getTagBit(String tag)
+	{
+		Integer bit = tagBits.get(tag);
+		if (bit == null)
+		{
+			if (tagBits.size() == Long.SIZE)
+			{
+				System.out.println(
+						"WARNING: Too many entity tags; unable to add \""
+						+ tag
+						+ "\"."
+						);
+				Thread.dumpStack();
+				return -1;
+			}
+			bit = tagBits.size();
+			tagBits.put(tag, bit);
+		}
+		return bit;
+	}
+	
+	/** Release a removed entity to the pool for its class, if there is
+	 * one. Called while holding the lock on the entity list.
+	 * @param entity the removed entity
+	 */
+	private void releaseToPool(T entity)
+	{
+		if (pools.isEmpty())
+		{
+			return;
+		}
+		EntityPool<?> pool = pools.get(entity.getClass());
+		if (pool != null)
+		{
+			pool.releaseEntity(entity);
+		}
+	}
+	
+	/** Remove all entities matching a filter. Called while holding the lock
+	 * on the entity list.
+	 * @param filter the filter to test each entity with
+	 * @return true if any entities were removed
+	 */
+	private boolean deleteIf(Predicate<T> filter)
+	{
+		boolean changed = false;
+		// Go backwards so entities moved into a removed spot were tested
+		for (int i = entities.size() - 1; i >= 0; --i)
+		{
+			if (filter.test(entities.get(i)))
+			{
+				deleteAt(i);
+				changed = true;
+			}
+		}
+		return changed;
+	}
 }
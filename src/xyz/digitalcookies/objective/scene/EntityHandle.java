@@ -0,0 +1,101 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** Refers to an entity in an {@link EntityContainer} without keeping the
+ * entity in the container. Once the entity is removed from the container
+ * the handle stops working, even if the entity is added back later (which
+ * gives it a new handle), so a handle can be kept safely by things like
+ * AI targets and projectiles.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity in the container
+ */
+public final class EntityHandle<T extends Entity>
+{
+	/** The container the entity is in. */
+	private final EntityContainer<T> container;
+	/** The slot of the entity in the container. */
+	private final int slot;
+	/** The generation of the slot when this handle was created. */
+	private final int generation;
+	
+	/** Create a handle to the entity in a slot.
+	 * @param container the container the entity is in
+	 * @param slot the slot of the entity
+	 * @param generation the current generation of the slot
+	 */
+	EntityHandle(EntityContainer<T> container, int slot, int generation)
+	{
+		this.container = container;
+		this.slot = slot;
+		this.generation = generation;
+	}
+	
+	/** Get the entity this handle refers to.
+	 * @return the entity, or null if it has been removed from the container
+	 */
+	public T get()
+	{
+		return container.getEntity(slot, generation);
+	}
+	
+	/** Check if the entity this handle refers to is still in the container.
+	 * @return true if the entity has not been removed
+	 */
+	public boolean isValid()
+	{
+		return get() != null;
+	}
+	
+	/** Remove the entity this handle refers to from the container, if it
+	 * is still in the container. Like
+	 * {@link EntityContainer#removeEntity(Entity)}, the removal is delayed
+	 * if the container is being updated.
+	 * @return true if the entity was removed right away
+	 */
+	public boolean remove()
+	{
+		T entity = get();
+		return entity != null && container.removeEntity(entity);
+	}
+	
+	/** Get the container the entity is in.
+	 * @return the container this handle was created by
+	 */
+	public EntityContainer<T> getContainer()
+	{
+		return container;
+	}
+	
+	@Override
+	public boolean equals(Object other)
+	{
+		if (!(other instanceof EntityHandle))
+		{
+			return false;
+		}
+		EntityHandle<?> handle = (EntityHandle<?>) other;
+		return handle.container == container
+				&& handle.slot == slot
+				&& handle.generation == generation;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return (slot * 31 + generation) * 31 + System.identityHashCode(container);
+	}
+}
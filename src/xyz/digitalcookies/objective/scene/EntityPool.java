@@ -0,0 +1,283 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/** Keeps entities of one class that are no longer used so they can be
+ * used again, instead of creating new entities and leaving the old ones
+ * for the garbage collector. Useful for entities that are created and
+ * removed constantly, such as bullets and effects.
+ * <br>
+ * <br>Entities are taken from the pool with {@link #acquire()} and given
+ * back with {@link #release(Entity)}, which resets them with the reset
+ * hook. The pool keeps at most its capacity of unused entities; entities
+ * released when it is full are left for the garbage collector. A pool can
+ * also be {@link EntityContainer#addPool(EntityPool) added to an entity
+ * container}, so entities of its class are released automatically when
+ * they are removed from the container.
+ * <br>
+ * <br>The statistics of a pool can be used to pick its capacity: a miss
+ * means an entity had to be created, and the high water mark is the most
+ * entities that were in use at once.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity in the pool
+ */
+public class EntityPool<T extends Entity>
+{
+	/** The class of the entities in this pool. */
+	private final Class<T> type;
+	/** Creates new entities when the pool is empty. */
+	private final Supplier<T> factory;
+	/** Resets entities when they are released, or null. */
+	private final Consumer<T> reset;
+	/** The unused entities. */
+	private Object[] idle;
+	/** The number of unused entities. */
+	private int idleCount;
+	/** The most unused entities kept. */
+	private int capacity;
+	/** The number of entities acquired and not released. */
+	private int inUse;
+	/** The number of acquires that reused an entity. */
+	private long hits;
+	/** The number of acquires that created an entity. */
+	private long misses;
+	/** The number of releases that did not fit in the pool. */
+	private long discards;
+	/** The most entities in use at once. */
+	private int highWater;
+	
+	/** Create a pool with no reset hook.
+	 * @param type the class of the entities in the pool; entities of
+	 * 		subclasses are not released automatically by containers
+	 * @param factory creates new entities when the pool is empty
+	 * @param capacity the most unused entities to keep
+	 */
+	public EntityPool(Class<T> type, Supplier<T> factory, int capacity)
+	{
+		this(type, factory, null, capacity);
+	}
+	
+	/** Create a pool.
+	 * @param type the class of the entities in the pool; entities of
+	 * 		subclasses are not released automatically by containers
+	 * @param factory creates new entities when the pool is empty
+	 * @param reset resets each entity when it is released, so it is ready
+	 * 		to be acquired again (such as clearing its health and
+	 * 		position), or null
+	 * @param capacity the most unused entities to keep
+	 */
+	public EntityPool(Class<T> type, Supplier<T> factory, Consumer<T> reset, int capacity)
+	{
+		this.type = type;
+		this.factory = factory;
+		this.reset = reset;
+		this.capacity = Math.max(capacity, 0);
+		idle = new Object[Math.min(this.capacity, 64)];
+		idleCount = 0;
+		inUse = 0;
+		hits = 0;
+		misses = 0;
+		discards = 0;
+		highWater = 0;
+	}
+	
+	/** Get an entity, reusing an unused one if there is one.
+	 * @return the entity
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire()
+	{
+		T entity = null;
+		synchronized (this)
+		{
+			if (idleCount > 0)
+			{
+				entity = (T) idle[--idleCount];
+				idle[idleCount] = null;
+				++hits;
+			}
+			else
+			{
+				++misses;
+			}
+			++inUse;
+			highWater = Math.max(highWater, inUse);
+		}
+		// Create outside of the lock so other threads are not held up
+		if (entity == null)
+		{
+			entity = factory.get();
+		}
+		return entity;
+	}
+	
+	/** Give back an entity that is no longer used. The entity is reset and
+	 * kept for reuse if there is room. An entity must not be used or
+	 * released again after being released.
+	 * @param entity the entity to release
+	 */
+	public void release(T entity)
+	{
+		if (entity == null)
+		{
+			return;
+		}
+		if (reset != null)
+		{
+			reset.accept(entity);
+		}
+		synchronized (this)
+		{
+			if (inUse > 0)
+			{
+				--inUse;
+			}
+			if (idleCount >= capacity)
+			{
+				++discards;
+				return;
+			}
+			if (idleCount == idle.length)
+			{
+				idle = Arrays.copyOf(idle, Math.min(Math.max(idleCount * 2, 16), capacity));
+			}
+			idle[idleCount++] = entity;
+		}
+	}
+	
+	/** Release an entity of the class of this pool, from a container.
+	 * @param entity the entity, which must be of the class of this pool
+	 */
+	void releaseEntity(Entity entity)
+	{
+		release(type.cast(entity));
+	}
+	
+	/** Create entities ahead of time (such as while loading), so the first
+	 * acquires do not have to create them.
+	 * @param count the number of entities to create, limited by the room
+	 * 		left in the pool
+	 */
+	public void prefill(int count)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			T entity = factory.get();
+			synchronized (this)
+			{
+				if (idleCount >= capacity)
+				{
+					return;
+				}
+				if (idleCount == idle.length)
+				{
+					idle = Arrays.copyOf(idle, Math.min(Math.max(idleCount * 2, 16), capacity));
+				}
+				idle[idleCount++] = entity;
+			}
+		}
+	}
+	
+	/** Get the class of the entities in this pool.
+	 * @return the class of the entities
+	 */
+	public Class<T> getType()
+	{
+		return type;
+	}
+	
+	/** Get the most unused entities kept.
+	 * @return the capacity of the pool
+	 */
+	public synchronized int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/** Set the most unused entities kept. Unused entities past the new
+	 * capacity are dropped.
+	 * @param capacity the new capacity of the pool
+	 */
+	public synchronized void setCapacity(int capacity)
+	{
+		this.capacity = Math.max(capacity, 0);
+		while (idleCount > this.capacity)
+		{
+			idle[--idleCount] = null;
+		}
+	}
+	
+	/** Get the number of unused entities in the pool.
+	 * @return the number of entities ready to be acquired
+	 */
+	public synchronized int getIdleCount()
+	{
+		return idleCount;
+	}
+	
+	/** Get the number of entities acquired and not released yet.
+	 * @return the number of entities in use
+	 */
+	public synchronized int getInUseCount()
+	{
+		return inUse;
+	}
+	
+	/** Get the number of acquires that reused an entity.
+	 * @return the number of hits
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	/** Get the number of acquires that had to create an entity.
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	/** Get the number of released entities that did not fit in the pool.
+	 * @return the number of discarded entities
+	 */
+	public synchronized long getDiscards()
+	{
+		return discards;
+	}
+	
+	/** Get the most entities that were in use at once.
+	 * @return the high water mark
+	 */
+	public synchronized int getHighWaterMark()
+	{
+		return highWater;
+	}
+	
+	/** Reset the hits, misses, discards and high water mark. */
+	public synchronized void resetStatistics()
+	{
+		hits = 0;
+		misses = 0;
+		discards = 0;
+		highWater = inUse;
+	}
+}
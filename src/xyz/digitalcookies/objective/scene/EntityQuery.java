@@ -0,0 +1,213 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/** The entities of an {@link EntityContainer} that are instances of a set
+ * of classes or interfaces (such as {@link CollisionListener}) and have a
+ * set of tags. A query is created with
+ * {@link EntityContainer#addQuery(String, Class[], String[])}, and is kept
+ * up to date by the container as entities are added, removed and tagged,
+ * so reading it does not have to check every entity or copy anything.
+ * <br>
+ * <br>The entities of a query change whenever the entities of its
+ * container change, so a query should only be read by the thread changing
+ * the container, or during an update of the container (when changes are
+ * delayed until the end of the update.) The order of the
+ * entities changes when entities leave the query.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity in the container
+ */
+public class EntityQuery<T extends Entity> implements Iterable<T>
+{
+	/** The name of this query. */
+	private final String name;
+	/** The classes and interfaces the entities must be instances of. */
+	private final Class<?>[] types;
+	/** The bits of the tags the entities must have. */
+	private final long tagMask;
+	/** The entities matching this query. */
+	private final ArrayList<T> members;
+	/** The list of members that can not be changed from outside. */
+	private final List<T> view;
+	/** The container handle slot of each member. */
+	private int[] slotAt;
+	/** The index in the members of the entity in each handle slot, or -1. */
+	private int[] indexOfSlot;
+	
+	/** Create an empty query.
+	 * @param name the name of the query
+	 * @param types the classes and interfaces the entities must be
+	 * 		instances of
+	 * @param tagMask the bits of the tags the entities must have
+	 */
+	EntityQuery(String name, Class<?>[] types, long tagMask)
+	{
+		this.name = name;
+		this.types = types.clone();
+		this.tagMask = tagMask;
+		members = new ArrayList<T>();
+		view = Collections.unmodifiableList(members);
+		slotAt = new int[16];
+		indexOfSlot = new int[16];
+		Arrays.fill(indexOfSlot, -1);
+	}
+	
+	/** Get the name of this query.
+	 * @return the name the query was added with
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/** Get the number of entities matching this query.
+	 * @return the number of entities
+	 */
+	public int size()
+	{
+		return members.size();
+	}
+	
+	/** Check if no entities match this query.
+	 * @return true if there are no matching entities
+	 */
+	public boolean isEmpty()
+	{
+		return members.isEmpty();
+	}
+	
+	/** Get a matching entity.
+	 * @param index the index of the entity, from 0 to size() - 1
+	 * @return the entity
+	 */
+	public T get(int index)
+	{
+		return members.get(index);
+	}
+	
+	/** Get the entities matching this query. The list is not a copy, so it
+	 * changes along with the query, and it can not be changed directly.
+	 * @return the matching entities
+	 */
+	public List<T> getEntities()
+	{
+		return view;
+	}
+	
+	@Override
+	public Iterator<T> iterator()
+	{
+		return view.iterator();
+	}
+	
+	/** Check if an entity matches this query.
+	 * @param entity the entity
+	 * @param tags the bits of the tags of the entity
+	 * @return true if the entity matches
+	 */
+	boolean matches(T entity, long tags)
+	{
+		if ((tags & tagMask) != tagMask)
+		{
+			return false;
+		}
+		for (Class<?> type : types)
+		{
+			if (!type.isInstance(entity))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** Add or remove an entity after it was added or its tags changed.
+	 * @param slot the handle slot of the entity in the container
+	 * @param entity the entity
+	 * @param tags the bits of the tags of the entity
+	 */
+	void update(int slot, T entity, long tags)
+	{
+		boolean member = slot < indexOfSlot.length && indexOfSlot[slot] >= 0;
+		if (matches(entity, tags))
+		{
+			if (!member)
+			{
+				add(slot, entity);
+			}
+		}
+		else if (member)
+		{
+			remove(slot);
+		}
+	}
+	
+	/** Remove the entity in a handle slot, if it is a member.
+	 * @param slot the handle slot of the entity in the container
+	 */
+	void remove(int slot)
+	{
+		if (slot >= indexOfSlot.length || indexOfSlot[slot] < 0)
+		{
+			return;
+		}
+		int index = indexOfSlot[slot];
+		int last = members.size() - 1;
+		if (index != last)
+		{
+			members.set(index, members.get(last));
+			slotAt[index] = slotAt[last];
+			indexOfSlot[slotAt[index]] = index;
+		}
+		members.remove(last);
+		indexOfSlot[slot] = -1;
+	}
+	
+	/** Remove all members. */
+	void clear()
+	{
+		members.clear();
+		Arrays.fill(indexOfSlot, -1);
+	}
+	
+	/** Add an entity.
+	 * @param slot the handle slot of the entity in the container
+	 * @param entity the entity
+	 */
+	private void add(int slot, T entity)
+	{
+		if (slot >= indexOfSlot.length)
+		{
+			int oldLength = indexOfSlot.length;
+			indexOfSlot = Arrays.copyOf(indexOfSlot, Math.max(slot + 1, oldLength * 2));
+			Arrays.fill(indexOfSlot, oldLength, indexOfSlot.length, -1);
+		}
+		int index = members.size();
+		if (index == slotAt.length)
+		{
+			slotAt = Arrays.copyOf(slotAt, index * 2);
+		}
+		members.add(entity);
+		slotAt[index] = slot;
+		indexOfSlot[slot] = index;
+	}
+}
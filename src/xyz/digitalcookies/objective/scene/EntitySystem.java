@@ -0,0 +1,50 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** Updates all entities of an {@link EntityWorld} that have a set of
+ * components. Instead of being called for each entity, a system is given
+ * each matching {@link Archetype} (or part of one, when running in
+ * parallel) and works directly on the component arrays of its entities.
+ * @author Bryan Charles Bettis
+ */
+public interface EntitySystem
+{
+	/** Get the components an entity must have to be updated by this system.
+	 * @return the required component types
+	 */
+	public ComponentType[] getRequiredComponents();
+	
+	/** Update the entities in a range of rows of an archetype.
+	 * @param archetype an archetype with all of the required components
+	 * @param start the first row to update (inclusive)
+	 * @param end the last row to update (exclusive)
+	 * @param event the update event passed to the world
+	 */
+	public void update(Archetype archetype, int start, int end, EntityUpdateEvent event);
+	
+	/** Check if this system can update different rows of an archetype at the
+	 * same time from several threads. A parallel system must only change the
+	 * rows it was given, and must not call methods of the world other than
+	 * {@link EntityWorld#destroyLater(int)}. Systems are not parallel by
+	 * default.
+	 * @return true if the rows of an archetype can be split between threads
+	 */
+	public default boolean isParallel()
+	{
+		return false;
+	}
+}
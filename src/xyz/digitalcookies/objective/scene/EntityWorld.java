@@ -0,0 +1,508 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import xyz.digitalcookies.objective.graphics.RenderEvent;
+import xyz.digitalcookies.objective.graphics.Renderer;
+import xyz.digitalcookies.objective.utility.JobPool;
+
+/** Holds entities as integer ids with their data stored in components,
+ * instead of as separate objects. Entities with the same set of components
+ * are stored together in an {@link Archetype}, with each component in a
+ * plain array, and are updated by {@link EntitySystem}s that loop over
+ * those arrays (optionally split across the threads of the
+ * {@link JobPool}.) This is much faster than an {@link EntityContainer}
+ * for large numbers of simple entities.
+ * <br>
+ * <br>A world is itself an Entity, so it can be added to an
+ * EntityContainer or scene next to normal entities, and entity types can
+ * be moved into a world one at a time. Entities with a
+ * {@link ComponentType#RENDERER} component are drawn by their renderer
+ * when the world is rendered.
+ * <br>
+ * <br>The entities and components of a world must not be changed by
+ * systems while they run, except by {@link #destroyLater(int)}; any other
+ * changes can be made between updates. The world is locked while its
+ * systems run, so {@link EntitySystem#isParallel() parallel systems} must
+ * only use the arrays of the archetypes they are given. Rendering uses a
+ * separate lock, so it never waits for the systems to finish.
+ * @author Bryan Charles Bettis
+ */
+public class EntityWorld implements Entity
+{
+	/** The fewest rows given to a thread by a parallel system. */
+	public static final int PARALLEL_CHUNK = 1024;
+	
+	/** All archetypes, by their component mask. */
+	private final HashMap<Long, Archetype> archetypeByMask;
+	/** All archetypes, in the order they were created. */
+	private final ArrayList<Archetype> archetypes;
+	/** The systems run when the world is updated, in order. */
+	private final ArrayList<EntitySystem> systems;
+	/** Entities to destroy once the current update has finished. */
+	private final ConcurrentLinkedQueue<Integer> destroyQueue;
+	/** The archetype of each entity id, or null if the id is not in use. */
+	private Archetype[] archetypeOf;
+	/** The row of each entity within its archetype. */
+	private int[] rowOf;
+	/** Ids of destroyed entities, to be used again. */
+	private int[] freeIds;
+	/** The number of ids in freeIds. */
+	private int freeCount;
+	/** The lowest id that has never been used. */
+	private int nextId;
+	/** The number of living entities. */
+	private int count;
+	/** Locked while rendering, and while entities are added to, moved
+	 * between or removed from archetypes.
+	 */
+	private final Object renderLock = new Object();
+	
+	/** Create an empty world. */
+	public EntityWorld()
+	{
+		archetypeByMask = new HashMap<Long, Archetype>();
+		archetypes = new ArrayList<Archetype>();
+		systems = new ArrayList<EntitySystem>();
+		destroyQueue = new ConcurrentLinkedQueue<Integer>();
+		archetypeOf = new Archetype[64];
+		rowOf = new int[64];
+		freeIds = new int[16];
+		freeCount = 0;
+		nextId = 0;
+		count = 0;
+	}
+	
+	@Override
+	public boolean utilizesBody()
+	{
+		return false;
+	}
+	
+	/** Run each system on the entities that have its required components,
+	 * then destroy the entities passed to {@link #destroyLater(int)}. The
+	 * world stays locked while parallel systems wait for the job pool, so
+	 * calling a synchronized method of the world from a parallel system
+	 * deadlocks.
+	 * @param event the event passed to each system
+	 */
+	@Override
+	public synchronized void update(EntityUpdateEvent event)
+	{
+		for (EntitySystem system : systems)
+		{
+			runSystem(system, event);
+		}
+		Integer id;
+		while ((id = destroyQueue.poll()) != null)
+		{
+			destroy(id);
+		}
+	}
+	
+	/** Draw each entity with a {@link ComponentType#RENDERER} component,
+	 * archetype by archetype. This does not lock the world, so it can run
+	 * while the world is being updated; the renderers must not call methods
+	 * of the world while they draw.
+	 * @param event the render event to draw with
+	 */
+	@Override
+	public void render(RenderEvent event)
+	{
+		synchronized (renderLock)
+		{
+			for (Archetype archetype : archetypes)
+			{
+				Object[] renderers = archetype.getObjects(ComponentType.RENDERER);
+				if (renderers == null)
+				{
+					continue;
+				}
+				int size = archetype.getSize();
+				for (int row = 0; row < size; ++row)
+				{
+					Renderer r = (Renderer) renderers[row];
+					if (r != null)
+					{
+						RenderEvent e2 = event.clone();
+						r.render(e2);
+						e2.getGC().dispose();
+					}
+				}
+			}
+		}
+	}
+	
+	/** Rendering only locks the render lock, never the world itself, so the
+	 * world can be drawn by several bands at once and while it is being
+	 * updated.
+	 * @return true
+	 */
+	@Override
+	public boolean isThreadSafe()
+	{
+		return true;
+	}
+	
+	/** Create an entity.
+	 * @param types the components the entity starts with (values start as
+	 * 		zero or null)
+	 * @return the id of the new entity
+	 */
+	public synchronized int create(ComponentType... types)
+	{
+		int id;
+		if (freeCount > 0)
+		{
+			id = freeIds[--freeCount];
+		}
+		else
+		{
+			id = nextId++;
+			if (id == archetypeOf.length)
+			{
+				archetypeOf = Arrays.copyOf(archetypeOf, id * 2);
+				rowOf = Arrays.copyOf(rowOf, id * 2);
+			}
+		}
+		synchronized (renderLock)
+		{
+			Archetype archetype = getArchetype(ComponentType.getMask(types));
+			archetypeOf[id] = archetype;
+			rowOf[id] = archetype.add(id);
+		}
+		++count;
+		return id;
+	}
+	
+	/** Destroy an entity, removing all of its components. Its id may be
+	 * given to an entity created later.
+	 * @param id the id of the entity
+	 * @return true if the entity was destroyed, false if it did not exist
+	 */
+	public synchronized boolean destroy(int id)
+	{
+		if (!isAlive(id))
+		{
+			return false;
+		}
+		synchronized (renderLock)
+		{
+			removeRow(id);
+			archetypeOf[id] = null;
+		}
+		if (freeCount == freeIds.length)
+		{
+			freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+		}
+		freeIds[freeCount++] = id;
+		--count;
+		return true;
+	}
+	
+	/** Destroy an entity after the current update has finished. This can be
+	 * called from any thread, including by parallel systems.
+	 * @param id the id of the entity
+	 */
+	public void destroyLater(int id)
+	{
+		destroyQueue.add(id);
+	}
+	
+	/** Check if an id belongs to an entity in this world.
+	 * @param id the id of the entity
+	 * @return true if the entity exists
+	 */
+	public synchronized boolean isAlive(int id)
+	{
+		return id >= 0 && id < nextId && archetypeOf[id] != null;
+	}
+	
+	/** Get the number of entities in this world.
+	 * @return the number of living entities
+	 */
+	public synchronized int getEntityCount()
+	{
+		return count;
+	}
+	
+	/** Check if an entity has a component.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @return true if the entity exists and has the component
+	 */
+	public synchronized boolean hasComponent(int id, ComponentType type)
+	{
+		return isAlive(id) && archetypeOf[id].has(type);
+	}
+	
+	/** Add a component to an entity, moving it to another archetype. The
+	 * values of the new component start as zero or null.
+	 * @param id the id of the entity
+	 * @param type the component type to add
+	 */
+	public synchronized void addComponent(int id, ComponentType type)
+	{
+		if (!isAlive(id) || archetypeOf[id].has(type))
+		{
+			return;
+		}
+		move(id, archetypeOf[id].getMask() | type.getMask());
+	}
+	
+	/** Remove a component from an entity, moving it to another archetype.
+	 * @param id the id of the entity
+	 * @param type the component type to remove
+	 */
+	public synchronized void removeComponent(int id, ComponentType type)
+	{
+		if (!isAlive(id) || !archetypeOf[id].has(type))
+		{
+			return;
+		}
+		move(id, archetypeOf[id].getMask() & ~type.getMask());
+	}
+	
+	/** Get a value of a component stored as doubles.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param index the index of the value within the component
+	 * @return the value, or 0 if the entity does not have the component
+	 */
+	public synchronized double getDouble(int id, ComponentType type, int index)
+	{
+		double[] values = (double[]) getColumn(id, type, ComponentType.Kind.DOUBLE);
+		return values == null ? 0 : values[rowOf[id] * type.getWidth() + index];
+	}
+	
+	/** Set a value of a component stored as doubles.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param index the index of the value within the component
+	 * @param value the new value
+	 */
+	public synchronized void setDouble(int id, ComponentType type, int index, double value)
+	{
+		double[] values = (double[]) getColumn(id, type, ComponentType.Kind.DOUBLE);
+		if (values != null)
+		{
+			values[rowOf[id] * type.getWidth() + index] = value;
+		}
+	}
+	
+	/** Get a value of a component stored as ints.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param index the index of the value within the component
+	 * @return the value, or 0 if the entity does not have the component
+	 */
+	public synchronized int getInt(int id, ComponentType type, int index)
+	{
+		int[] values = (int[]) getColumn(id, type, ComponentType.Kind.INT);
+		return values == null ? 0 : values[rowOf[id] * type.getWidth() + index];
+	}
+	
+	/** Set a value of a component stored as ints.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param index the index of the value within the component
+	 * @param value the new value
+	 */
+	public synchronized void setInt(int id, ComponentType type, int index, int value)
+	{
+		int[] values = (int[]) getColumn(id, type, ComponentType.Kind.INT);
+		if (values != null)
+		{
+			values[rowOf[id] * type.getWidth() + index] = value;
+		}
+	}
+	
+	/** Get a value of a component stored as objects.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param index the index of the value within the component
+	 * @return the value, or null if the entity does not have the component
+	 */
+	public synchronized Object getObject(int id, ComponentType type, int index)
+	{
+		Object[] values = (Object[]) getColumn(id, type, ComponentType.Kind.OBJECT);
+		return values == null ? null : values[rowOf[id] * type.getWidth() + index];
+	}
+	
+	/** Set a value of a component stored as objects.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param index the index of the value within the component
+	 * @param value the new value
+	 */
+	public synchronized void setObject(int id, ComponentType type, int index, Object value)
+	{
+		Object[] values = (Object[]) getColumn(id, type, ComponentType.Kind.OBJECT);
+		if (values != null)
+		{
+			values[rowOf[id] * type.getWidth() + index] = value;
+		}
+	}
+	
+	/** Add a system to run each time the world is updated. Systems run in
+	 * the order they were added.
+	 * @param system the system to add
+	 */
+	public synchronized void addSystem(EntitySystem system)
+	{
+		if (system != null && !systems.contains(system))
+		{
+			systems.add(system);
+		}
+	}
+	
+	/** Stop running a system when the world is updated.
+	 * @param system the system to remove
+	 */
+	public synchronized void removeSystem(EntitySystem system)
+	{
+		systems.remove(system);
+	}
+	
+	/** Run a system on the matching entities right away, whether it has
+	 * been added to the world or not.
+	 * @param system the system to run
+	 * @param event the event to pass to the system
+	 */
+	public synchronized void runSystem(EntitySystem system, EntityUpdateEvent event)
+	{
+		long required = ComponentType.getMask(system.getRequiredComponents());
+		boolean parallel = system.isParallel();
+		for (Archetype archetype : archetypes)
+		{
+			int size = archetype.getSize();
+			if ((archetype.getMask() & required) != required || size == 0)
+			{
+				continue;
+			}
+			if (parallel)
+			{
+				JobPool.parallelFor(
+						0,
+						size,
+						PARALLEL_CHUNK,
+						(int start, int end)->
+						{
+							system.update(archetype, start, end, event);
+						}
+						);
+			}
+			else
+			{
+				system.update(archetype, 0, size, event);
+			}
+		}
+	}
+	
+	/** Get all archetypes with entities that have the specified components.
+	 * @param types the required component types
+	 * @return the matching archetypes
+	 */
+	public synchronized List<Archetype> getArchetypes(ComponentType... types)
+	{
+		long required = ComponentType.getMask(types);
+		List<Archetype> found = new ArrayList<Archetype>();
+		for (Archetype archetype : archetypes)
+		{
+			if ((archetype.getMask() & required) == required)
+			{
+				found.add(archetype);
+			}
+		}
+		return found;
+	}
+	
+	/** Get the archetype for a set of components, creating it if needed.
+	 * Called while holding the render lock.
+	 * @param mask the set of component types
+	 * @return the archetype
+	 */
+	private Archetype getArchetype(long mask)
+	{
+		Archetype archetype = archetypeByMask.get(mask);
+		if (archetype == null)
+		{
+			archetype = new Archetype(mask, ComponentType.getTypes(mask));
+			archetypeByMask.put(mask, archetype);
+			archetypes.add(archetype);
+		}
+		return archetype;
+	}
+	
+	/** Move an entity to the archetype with the specified components,
+	 * keeping the values of the components in both archetypes.
+	 * @param id the id of the entity
+	 * @param mask the new set of component types
+	 */
+	private void move(int id, long mask)
+	{
+		synchronized (renderLock)
+		{
+			Archetype from = archetypeOf[id];
+			Archetype to = getArchetype(mask);
+			int row = to.add(id);
+			from.copyRow(rowOf[id], to, row);
+			removeRow(id);
+			archetypeOf[id] = to;
+			rowOf[id] = row;
+		}
+	}
+	
+	/** Remove the row of an entity from its archetype. Called while holding
+	 * the render lock.
+	 * @param id the id of the entity
+	 */
+	private void removeRow(int id)
+	{
+		int moved = archetypeOf[id].remove(rowOf[id]);
+		if (moved >= 0)
+		{
+			rowOf[moved] = rowOf[id];
+		}
+	}
+	
+	/** Get the array of a component of an entity.
+	 * @param id the id of the entity
+	 * @param type the component type
+	 * @param kind the kind of values expected
+	 * @return the array, or null if the entity does not exist or does not
+	 * 		have the component
+	 */
+	private Object getColumn(int id, ComponentType type, ComponentType.Kind kind)
+	{
+		if (!isAlive(id))
+		{
+			System.out.println(
+					"WARNING: Attempted to access a component of an entity "
+					+ "that does not exist: "
+					+ Integer.toString(id)
+					);
+			return null;
+		}
+		return archetypeOf[id].getColumn(type, kind);
+	}
+}
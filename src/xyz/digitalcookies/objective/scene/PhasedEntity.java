@@ -0,0 +1,35 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+/** An entity that splits its update into a read phase and a write phase.
+ * When an {@link EntityContainer} updates its entities, the read phase of
+ * every phased entity finishes before any entity is updated, so during the
+ * read phase an entity can safely look at the state of other entities
+ * (such as to pick a target) and keep what it decided, and then act on it
+ * in {@link #update(EntityUpdateEvent)}, changing only its own state.
+ * This is what allows entities to be updated in parallel without locking
+ * each other.
+ * @author Bryan Charles Bettis
+ */
+public interface PhasedEntity extends Entity
+{
+	/** Look at the state of the game and other entities before any entity
+	 * is updated. Must not change anything other entities can see.
+	 * @param event the same event that will be passed to the update
+	 */
+	public void readPhase(EntityUpdateEvent event);
+}
@@ -0,0 +1,824 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import xyz.digitalcookies.objective.utility.JobPool;
+
+/** Moves bodies by their velocity and the forces on them, and pushes
+ * touching bodies apart. The physics runs in fixed steps (120 per second by
+ * default), no matter how often the world is updated, so it behaves the
+ * same at any update rate; each update runs as many steps as fit in the
+ * elapsed time. Since the steps rarely line up with frames, each body also
+ * has a {@link Body#getRenderX() render position} between its last two
+ * steps to draw it at.
+ * <br>
+ * <br>The state of the bodies (position, velocity, forces and mass) is
+ * kept in plain arrays while in the world. Contacts are found with a
+ * {@link CollisionWorld}, and then the bodies are split into islands of
+ * bodies touching each other (directly or through other bodies), and the
+ * contacts of each island are solved on the threads of the {@link JobPool}
+ * at the same time. Static bodies (with a mass of 0) do not join islands
+ * together, so bodies resting on the same floor can still be solved in
+ * parallel.
+ * <br>
+ * <br>Bodies can be added and removed from any thread at any time, and the
+ * change is made at the start of the next update. A body that is still in
+ * another world waits until that world removes it (at its next update),
+ * so a body can be moved between worlds without updating them in order.
+ * Setting an
+ * {@link EntityContainer#setPhysicsWorld(PhysicsWorld) entity container's
+ * physics world} adds the bodies of its entities automatically.
+ * @author Bryan Charles Bettis
+ */
+public class PhysicsWorld
+{
+	/** The number of times the contacts are solved each step. */
+	public static final int SOLVER_ITERATIONS = 8;
+	/** The most steps run by one update, so a long pause (or physics that
+	 * is too slow to keep up) does not make each update take even longer.
+	 */
+	public static final int MAX_STEPS = 8;
+	/** How far bodies can overlap before they are pushed apart. */
+	private static final double SLOP = 0.01;
+	/** The fraction of the overlap removed each step. */
+	private static final double CORRECTION = 0.4;
+	/** The fewest islands given to a thread when solving contacts. */
+	private static final int PARALLEL_CHUNK = 16;
+	/** The most updates an add waits for its body to leave another world. */
+	private static final int ADD_RETRIES = 120;
+	
+	/** The length of a step, in seconds. */
+	private final double step;
+	/** Finds the contacts between the bodies. */
+	private final CollisionWorld collisions;
+	/** The bodies in this world, by index. */
+	private Body[] bodies;
+	/** The number of bodies in this world. */
+	private int count;
+	/** The x coordinate of each body. */
+	private double[] posX;
+	/** The y coordinate of each body. */
+	private double[] posY;
+	/** The x coordinate of each body before the last step. */
+	private double[] prevX;
+	/** The y coordinate of each body before the last step. */
+	private double[] prevY;
+	/** The x coordinate last given to each body, to notice teleports. */
+	private double[] syncedX;
+	/** The y coordinate last given to each body, to notice teleports. */
+	private double[] syncedY;
+	/** The x velocity of each body. */
+	private double[] velX;
+	/** The y velocity of each body. */
+	private double[] velY;
+	/** The x part of the force on each body until the next update. */
+	private double[] forceX;
+	/** The y part of the force on each body until the next update. */
+	private double[] forceY;
+	/** One over the mass of each body, or 0 for static bodies. */
+	private double[] invMass;
+	/** The restitution of each body. */
+	private double[] restitution;
+	/** The parent of each body in the tree of its island. */
+	private int[] parent;
+	/** The island number of each root body, or -1. */
+	private int[] islandOfRoot;
+	/** The first body of each contact. */
+	private int[] contactA;
+	/** The second body of each contact. */
+	private int[] contactB;
+	/** The x part of the normal of each contact. */
+	private double[] contactNX;
+	/** The y part of the normal of each contact. */
+	private double[] contactNY;
+	/** The depth of each contact. */
+	private double[] contactDepth;
+	/** The number of contacts found by the current step. */
+	private int contactCount;
+	/** The island of each contact. */
+	private int[] contactIsland;
+	/** The contacts, grouped by island. */
+	private int[] islandContacts;
+	/** The first index in islandContacts of each island, and the end. */
+	private int[] islandStart;
+	/** The number of islands found by the current step. */
+	private int islandCount;
+	/** The x acceleration of gravity. */
+	private volatile double gravityX;
+	/** The y acceleration of gravity. */
+	private volatile double gravityY;
+	/** Time left over from the last update, in seconds. */
+	private double accumulator;
+	/** Adds and removes delayed until the next update. */
+	private final ConcurrentLinkedQueue<Change> pendingChanges;
+	
+	/** An add or remove that was delayed until the next update.
+	 * @author Bryan Charles Bettis
+	 */
+	private static class Change
+	{
+		/** The body to add or remove. */
+		final Body body;
+		/** True to add the body, false to remove it. */
+		final boolean add;
+		/** The number of updates an add has waited for its body. */
+		final int attempts;
+		
+		/** Create a delayed add or remove.
+		 * @param body the body to add or remove
+		 * @param add true to add the body, false to remove
+		 */
+		Change(Body body, boolean add)
+		{
+			this(body, add, 0);
+		}
+		
+		/** Create a delayed add or remove.
+		 * @param body the body to add or remove
+		 * @param add true to add the body, false to remove
+		 * @param attempts the number of updates already waited
+		 */
+		Change(Body body, boolean add, int attempts)
+		{
+			this.body = body;
+			this.add = add;
+			this.attempts = attempts;
+		}
+	}
+	
+	/** Create a world with 120 steps per second and no gravity. */
+	public PhysicsWorld()
+	{
+		this(120);
+	}
+	
+	/** Create a world with no gravity.
+	 * @param stepsPerSecond the number of physics steps per second
+	 */
+	public PhysicsWorld(double stepsPerSecond)
+	{
+		if (stepsPerSecond <= 0)
+		{
+			System.out.println(
+					"WARNING: Specified an invalid physics step rate: "
+					+ Double.toString(stepsPerSecond)
+					);
+			Thread.dumpStack();
+			stepsPerSecond = 120;
+		}
+		step = 1.0 / stepsPerSecond;
+		collisions = new CollisionWorld();
+		collisions.addCollisionListener(
+				(ContactEvent event)->
+				{
+					addContact(event);
+				}
+				);
+		int capacity = 64;
+		bodies = new Body[capacity];
+		count = 0;
+		posX = new double[capacity];
+		posY = new double[capacity];
+		prevX = new double[capacity];
+		prevY = new double[capacity];
+		syncedX = new double[capacity];
+		syncedY = new double[capacity];
+		velX = new double[capacity];
+		velY = new double[capacity];
+		forceX = new double[capacity];
+		forceY = new double[capacity];
+		invMass = new double[capacity];
+		restitution = new double[capacity];
+		parent = new int[capacity];
+		islandOfRoot = new int[capacity];
+		islandStart = new int[capacity + 1];
+		contactA = new int[capacity];
+		contactB = new int[capacity];
+		contactNX = new double[capacity];
+		contactNY = new double[capacity];
+		contactDepth = new double[capacity];
+		contactIsland = new int[capacity];
+		islandContacts = new int[capacity];
+		contactCount = 0;
+		islandCount = 0;
+		gravityX = 0;
+		gravityY = 0;
+		accumulator = 0;
+		pendingChanges = new ConcurrentLinkedQueue<Change>();
+	}
+	
+	/** Add a body to this world at the start of the next update.
+	 * @param body the body to add
+	 */
+	public void add(Body body)
+	{
+		if (body == null)
+		{
+			System.out.println("WARNING: Attempted to add a null body to a physics world.");
+			Thread.dumpStack();
+			return;
+		}
+		pendingChanges.add(new Change(body, true));
+	}
+	
+	/** Remove a body from this world at the start of the next update.
+	 * @param body the body to remove
+	 */
+	public void remove(Body body)
+	{
+		if (body != null)
+		{
+			pendingChanges.add(new Change(body, false));
+		}
+	}
+	
+	/** Add the body of an entity to this world at the start of the next
+	 * update, if the entity utilizes a body and has one.
+	 * @param entity the entity to add the body of
+	 * @return true if the entity had a body to add
+	 */
+	public boolean add(Entity entity)
+	{
+		if (!entity.utilizesBody())
+		{
+			return false;
+		}
+		Body body = entity.getBody();
+		if (body == null)
+		{
+			return false;
+		}
+		body.setEntity(entity);
+		add(body);
+		return true;
+	}
+	
+	/** Remove the body of an entity from this world at the start of the
+	 * next update.
+	 * @param entity the entity to remove the body of
+	 */
+	public void remove(Entity entity)
+	{
+		if (entity.utilizesBody())
+		{
+			remove(entity.getBody());
+		}
+	}
+	
+	/** Get the collision world used to find contacts, such as to listen for
+	 * contacts. Bodies should be added to this physics world instead of
+	 * directly to the collision world.
+	 * @return the collision world
+	 */
+	public CollisionWorld getCollisionWorld()
+	{
+		return collisions;
+	}
+	
+	/** Get the number of bodies in this world.
+	 * @return the number of bodies, not including ones waiting to be added
+	 */
+	public synchronized int getBodyCount()
+	{
+		return count;
+	}
+	
+	/** Get the length of a physics step.
+	 * @return the time between steps, in seconds
+	 */
+	public double getStepLength()
+	{
+		return step;
+	}
+	
+	/** Set the acceleration of gravity on all bodies.
+	 * @param x the x acceleration, in units per second per second
+	 * @param y the y acceleration, in units per second per second
+	 */
+	public void setGravity(double x, double y)
+	{
+		gravityX = x;
+		gravityY = y;
+	}
+	
+	/** Get the x velocity of a body.
+	 * @param body the body
+	 * @return the x velocity, in units per second, or 0 if the body is not
+	 * 		in this world
+	 */
+	public synchronized double getVelocityX(Body body)
+	{
+		int index = indexOf(body);
+		return index < 0 ? 0 : velX[index];
+	}
+	
+	/** Get the y velocity of a body.
+	 * @param body the body
+	 * @return the y velocity, in units per second, or 0 if the body is not
+	 * 		in this world
+	 */
+	public synchronized double getVelocityY(Body body)
+	{
+		int index = indexOf(body);
+		return index < 0 ? 0 : velY[index];
+	}
+	
+	/** Set the velocity of a body.
+	 * @param body the body
+	 * @param x the x velocity, in units per second
+	 * @param y the y velocity, in units per second
+	 */
+	public synchronized void setVelocity(Body body, double x, double y)
+	{
+		int index = indexOf(body);
+		if (index >= 0)
+		{
+			velX[index] = x;
+			velY[index] = y;
+		}
+	}
+	
+	/** Push a body with a force over the whole next update. Forces add up
+	 * until the next update, and are then cleared.
+	 * @param body the body
+	 * @param x the x part of the force
+	 * @param y the y part of the force
+	 */
+	public synchronized void applyForce(Body body, double x, double y)
+	{
+		int index = indexOf(body);
+		if (index >= 0)
+		{
+			forceX[index] += x;
+			forceY[index] += y;
+		}
+	}
+	
+	/** Change the velocity of a body all at once, such as for a jump or
+	 * hit. Static bodies are not affected.
+	 * @param body the body
+	 * @param x the x part of the impulse
+	 * @param y the y part of the impulse
+	 */
+	public synchronized void applyImpulse(Body body, double x, double y)
+	{
+		int index = indexOf(body);
+		if (index >= 0)
+		{
+			velX[index] += x * invMass[index];
+			velY[index] += y * invMass[index];
+		}
+	}
+	
+	/** Run the physics steps that fit in the elapsed time (plus the time
+	 * left over from the last update), then update the positions of the
+	 * bodies. Contacts found during each step are sent to the listeners of
+	 * the collision world, so they may be sent more than once per update.
+	 * @param elapsed the time since the last update, in seconds (such as
+	 * 		the elapsed time of a scene update)
+	 */
+	public synchronized void update(double elapsed)
+	{
+		applyChanges();
+		readBodies();
+		accumulator += Math.max(elapsed, 0);
+		int steps = 0;
+		while (accumulator >= step)
+		{
+			if (steps == MAX_STEPS)
+			{
+				// Too far behind, so drop the extra time
+				accumulator = 0;
+				break;
+			}
+			runStep();
+			accumulator -= step;
+			++steps;
+		}
+		Arrays.fill(forceX, 0, count, 0);
+		Arrays.fill(forceY, 0, count, 0);
+		writeBodies(accumulator / step);
+	}
+	
+	/** Make the adds and removes since the last update. Adds of bodies
+	 * still in another world are kept for the next update, until
+	 * {@link #ADD_RETRIES} updates have passed.
+	 */
+	private void applyChanges()
+	{
+		ArrayList<Change> waiting = null;
+		Change change;
+		while ((change = pendingChanges.poll()) != null)
+		{
+			Body body = change.body;
+			if (!change.add)
+			{
+				delete(body);
+				if (waiting != null)
+				{
+					waiting.removeIf((Change other)->
+					{
+						return other.body == body;
+					});
+				}
+			}
+			else if (!insert(body))
+			{
+				if (change.attempts < ADD_RETRIES)
+				{
+					if (waiting == null)
+					{
+						waiting = new ArrayList<Change>();
+					}
+					waiting.add(new Change(body, true, change.attempts + 1));
+				}
+				else
+				{
+					System.out.println(
+							"WARNING: Attempted to add a body to a physics "
+							+ "world while it is in another physics or "
+							+ "collision world."
+							);
+				}
+			}
+		}
+		if (waiting != null)
+		{
+			pendingChanges.addAll(waiting);
+		}
+	}
+	
+	/** Add a body to the arrays.
+	 * @param body the body to add
+	 * @return false if the body is still in another world
+	 */
+	private boolean insert(Body body)
+	{
+		if (indexOf(body) >= 0)
+		{
+			return true;
+		}
+		if (body.proxy >= 0 || body.physicsIndex >= 0)
+		{
+			return false;
+		}
+		if (count == bodies.length)
+		{
+			grow(count * 2);
+		}
+		int index = count++;
+		bodies[index] = body;
+		body.physicsIndex = index;
+		posX[index] = body.getX();
+		posY[index] = body.getY();
+		prevX[index] = posX[index];
+		prevY[index] = posY[index];
+		syncedX[index] = posX[index];
+		syncedY[index] = posY[index];
+		velX[index] = 0;
+		velY[index] = 0;
+		forceX[index] = 0;
+		forceY[index] = 0;
+		collisions.add(body);
+		return true;
+	}
+	
+	/** Remove a body from the arrays, moving the last body into its place.
+	 * @param body the body to remove
+	 */
+	private void delete(Body body)
+	{
+		int index = indexOf(body);
+		if (index < 0)
+		{
+			return;
+		}
+		collisions.remove(body);
+		int last = --count;
+		if (index != last)
+		{
+			Body moved = bodies[last];
+			bodies[index] = moved;
+			moved.physicsIndex = index;
+			posX[index] = posX[last];
+			posY[index] = posY[last];
+			prevX[index] = prevX[last];
+			prevY[index] = prevY[last];
+			syncedX[index] = syncedX[last];
+			syncedY[index] = syncedY[last];
+			velX[index] = velX[last];
+			velY[index] = velY[last];
+			forceX[index] = forceX[last];
+			forceY[index] = forceY[last];
+		}
+		bodies[last] = null;
+		body.physicsIndex = -1;
+	}
+	
+	/** Get the index of a body in this world.
+	 * @param body the body
+	 * @return the index, or -1 if the body is not in this world
+	 */
+	private int indexOf(Body body)
+	{
+		int index = body.physicsIndex;
+		if (index < 0 || index >= count || bodies[index] != body)
+		{
+			return -1;
+		}
+		return index;
+	}
+	
+	/** Copy the mass and restitution of the bodies into the arrays, and
+	 * take the position of bodies that were moved directly.
+	 */
+	private void readBodies()
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			Body body = bodies[i];
+			double mass = body.getMass();
+			invMass[i] = mass > 0 ? 1 / mass : 0;
+			restitution[i] = body.getRestitution();
+			double x = body.getX();
+			double y = body.getY();
+			if (x != syncedX[i] || y != syncedY[i])
+			{
+				// Teleported, so do not move smoothly from the old position
+				posX[i] = x;
+				posY[i] = y;
+				prevX[i] = x;
+				prevY[i] = y;
+			}
+		}
+	}
+	
+	/** Give the bodies their new positions.
+	 * @param alpha how far between the last two steps to draw the bodies
+	 */
+	private void writeBodies(double alpha)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			bodies[i].moveTo(
+					posX[i],
+					posY[i],
+					prevX[i] + (posX[i] - prevX[i]) * alpha,
+					prevY[i] + (posY[i] - prevY[i]) * alpha
+					);
+			syncedX[i] = posX[i];
+			syncedY[i] = posY[i];
+		}
+	}
+	
+	/** Run one physics step. */
+	private void runStep()
+	{
+		double gx = gravityX;
+		double gy = gravityY;
+		for (int i = 0; i < count; ++i)
+		{
+			prevX[i] = posX[i];
+			prevY[i] = posY[i];
+			double inv = invMass[i];
+			if (inv == 0)
+			{
+				velX[i] = 0;
+				velY[i] = 0;
+				continue;
+			}
+			velX[i] += (gx + forceX[i] * inv) * step;
+			velY[i] += (gy + forceY[i] * inv) * step;
+			posX[i] += velX[i] * step;
+			posY[i] += velY[i] * step;
+			// The collision world reads the positions from the bodies, but the
+			// render position is only changed by writeBodies
+			bodies[i].moveTo(posX[i], posY[i]);
+		}
+		contactCount = 0;
+		collisions.update();
+		findIslands();
+		JobPool.parallelFor(
+				0,
+				islandCount,
+				PARALLEL_CHUNK,
+				(int start, int end)->
+				{
+					for (int island = start; island < end; ++island)
+					{
+						solveIsland(island);
+					}
+				}
+				);
+	}
+	
+	/** Store a contact found by the collision world.
+	 * @param event the contact
+	 */
+	private void addContact(ContactEvent event)
+	{
+		int a = indexOf(event.getBodyA());
+		int b = indexOf(event.getBodyB());
+		if (a < 0 || b < 0 || (invMass[a] == 0 && invMass[b] == 0))
+		{
+			return;
+		}
+		if (contactCount == contactA.length)
+		{
+			int capacity = contactCount * 2;
+			contactA = Arrays.copyOf(contactA, capacity);
+			contactB = Arrays.copyOf(contactB, capacity);
+			contactNX = Arrays.copyOf(contactNX, capacity);
+			contactNY = Arrays.copyOf(contactNY, capacity);
+			contactDepth = Arrays.copyOf(contactDepth, capacity);
+			contactIsland = new int[capacity];
+			islandContacts = new int[capacity];
+		}
+		contactA[contactCount] = a;
+		contactB[contactCount] = b;
+		contactNX[contactCount] = event.getNormalX();
+		contactNY[contactCount] = event.getNormalY();
+		contactDepth[contactCount] = event.getDepth();
+		++contactCount;
+	}
+	
+	/** Group the contacts into islands of bodies that touch each other,
+	 * with the contacts of each island next to each other in
+	 * islandContacts.
+	 */
+	private void findIslands()
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			parent[i] = i;
+			islandOfRoot[i] = -1;
+		}
+		// Join the moving bodies of each contact
+		for (int c = 0; c < contactCount; ++c)
+		{
+			int a = contactA[c];
+			int b = contactB[c];
+			if (invMass[a] != 0 && invMass[b] != 0)
+			{
+				int rootA = find(a);
+				int rootB = find(b);
+				if (rootA != rootB)
+				{
+					parent[rootA] = rootB;
+				}
+			}
+		}
+		// Number the islands and count their contacts
+		islandCount = 0;
+		for (int c = 0; c < contactCount; ++c)
+		{
+			// A static body is never the root of an island
+			int root = find(invMass[contactA[c]] != 0 ? contactA[c] : contactB[c]);
+			int island = islandOfRoot[root];
+			if (island < 0)
+			{
+				island = islandCount++;
+				islandOfRoot[root] = island;
+				islandStart[island] = 0;
+			}
+			contactIsland[c] = island;
+			++islandStart[island];
+		}
+		// Turn the counts into the end of each island, then fill each
+		// island backwards so the ends become the starts
+		int end = 0;
+		for (int island = 0; island < islandCount; ++island)
+		{
+			end += islandStart[island];
+			islandStart[island] = end;
+		}
+		islandStart[islandCount] = contactCount;
+		for (int c = contactCount - 1; c >= 0; --c)
+		{
+			islandContacts[--islandStart[contactIsland[c]]] = c;
+		}
+	}
+	
+	/** Find the root body of the island a body is in.
+	 * @param body the index of the body
+	 * @return the index of the root body of the island
+	 */
+	private int find(int body)
+	{
+		while (parent[body] != body)
+		{
+			// Point to the grandparent to keep the trees flat
+			parent[body] = parent[parent[body]];
+			body = parent[body];
+		}
+		return body;
+	}
+	
+	/** Push the touching bodies of an island apart. Only changes the bodies
+	 * in the island, so islands can be solved at the same time.
+	 * @param island the number of the island
+	 */
+	private void solveIsland(int island)
+	{
+		int start = islandStart[island];
+		int end = islandStart[island + 1];
+		// Stop the bodies from moving into each other
+		for (int iteration = 0; iteration < SOLVER_ITERATIONS; ++iteration)
+		{
+			for (int i = start; i < end; ++i)
+			{
+				int c = islandContacts[i];
+				int a = contactA[c];
+				int b = contactB[c];
+				double nx = contactNX[c];
+				double ny = contactNY[c];
+				double relative = (velX[b] - velX[a]) * nx + (velY[b] - velY[a]) * ny;
+				if (relative >= 0)
+				{
+					// Already moving apart
+					continue;
+				}
+				double invA = invMass[a];
+				double invB = invMass[b];
+				double bounce = Math.max(restitution[a], restitution[b]);
+				double impulse = -(1 + bounce) * relative / (invA + invB);
+				if (invA != 0)
+				{
+					velX[a] -= impulse * invA * nx;
+					velY[a] -= impulse * invA * ny;
+				}
+				if (invB != 0)
+				{
+					velX[b] += impulse * invB * nx;
+					velY[b] += impulse * invB * ny;
+				}
+			}
+		}
+		// Move overlapping bodies part of the way apart, so they do not
+		// slowly sink into each other
+		for (int i = start; i < end; ++i)
+		{
+			int c = islandContacts[i];
+			double overlap = contactDepth[c] - SLOP;
+			if (overlap <= 0)
+			{
+				continue;
+			}
+			int a = contactA[c];
+			int b = contactB[c];
+			double invA = invMass[a];
+			double invB = invMass[b];
+			double push = overlap * CORRECTION / (invA + invB);
+			if (invA != 0)
+			{
+				posX[a] -= push * invA * contactNX[c];
+				posY[a] -= push * invA * contactNY[c];
+			}
+			if (invB != 0)
+			{
+				posX[b] += push * invB * contactNX[c];
+				posY[b] += push * invB * contactNY[c];
+			}
+		}
+	}
+	
+	/** Make room for more bodies.
+	 * @param capacity the new number of bodies there is room for
+	 */
+	private void grow(int capacity)
+	{
+		bodies = Arrays.copyOf(bodies, capacity);
+		posX = Arrays.copyOf(posX, capacity);
+		posY = Arrays.copyOf(posY, capacity);
+		prevX = Arrays.copyOf(prevX, capacity);
+		prevY = Arrays.copyOf(prevY, capacity);
+		syncedX = Arrays.copyOf(syncedX, capacity);
+		syncedY = Arrays.copyOf(syncedY, capacity);
+		velX = Arrays.copyOf(velX, capacity);
+		velY = Arrays.copyOf(velY, capacity);
+		forceX = Arrays.copyOf(forceX, capacity);
+		forceY = Arrays.copyOf(forceY, capacity);
+		invMass = Arrays.copyOf(invMass, capacity);
+		restitution = Arrays.copyOf(restitution, capacity);
+		parent = new int[capacity];
+		islandOfRoot = new int[capacity];
+		islandStart = new int[capacity + 1];
+	}
+}
@@ -0,0 +1,47 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.List;
+
+/** Loads and unloads the contents of the regions of a streamed world (see
+ * {@link WorldStreamer}.) Both methods are called on a background thread,
+ * so they can read files and load resources (such as images used by the
+ * entities) without holding up the game, but they must not change the
+ * scene directly.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity in the regions
+ */
+public interface RegionLoader<T extends Entity>
+{
+	/** Load the entities of a region.
+	 * @param regionX the x coordinate of the region, in regions
+	 * @param regionY the y coordinate of the region, in regions
+	 * @return the entities of the region (may be empty, but not null)
+	 */
+	public List<T> load(int regionX, int regionY);
+	
+	/** Release a region once its entities have been removed from the
+	 * scene, such as to save changes to the region or free resources only
+	 * it was using. Does nothing by default.
+	 * @param regionX the x coordinate of the region, in regions
+	 * @param regionY the y coordinate of the region, in regions
+	 * @param entities the entities that were in the region
+	 */
+	public default void unload(int regionX, int regionY, List<T> entities)
+	{
+	}
+}
@@ -0,0 +1,468 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import xyz.digitalcookies.objective.utility.JobPool;
+import xyz.digitalcookies.objective.utility.Stopwatch;
+
+/** A saved copy of the entities of an {@link EntityContainer} (and
+ * optionally the time of a scene timer), in a compact binary file. The
+ * entities are converted to bytes by an {@link EntityCodec}, not Java
+ * serialization.
+ * <br>
+ * <br>Saving converts the entities to bytes on the calling thread (split
+ * between the threads of the {@link JobPool}), and then writes the file in
+ * the background, so a save made between updates only holds up the game
+ * for as long as it takes to copy the entities. The file is written next
+ * to the target and then moved over it, so a crash while saving does not
+ * leave a broken file.
+ * <br>
+ * <br>Loading maps the file into memory and reads only the header and the
+ * table of where each entity starts; each entity is only read when it is
+ * first asked for, so loading a large snapshot to look at a few entities
+ * is fast.
+ * <br>
+ * <br>The file starts with a header (all numbers are big-endian):
+ * the magic number "OBJS", the format version, the codec version, the
+ * timer time in nanoseconds, the timer flags, and the number of entities.
+ * After the header is a table with the offset of each entity (and one
+ * past the last entity) from the end of the table, followed by the
+ * entities.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity in the snapshot
+ */
+public class SceneSnapshot<T extends Entity>
+{
+	/** The number that starts every snapshot file ("OBJS".) */
+	public static final int MAGIC = 0x4F424A53;
+	/** The version of the snapshot file format. */
+	public static final int FORMAT_VERSION = 1;
+	/** The size of the header, in bytes. */
+	private static final int HEADER_SIZE = 28;
+	/** The timer flag set when a snapshot includes the time of a timer. */
+	private static final int FLAG_TIMER = 1;
+	/** The timer flag set when the timer was paused. */
+	private static final int FLAG_PAUSED = 2;
+	/** The number of entities converted to bytes by each job. */
+	private static final int ENCODE_CHUNK = 1024;
+	/** The thread that writes snapshot files. */
+	private static ExecutorService writer = null;
+	
+	/** The bytes of the entities, from the start of the first entity. */
+	private final ByteBuffer data;
+	/** The offset of each entity in the data, and the end of the data. */
+	private final int[] offsets;
+	/** Reads the entities. */
+	private final EntityCodec<T> codec;
+	/** The version of the codec that saved the snapshot. */
+	private final int codecVersion;
+	/** The saved time of the timer, in nanoseconds. */
+	private final long timerNanos;
+	/** The saved timer flags. */
+	private final int timerFlags;
+	/** The entities read so far, or null where not read yet. */
+	private final Object[] entities;
+	
+	/** Create a loaded snapshot.
+	 * @param data the bytes of the entities
+	 * @param offsets the offset of each entity, and the end of the data
+	 * @param codec reads the entities
+	 * @param codecVersion the version of the codec that saved the snapshot
+	 * @param timerNanos the saved time of the timer
+	 * @param timerFlags the saved timer flags
+	 */
+	private SceneSnapshot(
+			ByteBuffer data,
+			int[] offsets,
+			EntityCodec<T> codec,
+			int codecVersion,
+			long timerNanos,
+			int timerFlags
+			)
+	{
+		this.data = data;
+		this.offsets = offsets;
+		this.codec = codec;
+		this.codecVersion = codecVersion;
+		this.timerNanos = timerNanos;
+		this.timerFlags = timerFlags;
+		entities = new Object[offsets.length - 1];
+	}
+	
+	/** Save the entities of a container. See
+	 * {@link #save(Path, EntityContainer, EntityCodec, Stopwatch)}.
+	 * @param file the file to save to
+	 * @param container the container to save the entities of
+	 * @param codec converts the entities to bytes
+	 * @return completes once the file has been written
+	 */
+	public static <T extends Entity> CompletableFuture<Void> save(
+			Path file,
+			EntityContainer<T> container,
+			EntityCodec<T> codec
+			)
+	{
+		return save(file, container, codec, null);
+	}
+	
+	/** Save the entities of a container and the time of a timer (such as
+	 * the timer of the scene holding the container.) The entities are
+	 * converted to bytes before this returns, so they can be changed right
+	 * away, and the file is written in the background.
+	 * @param file the file to save to
+	 * @param container the container to save the entities of
+	 * @param codec converts the entities to bytes
+	 * @param timer the timer to save the time of, or null
+	 * @return completes once the file has been written, or completes
+	 * 		exceptionally if it could not be written
+	 */
+	public static <T extends Entity> CompletableFuture<Void> save(
+			Path file,
+			EntityContainer<T> container,
+			EntityCodec<T> codec,
+			Stopwatch timer
+			)
+	{
+		List<T> list = container.getEntities();
+		int count = list.size();
+		int chunks = (count + ENCODE_CHUNK - 1) / ENCODE_CHUNK;
+		ByteBuffer[] chunkData = new ByteBuffer[chunks];
+		// The end of each entity within its chunk
+		int[] ends = new int[count];
+		JobPool.parallelFor(
+				0,
+				chunks,
+				1,
+				(int start, int end)->
+				{
+					for (int chunk = start; chunk < end; ++chunk)
+					{
+						chunkData[chunk] = encode(list, chunk, codec, ends);
+					}
+				}
+				);
+		int flags = 0;
+		long time = 0;
+		if (timer != null)
+		{
+			flags = FLAG_TIMER | (timer.isPaused() ? FLAG_PAUSED : 0);
+			time = timer.getTimeNano();
+		}
+		int version = codec.getVersion();
+		int timerFlags = flags;
+		long timerNanos = time;
+		return CompletableFuture.runAsync(
+				()->
+				{
+					try
+					{
+						writeFile(file, chunkData, ends, version, timerNanos, timerFlags);
+					}
+					catch (IOException e)
+					{
+						throw new CompletionException(e);
+					}
+				},
+				getWriter()
+				);
+	}
+	
+	/** Load a snapshot. Only the header and offset table are read; the
+	 * entities are read when first asked for.
+	 * @param file the file to load
+	 * @param codec reads the entities
+	 * @return the snapshot, or null if it could not be loaded
+	 */
+	public static <T extends Entity> SceneSnapshot<T> load(Path file, EntityCodec<T> codec)
+	{
+		MappedByteBuffer map;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (IOException e)
+		{
+			System.out.println("WARNING: Unable to load snapshot \"" + file + "\":");
+			e.printStackTrace();
+			return null;
+		}
+		if (
+				map.capacity() < HEADER_SIZE
+				|| map.getInt(0) != MAGIC
+				|| map.getInt(4) != FORMAT_VERSION
+				)
+		{
+			System.out.println(
+					"WARNING: \"" + file + "\" is not a supported snapshot file."
+					);
+			return null;
+		}
+		int codecVersion = map.getInt(8);
+		long timerNanos = map.getLong(12);
+		int timerFlags = map.getInt(20);
+		int count = map.getInt(24);
+		int dataStart = HEADER_SIZE + (count + 1) * 4;
+		if (count < 0 || dataStart > map.capacity())
+		{
+			System.out.println("WARNING: Snapshot \"" + file + "\" is damaged.");
+			return null;
+		}
+		int[] offsets = new int[count + 1];
+		map.position(HEADER_SIZE);
+		map.asIntBuffer().get(offsets);
+		if (offsets[count] > map.capacity() - dataStart)
+		{
+			System.out.println("WARNING: Snapshot \"" + file + "\" is damaged.");
+			return null;
+		}
+		map.position(dataStart);
+		return new SceneSnapshot<T>(
+				map.slice(),
+				offsets,
+				codec,
+				codecVersion,
+				timerNanos,
+				timerFlags
+				);
+	}
+	
+	/** Get the number of entities in this snapshot.
+	 * @return the number of entities
+	 */
+	public int size()
+	{
+		return entities.length;
+	}
+	
+	/** Get an entity in this snapshot, reading it first if it has not been
+	 * read yet. The same entity object is returned each time.
+	 * @param index the index of the entity, in the order it was saved
+	 * @return the entity
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T get(int index)
+	{
+		Object entity = entities[index];
+		if (entity == null)
+		{
+			ByteBuffer in = data.duplicate();
+			in.limit(offsets[index + 1]);
+			in.position(offsets[index]);
+			entity = codec.read(in.slice(), codecVersion);
+			entities[index] = entity;
+		}
+		return (T) entity;
+	}
+	
+	/** Read all of the entities and add them to a container.
+	 * @param container the container to add the entities to
+	 */
+	public void addTo(EntityContainer<T> container)
+	{
+		for (int i = 0; i < entities.length; ++i)
+		{
+			container.addEntity(get(i));
+		}
+	}
+	
+	/** Get the version of the codec that saved this snapshot.
+	 * @return the codec version
+	 */
+	public int getCodecVersion()
+	{
+		return codecVersion;
+	}
+	
+	/** Check if this snapshot includes the time of a timer.
+	 * @return true if a timer was saved
+	 */
+	public boolean hasTimer()
+	{
+		return (timerFlags & FLAG_TIMER) != 0;
+	}
+	
+	/** Get the saved time of the timer.
+	 * @return the time in nanoseconds, or 0 if no timer was saved
+	 */
+	public long getTimerNano()
+	{
+		return timerNanos;
+	}
+	
+	/** Set a timer (such as the timer of a scene) to the saved time, and
+	 * pause or resume it if it was paused or running when saved. Does
+	 * nothing if no timer was saved.
+	 * @param timer the timer to set
+	 */
+	public void restoreTimer(Stopwatch timer)
+	{
+		if (!hasTimer())
+		{
+			return;
+		}
+		if ((timerFlags & FLAG_PAUSED) != 0)
+		{
+			timer.pause();
+		}
+		else
+		{
+			timer.start();
+			timer.resume();
+		}
+		timer.setTimeNano(timerNanos);
+	}
+	
+	/** Convert one chunk of entities to bytes.
+	 * @param list the entities being saved
+	 * @param chunk the number of the chunk
+	 * @param codec converts the entities to bytes
+	 * @param ends stores the end of each entity within its chunk
+	 * @return the bytes of the chunk, ready to be read
+	 */
+	private static <T extends Entity> ByteBuffer encode(
+			List<T> list,
+			int chunk,
+			EntityCodec<T> codec,
+			int[] ends
+			)
+	{
+		int first = chunk * ENCODE_CHUNK;
+		int last = Math.min(first + ENCODE_CHUNK, list.size());
+		ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+		for (int i = first; i < last; ++i)
+		{
+			int start = out.position();
+			while (true)
+			{
+				try
+				{
+					codec.write(list.get(i), out);
+					break;
+				}
+				catch (BufferOverflowException e)
+				{
+					// Move to a larger buffer and write the entity again
+					ByteBuffer larger = ByteBuffer.allocate(out.capacity() * 2);
+					out.flip().limit(start);
+					larger.put(out);
+					out = larger;
+				}
+			}
+			ends[i] = out.position();
+		}
+		out.flip();
+		return out;
+	}
+	
+	/** Write a snapshot file, next to the target and then moved over it.
+	 * @param file the file to write
+	 * @param chunkData the bytes of the entities, by chunk
+	 * @param ends the end of each entity within its chunk
+	 * @param codecVersion the version of the codec
+	 * @param timerNanos the time of the timer
+	 * @param timerFlags the timer flags
+	 * @throws IOException if the file could not be written
+	 */
+	private static void writeFile(
+			Path file,
+			ByteBuffer[] chunkData,
+			int[] ends,
+			int codecVersion,
+			long timerNanos,
+			int timerFlags
+			) throws IOException
+	{
+		int count = ends.length;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + (count + 1) * 4);
+		header.putInt(MAGIC);
+		header.putInt(FORMAT_VERSION);
+		header.putInt(codecVersion);
+		header.putLong(timerNanos);
+		header.putInt(timerFlags);
+		header.putInt(count);
+		// Turn the ends within each chunk into offsets in the whole file
+		int base = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			if (i % ENCODE_CHUNK == 0 && i > 0)
+			{
+				base += chunkData[i / ENCODE_CHUNK - 1].remaining();
+			}
+			header.putInt(i % ENCODE_CHUNK == 0 ? base : base + ends[i - 1]);
+		}
+		header.putInt(count == 0 ? 0 : base + ends[count - 1]);
+		header.flip();
+		ByteBuffer[] buffers = new ByteBuffer[chunkData.length + 1];
+		buffers[0] = header;
+		System.arraycopy(chunkData, 0, buffers, 1, chunkData.length);
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (
+				FileChannel channel = FileChannel.open(
+						temp,
+						StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING
+						)
+				)
+		{
+			while (buffers[buffers.length - 1].hasRemaining())
+			{
+				channel.write(buffers);
+			}
+		}
+		Files.move(
+				temp,
+				file,
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE
+				);
+	}
+	
+	/** Get the thread used for writing snapshot files, starting it if
+	 * needed.
+	 * @return the executor for writing snapshots in the background
+	 */
+	private static synchronized ExecutorService getWriter()
+	{
+		if (writer == null)
+		{
+			writer = Executors.newSingleThreadExecutor(
+					(Runnable r)->
+					{
+						Thread t = new Thread(r, "Snapshot Writer");
+						t.setDaemon(true);
+						return t;
+					}
+					);
+		}
+		return writer;
+	}
+}
@@ -0,0 +1,337 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+
+import xyz.digitalcookies.objective.graphics.ViewTransform;
+
+/** A camera looking at a position in the world, with zoom and rotation,
+ * that keeps its world to screen transform (and the inverse) cached until
+ * it is changed. The camera position is drawn at the anchor point on the
+ * screen (such as the center of the window), and rotation and zoom are
+ * around that point. Positions are kept in double precision, so slow
+ * camera movement does not jitter from rounding.
+ * <br>
+ * <br>Apply the camera to a whole layer with
+ * {@link xyz.digitalcookies.objective.graphics.LayerSet#setViewTransform(int,
+ * ViewTransform)} so renderers in the layer can draw in world coordinates,
+ * or transform many coordinates at once with
+ * {@link #worldToScreen(double[], int, double[], int, int)}.
+ * <br>
+ * <br>The offsets returned by the methods of the Camera interface do not
+ * include rotation.
+ * @author Bryan Charles Bettis
+ */
+public class TransformCamera implements Camera, ViewTransform
+{
+	/** The world x coordinate the camera is looking at. */
+	private double x;
+	/** The world y coordinate the camera is looking at. */
+	private double y;
+	/** The screen x coordinate the camera position is drawn at. */
+	private double anchorX;
+	/** The screen y coordinate the camera position is drawn at. */
+	private double anchorY;
+	/** The zoom factor. */
+	private double zoom;
+	/** The rotation of the view, in radians. */
+	private double rotation;
+	/** The cached world to screen transform, or null if it changed. */
+	private volatile AffineTransform transform;
+	/** The cached screen to world transform, or null if it changed. */
+	private volatile AffineTransform inverse;
+	
+	/** Create a camera looking at (0,0) with no zoom or rotation, drawing
+	 * the camera position at the upper left corner of the screen.
+	 */
+	public TransformCamera()
+	{
+		this(0, 0);
+	}
+	
+	/** Create a camera with no zoom or rotation.
+	 * @param anchorX the screen x coordinate to draw the camera position at
+	 * @param anchorY the screen y coordinate to draw the camera position at
+	 */
+	public TransformCamera(double anchorX, double anchorY)
+	{
+		x = 0;
+		y = 0;
+		this.anchorX = anchorX;
+		this.anchorY = anchorY;
+		zoom = 1.0;
+		rotation = 0;
+		transform = null;
+		inverse = null;
+	}
+	
+	@Override
+	public AffineTransform getViewTransform()
+	{
+		AffineTransform at = transform;
+		if (at == null)
+		{
+			at = rebuild();
+		}
+		return at;
+	}
+	
+	/** Get the cached screen to world transform.
+	 * The returned transform must not be modified.
+	 * @return the transform from screen coordinates to world coordinates
+	 */
+	public AffineTransform getInverseTransform()
+	{
+		AffineTransform inv = inverse;
+		if (inv == null)
+		{
+			// Hold the lock so the camera cannot change before reading it
+			synchronized (this)
+			{
+				rebuild();
+				inv = inverse;
+			}
+		}
+		return inv;
+	}
+	
+	@Override
+	public int getX()
+	{
+		return (int) Math.round(getPreciseX());
+	}
+	
+	@Override
+	public int getX(double x)
+	{
+		return (int) Math.round(x * getScale() + getPreciseX());
+	}
+	
+	@Override
+	public int getY()
+	{
+		return (int) Math.round(getPreciseY());
+	}
+	
+	@Override
+	public int getY(double y)
+	{
+		return (int) Math.round(y * getScale() + getPreciseY());
+	}
+	
+	@Override
+	public synchronized double getPreciseX()
+	{
+		return anchorX - x * zoom;
+	}
+	
+	@Override
+	public synchronized double getPreciseY()
+	{
+		return anchorY - y * zoom;
+	}
+	
+	@Override
+	public synchronized double getScale()
+	{
+		return zoom;
+	}
+	
+	@Override
+	public synchronized void setScale(double scale)
+	{
+		if (scale <= 0)
+		{
+			System.out.println(
+					"WARNING: Attempted to set a camera scale of "
+					+ Double.toString(scale)
+					);
+			return;
+		}
+		zoom = scale;
+		invalidate();
+	}
+	
+	/** Move the camera to look at the specified world position.
+	 * @param x the world x coordinate
+	 * @param y the world y coordinate
+	 */
+	public synchronized void setPosition(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+		invalidate();
+	}
+	
+	/** Move the camera by the specified amount.
+	 * @param dx the distance to move along x, in world units
+	 * @param dy the distance to move along y, in world units
+	 */
+	public synchronized void move(double dx, double dy)
+	{
+		x += dx;
+		y += dy;
+		invalidate();
+	}
+	
+	/** Get the world x coordinate the camera is looking at.
+	 * @return the world x coordinate
+	 */
+	public synchronized double getPositionX()
+	{
+		return x;
+	}
+	
+	/** Get the world y coordinate the camera is looking at.
+	 * @return the world y coordinate
+	 */
+	public synchronized double getPositionY()
+	{
+		return y;
+	}
+	
+	/** Set the screen point the camera position is drawn at, which is also
+	 * the point zooming and rotating happen around.
+	 * @param anchorX the screen x coordinate
+	 * @param anchorY the screen y coordinate
+	 */
+	public synchronized void setAnchor(double anchorX, double anchorY)
+	{
+		this.anchorX = anchorX;
+		this.anchorY = anchorY;
+		invalidate();
+	}
+	
+	/** Get the rotation of the view.
+	 * @return the rotation, in radians (positive is clockwise on screen)
+	 */
+	public synchronized double getRotation()
+	{
+		return rotation;
+	}
+	
+	/** Set the rotation of the view.
+	 * @param rotation the rotation, in radians (positive is clockwise on
+	 * 		screen)
+	 */
+	public synchronized void setRotation(double rotation)
+	{
+		this.rotation = rotation;
+		invalidate();
+	}
+	
+	/** Convert a world position to a screen position.
+	 * @param world the world position
+	 * @param screen the point to store the result in, or null to create one
+	 * @return the screen position
+	 */
+	public Point2D worldToScreen(Point2D world, Point2D screen)
+	{
+		return getViewTransform().transform(world, screen);
+	}
+	
+	/** Convert a screen position (such as the mouse position) to a world
+	 * position.
+	 * @param screen the screen position
+	 * @param world the point to store the result in, or null to create one
+	 * @return the world position
+	 */
+	public Point2D screenToWorld(Point2D screen, Point2D world)
+	{
+		return getInverseTransform().transform(screen, world);
+	}
+	
+	/** Convert many world positions to screen positions at once. The
+	 * coordinates are stored as x,y pairs.
+	 * @param src the world coordinates
+	 * @param srcOff the index of the first x coordinate in src
+	 * @param dst the array to store the screen coordinates in (may be src)
+	 * @param dstOff the index to store the first x coordinate at in dst
+	 * @param numPts the number of positions to convert
+	 */
+	public void worldToScreen(double[] src, int srcOff, double[] dst, int dstOff, int numPts)
+	{
+		getViewTransform().transform(src, srcOff, dst, dstOff, numPts);
+	}
+	
+	/** Convert many world positions to screen positions at once. The
+	 * coordinates are stored as x,y pairs.
+	 * @param src the world coordinates
+	 * @param srcOff the index of the first x coordinate in src
+	 * @param dst the array to store the screen coordinates in (may be src)
+	 * @param dstOff the index to store the first x coordinate at in dst
+	 * @param numPts the number of positions to convert
+	 */
+	public void worldToScreen(float[] src, int srcOff, float[] dst, int dstOff, int numPts)
+	{
+		getViewTransform().transform(src, srcOff, dst, dstOff, numPts);
+	}
+	
+	/** Convert many screen positions to world positions at once. The
+	 * coordinates are stored as x,y pairs.
+	 * @param src the screen coordinates
+	 * @param srcOff the index of the first x coordinate in src
+	 * @param dst the array to store the world coordinates in (may be src)
+	 * @param dstOff the index to store the first x coordinate at in dst
+	 * @param numPts the number of positions to convert
+	 */
+	public void screenToWorld(double[] src, int srcOff, double[] dst, int dstOff, int numPts)
+	{
+		getInverseTransform().transform(src, srcOff, dst, dstOff, numPts);
+	}
+	
+	/** Throw away the cached transforms after the camera changed. */
+	private void invalidate()
+	{
+		transform = null;
+		inverse = null;
+	}
+	
+	/** Recreate the cached transforms. New transform objects are created
+	 * (instead of changing the old ones) so renders that already got the
+	 * old transform are not affected.
+	 * @return the world to screen transform
+	 */
+	private synchronized AffineTransform rebuild()
+	{
+		if (transform != null && inverse != null)
+		{
+			return transform;
+		}
+		AffineTransform at = new AffineTransform();
+		at.translate(anchorX, anchorY);
+		at.rotate(rotation);
+		at.scale(zoom, zoom);
+		at.translate(-x, -y);
+		AffineTransform inv;
+		try
+		{
+			inv = at.createInverse();
+		}
+		catch (NoninvertibleTransformException e)
+		{
+			// Only possible with an invalid zoom, which is not allowed
+			System.out.println("INTERNAL ERROR: Camera transform is not invertible.");
+			inv = new AffineTransform();
+		}
+		inverse = inv;
+		transform = at;
+		return at;
+	}
+}
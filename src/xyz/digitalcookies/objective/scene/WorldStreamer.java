@@ -0,0 +1,447 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Keeps only the part of a world near a point (such as the camera) in
+ * memory. The world is divided into square regions, and the entities of
+ * each region are loaded by a {@link RegionLoader} on background threads
+ * when the region comes within the load radius of the focus point, and
+ * unloaded when it goes outside of the unload radius. The unload radius is
+ * larger than the load radius, so moving back and forth across the edge of
+ * a region does not load and unload it over and over.
+ * <br>
+ * <br>Loaded entities are only added to (and removed from) the entity
+ * container during {@link #update(double, double)}, which should be called
+ * once per update of the scene, so the contents of the scene only change
+ * between updates. The number of regions added by each update can be
+ * limited, so loading many regions at once is spread over a few updates.
+ * @author Bryan Charles Bettis
+ * @param <T> the type of entity in the regions
+ */
+public class WorldStreamer<T extends Entity>
+{
+	/** The threads shared by all streamers for loading regions. */
+	private static ExecutorService loader = null;
+	
+	/** The container the entities of loaded regions are added to. */
+	private final EntityContainer<T> container;
+	/** Loads and unloads the regions. */
+	private final RegionLoader<T> regionLoader;
+	/** The width and height of a region, in world units. */
+	private final double regionSize;
+	/** The regions that are loading or loaded, by their key. */
+	private final HashMap<Long, Region<T>> regions;
+	/** Regions that finished loading in the background. */
+	private final ConcurrentLinkedQueue<Region<T>> finished;
+	/** Regions within this many regions of the focus are loaded. */
+	private int loadRadius;
+	/** Regions further than this many regions from the focus are unloaded. */
+	private int unloadRadius;
+	/** The most regions added to the container by one update. */
+	private int maxAttachPerUpdate;
+	/** Regions that finished loading but have not been added yet. */
+	private final ArrayList<Region<T>> ready;
+	
+	/** A region that is loading or loaded.
+	 * @author Bryan Charles Bettis
+	 * @param <T> the type of entity in the region
+	 */
+	private static class Region<T>
+	{
+		/** The x coordinate of the region, in regions. */
+		final int x;
+		/** The y coordinate of the region, in regions. */
+		final int y;
+		/** The entities of the region, once loaded. */
+		volatile List<T> entities;
+		/** If the entities are in the container. */
+		boolean attached;
+		/** If the region was unloaded before it finished loading. */
+		volatile boolean cancelled;
+		/** If the region loader was told the region was unloaded. */
+		final AtomicBoolean released;
+		
+		/** Create a region that has not loaded yet.
+		 * @param x the x coordinate of the region
+		 * @param y the y coordinate of the region
+		 */
+		Region(int x, int y)
+		{
+			this.x = x;
+			this.y = y;
+			entities = null;
+			attached = false;
+			cancelled = false;
+			released = new AtomicBoolean(false);
+		}
+	}
+	
+	/** Create a streamer that loads regions within 1 region of the focus
+	 * and unloads them once they are more than 2 regions away.
+	 * @param container the container to add the entities of loaded regions
+	 * 		to
+	 * @param regionLoader loads and unloads the regions
+	 * @param regionSize the width and height of a region, in world units
+	 */
+	public WorldStreamer(
+			EntityContainer<T> container,
+			RegionLoader<T> regionLoader,
+			double regionSize
+			)
+	{
+		this.container = container;
+		this.regionLoader = regionLoader;
+		if (regionSize <= 0)
+		{
+			System.out.println(
+					"WARNING: Specified an invalid region size: "
+					+ Double.toString(regionSize)
+					);
+			Thread.dumpStack();
+			regionSize = 1;
+		}
+		this.regionSize = regionSize;
+		regions = new HashMap<Long, Region<T>>();
+		finished = new ConcurrentLinkedQueue<Region<T>>();
+		ready = new ArrayList<Region<T>>();
+		loadRadius = 1;
+		unloadRadius = 2;
+		maxAttachPerUpdate = 4;
+	}
+	
+	/** Set how close regions have to be to the focus to be loaded, and how
+	 * far they have to be to be unloaded. Distances are counted in regions
+	 * along x and y separately, so a load radius of 1 loads the 3 by 3
+	 * regions around the region the focus is in.
+	 * @param loadRadius regions within this many regions are loaded
+	 * @param unloadRadius regions further than this many regions are
+	 * 		unloaded (raised to the load radius if smaller)
+	 */
+	public synchronized void setRadius(int loadRadius, int unloadRadius)
+	{
+		this.loadRadius = Math.max(loadRadius, 0);
+		this.unloadRadius = Math.max(unloadRadius, this.loadRadius);
+	}
+	
+	/** Get how close regions have to be to the focus to be loaded.
+	 * @return the load radius, in regions
+	 */
+	public synchronized int getLoadRadius()
+	{
+		return loadRadius;
+	}
+	
+	/** Get how far regions have to be from the focus to be unloaded.
+	 * @return the unload radius, in regions
+	 */
+	public synchronized int getUnloadRadius()
+	{
+		return unloadRadius;
+	}
+	
+	/** Set the most regions added to the container by one update.
+	 * @param max the most regions, or 0 for no limit
+	 */
+	public synchronized void setMaxAttachPerUpdate(int max)
+	{
+		maxAttachPerUpdate = Math.max(max, 0);
+	}
+	
+	/** Get the width and height of a region.
+	 * @return the size of a region, in world units
+	 */
+	public double getRegionSize()
+	{
+		return regionSize;
+	}
+	
+	/** Get the number of regions with their entities in the container.
+	 * @return the number of loaded regions
+	 */
+	public synchronized int getLoadedRegionCount()
+	{
+		int count = 0;
+		for (Region<T> region : regions.values())
+		{
+			if (region.attached)
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+	
+	/** Check if the entities of a region are in the container.
+	 * @param regionX the x coordinate of the region, in regions
+	 * @param regionY the y coordinate of the region, in regions
+	 * @return true if the region is loaded
+	 */
+	public synchronized boolean isLoaded(int regionX, int regionY)
+	{
+		Region<T> region = regions.get(key(regionX, regionY));
+		return region != null && region.attached;
+	}
+	
+	/** Get the region containing an x coordinate.
+	 * @param x the world x coordinate
+	 * @return the x coordinate of the region, in regions
+	 */
+	public int getRegionX(double x)
+	{
+		return (int) Math.floor(x / regionSize);
+	}
+	
+	/** Get the region containing a y coordinate.
+	 * @param y the world y coordinate
+	 * @return the y coordinate of the region, in regions
+	 */
+	public int getRegionY(double y)
+	{
+		return (int) Math.floor(y / regionSize);
+	}
+	
+	/** Start loading the regions near the focus, unload the regions that
+	 * are too far away, and add the regions that finished loading to the
+	 * container. Should be called from the thread updating the scene,
+	 * between updates of the container.
+	 * @param focusX the world x coordinate to load regions around (such as
+	 * 		the camera position)
+	 * @param focusY the world y coordinate to load regions around
+	 */
+	public synchronized void update(double focusX, double focusY)
+	{
+		int centerX = getRegionX(focusX);
+		int centerY = getRegionY(focusY);
+		// Unload regions outside of the unload radius
+		Iterator<Region<T>> it = regions.values().iterator();
+		while (it.hasNext())
+		{
+			Region<T> region = it.next();
+			if (
+					Math.abs(region.x - centerX) > unloadRadius
+					|| Math.abs(region.y - centerY) > unloadRadius
+					)
+			{
+				it.remove();
+				unload(region);
+			}
+		}
+		// Start loading regions inside of the load radius
+		for (int y = centerY - loadRadius; y <= centerY + loadRadius; ++y)
+		{
+			for (int x = centerX - loadRadius; x <= centerX + loadRadius; ++x)
+			{
+				long key = key(x, y);
+				if (!regions.containsKey(key))
+				{
+					Region<T> region = new Region<T>(x, y);
+					regions.put(key, region);
+					startLoad(region);
+				}
+			}
+		}
+		// Add the regions that finished loading
+		drainFinished();
+		int attached = 0;
+		while (
+				!ready.isEmpty()
+				&& (maxAttachPerUpdate == 0 || attached < maxAttachPerUpdate)
+				)
+		{
+			Region<T> region = ready.remove(ready.size() - 1);
+			if (region.cancelled)
+			{
+				// Unloaded before it was added
+				releaseLater(region);
+				continue;
+			}
+			container.addEntities(region.entities);
+			region.attached = true;
+			++attached;
+		}
+	}
+	
+	/** Unload every region, such as when leaving the scene. Regions still
+	 * loading are released as soon as they finish.
+	 */
+	public synchronized void unloadAll()
+	{
+		for (Region<T> region : regions.values())
+		{
+			unload(region);
+		}
+		regions.clear();
+		drainFinished();
+		for (Region<T> region : ready)
+		{
+			releaseLater(region);
+		}
+		ready.clear();
+	}
+	
+	/** Move the regions that finished loading to the ready list. */
+	private void drainFinished()
+	{
+		Region<T> done;
+		while ((done = finished.poll()) != null)
+		{
+			ready.add(done);
+		}
+	}
+	
+	/** Load a region in the background.
+	 * @param region the region to load
+	 */
+	private void startLoad(Region<T> region)
+	{
+		getLoader().execute(
+				()->
+				{
+					List<T> entities = null;
+					try
+					{
+						entities = regionLoader.load(region.x, region.y);
+					}
+					catch (RuntimeException e)
+					{
+						System.out.println(
+								"WARNING: Unable to load region "
+								+ Integer.toString(region.x)
+								+ ","
+								+ Integer.toString(region.y)
+								+ ":"
+								);
+						e.printStackTrace();
+					}
+					region.entities = entities == null ? Collections.<T>emptyList() : entities;
+					finished.add(region);
+					// Unloaded while loading, and maybe after the last update
+					if (region.cancelled)
+					{
+						release(region);
+					}
+				}
+				);
+	}
+	
+	/** Remove the entities of a region from the container and release the
+	 * region in the background once the container has removed them (which
+	 * is delayed until the end of the update when the container is being
+	 * updated.) Regions that were not added yet are released once they
+	 * finish loading, by the next update.
+	 * @param region the region to unload
+	 */
+	private void unload(Region<T> region)
+	{
+		region.cancelled = true;
+		if (region.attached)
+		{
+			container.removeEntities(region.entities);
+			region.attached = false;
+			container.runAfterChanges(
+					()->
+					{
+						releaseLater(region);
+					}
+					);
+		}
+	}
+	
+	/** Release a region in the background.
+	 * @param region the region to release
+	 */
+	private void releaseLater(Region<T> region)
+	{
+		getLoader().execute(
+				()->
+				{
+					release(region);
+				}
+				);
+	}
+	
+	/** Tell the region loader that a region was unloaded, unless it was
+	 * already told.
+	 * @param region the region that was unloaded
+	 */
+	private void release(Region<T> region)
+	{
+		// Both the loading thread and an update can get here
+		if (!region.released.compareAndSet(false, true))
+		{
+			return;
+		}
+		try
+		{
+			regionLoader.unload(region.x, region.y, region.entities);
+		}
+		catch (RuntimeException e)
+		{
+			System.out.println(
+					"WARNING: Unable to unload region "
+					+ Integer.toString(region.x)
+					+ ","
+					+ Integer.toString(region.y)
+					+ ":"
+					);
+			e.printStackTrace();
+		}
+	}
+	
+	/** Get the key of a region in the region map.
+	 * @param regionX the x coordinate of the region
+	 * @param regionY the y coordinate of the region
+	 * @return the key of the region
+	 */
+	private static long key(int regionX, int regionY)
+	{
+		return ((long) regionX << 32) | (regionY & 0xFFFFFFFFL);
+	}
+	
+	/** Get the threads used for loading regions, starting them if needed.
+	 * @return the executor for loading regions in the background
+	 */
+	private static synchronized ExecutorService getLoader()
+	{
+		if (loader == null)
+		{
+			int threads = Math.max(
+					1,
+					Math.min(2, Runtime.getRuntime().availableProcessors() - 1)
+					);
+			loader = Executors.newFixedThreadPool(
+					threads,
+					(Runnable r)->
+					{
+						Thread t = new Thread(r, "World Streamer");
+						t.setDaemon(true);
+						return t;
+					}
+					);
+		}
+		return loader;
+	}
+}
@@ -0,0 +1,200 @@
+/** Copyright 2016 Bryan Charles Bettis
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package xyz.digitalcookies.objective.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A shared pool of worker threads used by the engine to split up
+ * CPU-heavy work (such as rendering tiles or updating large groups of
+ * objects) across multiple cores. Work submitted from a thread that is
+ * already one of this pool's workers is run immediately on that thread,
+ * so nested parallel work can never deadlock the pool.
+ * @author Bryan Charles Bettis
+ */
+public class JobPool
+{
+	/** Name prefix for the worker threads. */
+	private static final String THREAD_NAME = "Job Pool Worker ";
+	/** Used to number the worker threads. */
+	private static final AtomicInteger threadCount = new AtomicInteger(0);
+	/** The number of worker threads in the pool. */
+	private static final int NUM_WORKERS =
+			Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	/** The executor running the jobs, created when first needed. */
+	private static ExecutorService workers;
+	/** Marks threads that belong to this pool. */
+	private static final ThreadLocal<Boolean> isWorker =
+			ThreadLocal.withInitial(()->false);
+	
+	/** A job that processes a range of indexes, such as a range of
+	 * pixel rows or a range of array elements.
+	 * @author Bryan Charles Bettis
+	 */
+	public interface RangeJob
+	{
+		/** Process the indexes from start (inclusive) to end (exclusive).
+		 * @param start the first index to process
+		 * @param end one past the last index to process
+		 */
+		public void run(int start, int end);
+	}
+	
+	/** Constructor hidden because this is an exclusively-static class. */
+	private JobPool()
+	{
+	}
+	
+	/** Get the number of threads that can work on a job at the same time,
+	 * including the thread that submits the job.
+	 * @return the maximum number of threads that work on a single job
+	 */
+	public static int getParallelism()
+	{
+		return NUM_WORKERS + 1;
+	}
+	
+	/** Split the specified range into chunks and process the chunks in
+	 * parallel, returning once all chunks have been processed. The calling
+	 * thread processes one of the chunks itself.
+	 * @param start the first index of the range (inclusive)
+	 * @param end the end of the range (exclusive)
+	 * @param minChunk the smallest number of indexes worth giving to a
+	 * 		single thread
+	 * @param job the job to run on each chunk
+	 */
+	public static void parallelFor(int start, int end, int minChunk, RangeJob job)
+	{
+		int count = end - start;
+		if (count <= 0)
+		{
+			return;
+		}
+		int chunks = Math.min(getParallelism(), count / Math.max(1, minChunk));
+		// Not worth splitting up, or already on a worker thread
+		if (chunks <= 1 || isWorker.get())
+		{
+			job.run(start, end);
+			return;
+		}
+		int chunkSize = (count + chunks - 1) / chunks;
+		List<Future<?>> pending = new ArrayList<Future<?>>(chunks);
+		ExecutorService pool = getWorkers();
+		// Hand all but the first chunk to the workers
+		for (int s = start + chunkSize; s < end; s += chunkSize)
+		{
+			final int cs = s;
+			final int ce = Math.min(end, s + chunkSize);
+			pending.add(pool.submit(()->job.run(cs, ce)));
+		}
+		// Process the first chunk on this thread
+		job.run(start, Math.min(end, start + chunkSize));
+		waitFor(pending);
+	}
+	
+	/** Run the specified jobs in parallel, returning once all have finished.
+	 * The first job is run on the calling thread.
+	 * @param jobs the jobs to run
+	 */
+	public static void runAll(List<? extends Runnable> jobs)
+	{
+		if (jobs.isEmpty())
+		{
+			return;
+		}
+		if (jobs.size() == 1 || isWorker.get())
+		{
+			jobs.forEach((Runnable r)->r.run());
+			return;
+		}
+		List<Future<?>> pending = new ArrayList<Future<?>>(jobs.size());
+		ExecutorService pool = getWorkers();
+		for (int i = 1; i < jobs.size(); ++i)
+		{
+			pending.add(pool.submit(jobs.get(i)));
+		}
+		jobs.get(0).run();
+		waitFor(pending);
+	}
+	
+	/** Wait for all of the specified jobs to finish. Keeps waiting if the
+	 * calling thread is interrupted, since callers use the results of the
+	 * jobs right away (such as presenting a frame the jobs draw to), and
+	 * sets the interrupt flag again once all jobs have finished.
+	 * @param pending the jobs to wait for
+	 */
+	private static void waitFor(List<Future<?>> pending)
+	{
+		boolean interrupted = false;
+		for (Future<?> f : pending)
+		{
+			while (true)
+			{
+				try
+				{
+					f.get();
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+					System.out.println("ERROR: A job pool job threw an exception.");
+					break;
+				}
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/** Get the worker threads, starting them if needed.
+	 * @return the executor for the worker threads
+	 */
+	private static synchronized ExecutorService getWorkers()
+	{
+		if (workers == null)
+		{
+			workers = Executors.newFixedThreadPool(
+					NUM_WORKERS,
+					(Runnable r)->
+					{
+						Thread t = new Thread(
+								()->
+								{
+									isWorker.set(true);
+									r.run();
+								}
+								);
+						t.setName(THREAD_NAME + threadCount.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+					);
+		}
+		return workers;
+	}
+}
@@ -125,6 +125,34 @@ public class Stopwatch
 		}
 	}
 	
+	/** Check if this clock is paused.
+	 * @return true if the time of this clock is not changing
+	 */
+	public boolean isPaused()
+	{
+		return paused;
+	}
+	
+	/** Set the current time of this clock, such as when loading a saved
+	 * game. The clock keeps running from the new time if it is not paused.
+	 * @param time the new time of this stopwatch in nanoseconds
+	 */
+	public synchronized void setTimeNano(long time)
+	{
+		elapsed = time;
+		if (!paused)
+		{
+			if (parentTime == null)
+			{
+				started = Game.getTimeNano();
+			}
+			else
+			{
+				started = parentTime.getTimeNano();
+			}
+		}
+	}
+	
 	/** Resume this clock. Repeated calls have no effect. */
 	public synchronized void resume()
 	{